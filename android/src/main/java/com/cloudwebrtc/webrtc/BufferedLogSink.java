@@ -0,0 +1,258 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.MapBuilder;
+
+import org.webrtc.Loggable;
+import org.webrtc.Logging.Severity;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Native log sink that keeps WebRTC log lines off the main thread.
+ *
+ * Lines are collected in a ring buffer (the oldest are dropped when it is full), limited per
+ * tag to a number of lines per second, and flushed from a background thread every flush
+ * interval: as one onLogData event carrying all lines, to a rotating log file
+ * (path, path.1 ... path.[maxFiles - 1]), or both.
+ */
+class BufferedLogSink implements Loggable {
+  private final static String TAG = FlutterWebRTCPlugin.TAG;
+
+  private static final class TagLimit {
+    long windowStartMs;
+    int count;
+    int suppressed;
+  }
+
+  private final Handler handler;
+  private final Runnable flushTask = this::flush;
+  private final Map<String, TagLimit> tagLimits = new HashMap<>();
+  private final SimpleDateFormat dateFormat =
+          new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+
+  // guarded by this
+  private String[] lines = new String[1024];
+  private long[] timestamps = new long[1024];
+  private int head = 0;
+  private int size = 0;
+  private long dropped = 0;
+  private boolean flushScheduled = false;
+  private int flushIntervalMs = 250;
+  private int maxLinesPerSecondPerTag = 100;
+  private boolean sendEvents = true;
+  @Nullable private File logFile;
+  private long maxFileBytes = 1024 * 1024;
+  private int maxFiles = 3;
+
+  // flush thread only
+  @Nullable private Writer writer;
+  private long writtenBytes;
+
+  BufferedLogSink() {
+    HandlerThread thread = new HandlerThread("WebRTCLogSink");
+    thread.start();
+    handler = new Handler(thread.getLooper());
+  }
+
+  /**
+   * Applies a new configuration. A null filePath stops writing to file; the current
+   * buffer is flushed with the old settings first.
+   */
+  void configure(int flushIntervalMs, int bufferSize, int maxLinesPerSecondPerTag,
+                 boolean sendEvents, @Nullable String filePath, long maxFileBytes, int maxFiles) {
+    handler.post(() -> {
+      flush();
+      synchronized (this) {
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+        this.maxLinesPerSecondPerTag = maxLinesPerSecondPerTag;
+        this.sendEvents = sendEvents;
+        this.maxFileBytes = Math.max(4096, maxFileBytes);
+        this.maxFiles = Math.max(1, maxFiles);
+        int capacity = Math.max(16, bufferSize);
+        if (capacity != lines.length) {
+          lines = new String[capacity];
+          timestamps = new long[capacity];
+          head = 0;
+          size = 0;
+        }
+        File file = filePath != null ? new File(filePath) : null;
+        if (file == null ? logFile != null : !file.equals(logFile)) {
+          closeWriter();
+          logFile = file;
+        }
+      }
+    });
+  }
+
+  @Override
+  public void onLogMessage(String message, Severity sev, String tag) {
+    long nowMs = SystemClock.elapsedRealtime();
+    synchronized (this) {
+      String suppressedNote = null;
+      if (maxLinesPerSecondPerTag > 0) {
+        TagLimit limit = tagLimits.get(tag);
+        if (limit == null) {
+          limit = new TagLimit();
+          limit.windowStartMs = nowMs;
+          tagLimits.put(tag, limit);
+        }
+        if (nowMs - limit.windowStartMs >= 1000) {
+          if (limit.suppressed > 0) {
+            suppressedNote = "[" + tag + "] " + limit.suppressed + " log lines suppressed";
+          }
+          limit.windowStartMs = nowMs;
+          limit.count = 0;
+          limit.suppressed = 0;
+        }
+        if (++limit.count > maxLinesPerSecondPerTag) {
+          limit.suppressed++;
+          return;
+        }
+      }
+      if (suppressedNote != null) {
+        append(suppressedNote);
+      }
+      append(message);
+      if (!flushScheduled) {
+        flushScheduled = true;
+        handler.postDelayed(flushTask, flushIntervalMs);
+      }
+    }
+  }
+
+  // guarded by this
+  private void append(String line) {
+    int capacity = lines.length;
+    int index = (head + size) % capacity;
+    if (size == capacity) {
+      head = (head + 1) % capacity;
+      dropped++;
+    } else {
+      size++;
+    }
+    lines[index] = line;
+    timestamps[index] = System.currentTimeMillis();
+  }
+
+  private void flush() {
+    ArrayList<Object> batch;
+    long[] times;
+    long droppedLines;
+    boolean events;
+    File file;
+    synchronized (this) {
+      flushScheduled = false;
+      handler.removeCallbacks(flushTask);
+      if (size == 0 && dropped == 0) {
+        return;
+      }
+      batch = MapBuilder.newList(size);
+      times = new long[size];
+      for (int i = 0; i < size; i++) {
+        int index = (head + i) % lines.length;
+        batch.add(lines[index]);
+        times[i] = timestamps[index];
+        lines[index] = null;
+      }
+      head = 0;
+      size = 0;
+      droppedLines = dropped;
+      dropped = 0;
+      events = sendEvents;
+      file = logFile;
+    }
+    if (droppedLines > 0) {
+      batch.add(0, droppedLines + " log lines dropped, buffer full");
+      long[] shifted = new long[times.length + 1];
+      System.arraycopy(times, 0, shifted, 1, times.length);
+      shifted[0] = times.length > 0 ? times[0] : System.currentTimeMillis();
+      times = shifted;
+    }
+    if (events && FlutterWebRTCPlugin.sharedSingleton != null) {
+      FlutterWebRTCPlugin.sharedSingleton.sendEvent(MapBuilder.event("onLogData", 1)
+              .put("lines", batch)
+              .build());
+    }
+    if (file != null) {
+      writeToFile(file, batch, times);
+    }
+  }
+
+  private void writeToFile(File file, ArrayList<Object> batch, long[] times) {
+    try {
+      if (writer == null) {
+        File parent = file.getParentFile();
+        if (parent != null) {
+          //noinspection ResultOfMethodCallIgnored
+          parent.mkdirs();
+        }
+        writtenBytes = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8));
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        String line = dateFormat.format(new Date(times[i])) + " " + batch.get(i) + "\n";
+        writer.write(line);
+        writtenBytes += line.length();
+      }
+      writer.flush();
+      if (writtenBytes >= maxFileBytes) {
+        rotate(file);
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "BufferedLogSink: writing " + file + " failed: " + e.getMessage());
+      closeWriter();
+    }
+  }
+
+  private void rotate(File file) {
+    closeWriter();
+    int keep;
+    synchronized (this) {
+      keep = maxFiles;
+    }
+    File oldest = new File(file.getPath() + "." + (keep - 1));
+    //noinspection ResultOfMethodCallIgnored
+    oldest.delete();
+    for (int i = keep - 2; i >= 1; i--) {
+      //noinspection ResultOfMethodCallIgnored
+      new File(file.getPath() + "." + i).renameTo(new File(file.getPath() + "." + (i + 1)));
+    }
+    if (keep > 1) {
+      //noinspection ResultOfMethodCallIgnored
+      file.renameTo(new File(file.getPath() + ".1"));
+    } else {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  private void closeWriter() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException ignored) {
+      }
+      writer = null;
+    }
+  }
+}
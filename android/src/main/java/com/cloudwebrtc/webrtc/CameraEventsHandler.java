@@ -19,66 +19,71 @@ class CameraEventsHandler implements CameraVideoCapturer.CameraEventsHandler {
 
     public void waitForCameraOpen() {
         Log.d(TAG, "CameraEventsHandler.waitForCameraOpen");
-        while (state != CameraState.OPENED && state != CameraState.ERROR) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+        waitForState(CameraState.OPENED);
     }
 
     public void waitForCameraClosed() {
         Log.d(TAG, "CameraEventsHandler.waitForCameraClosed");
-        while (state != CameraState.CLOSED && state != CameraState.ERROR) {
+        waitForState(CameraState.CLOSED);
+    }
+
+    private synchronized void waitForState(CameraState expected) {
+        while (state != expected && state != CameraState.ERROR) {
             try {
-                Thread.sleep(1);
+                wait();
             } catch (InterruptedException e) {
                 e.printStackTrace();
+                Thread.currentThread().interrupt();
+                return;
             }
         }
     }
 
+    private synchronized void setState(CameraState state) {
+        this.state = state;
+        notifyAll();
+    }
+
     // Camera error handler - invoked when camera can not be opened
     // or any camera exception happens on camera thread.
     @Override
     public void onCameraError(String errorDescription) {
         Log.d(TAG, String.format("CameraEventsHandler.onCameraError: errorDescription=%s", errorDescription));
-        state = CameraState.ERROR;
+        setState(CameraState.ERROR);
     }
 
     // Called when camera is disconnected.
     @Override
     public void onCameraDisconnected() {
         Log.d(TAG, "CameraEventsHandler.onCameraDisconnected");
-        state = CameraState.DISCONNECTED;
+        setState(CameraState.DISCONNECTED);
     }
 
     // Invoked when camera stops receiving frames
     @Override
     public void onCameraFreezed(String errorDescription) {
         Log.d(TAG, String.format("CameraEventsHandler.onCameraFreezed: errorDescription=%s", errorDescription));
-        state = CameraState.FREEZED;
+        setState(CameraState.FREEZED);
     }
 
     // Callback invoked when camera is opening.
     @Override
     public void onCameraOpening(String cameraName) {
         Log.d(TAG, String.format("CameraEventsHandler.onCameraOpening: cameraName=%s", cameraName));
-        state = CameraState.OPENING;
+        setState(CameraState.OPENING);
     }
 
     // Callback invoked when first camera frame is available after camera is opened.
     @Override
     public void onFirstFrameAvailable() {
         Log.d(TAG, "CameraEventsHandler.onFirstFrameAvailable");
-        state = CameraState.OPENED;
+        setState(CameraState.OPENED);
     }
 
     // Callback invoked when camera closed.
     @Override
     public void onCameraClosed() {
         Log.d(TAG, "CameraEventsHandler.onFirstFrameAvailable");
-        state = CameraState.CLOSED;
+        setState(CameraState.CLOSED);
     }
 }
@@ -1,13 +1,15 @@
 package com.cloudwebrtc.webrtc;
 
 import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
-import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.MapBuilder;
+import com.cloudwebrtc.webrtc.utils.WebRTCMessageCodec;
 
 import org.webrtc.DataChannel;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Map;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
@@ -26,7 +28,8 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
         this.flutterId = flutterId;
         this.dataChannel = dataChannel;
         eventChannel =
-                new EventChannel(messenger, "FlutterWebRTC/dataChannelEvent" + peerConnectionId + flutterId);
+                new EventChannel(messenger, "FlutterWebRTC/dataChannelEvent" + peerConnectionId + flutterId,
+                        WebRTCMessageCodec.METHOD_CODEC);
         eventChannel.setStreamHandler(this);
     }
 
@@ -60,28 +63,25 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
     
     @Override
     public void onBufferedAmountChange(long amount) {
-        ConstraintsMap params = new ConstraintsMap();
-        params.putString("event", "dataChannelBufferedAmountChange");
-        params.putInt("id", dataChannel.id());
-        params.putLong("bufferedAmount", dataChannel.bufferedAmount());
-        params.putLong("changedAmount", amount);
-        sendEvent(params);
+        sendEvent(MapBuilder.event("dataChannelBufferedAmountChange", 3)
+                .put("id", dataChannel.id())
+                .put("bufferedAmount", dataChannel.bufferedAmount())
+                .put("changedAmount", amount)
+                .build());
     }
 
     @Override
     public void onStateChange() {
-        ConstraintsMap params = new ConstraintsMap();
-        params.putString("event", "dataChannelStateChanged");
-        params.putInt("id", dataChannel.id());
-        params.putString("state", dataChannelStateString(dataChannel.state()));
-        sendEvent(params);
+        sendEvent(MapBuilder.event("dataChannelStateChanged", 2)
+                .put("id", dataChannel.id())
+                .put("state", dataChannelStateString(dataChannel.state()))
+                .build());
     }
 
     @Override
     public void onMessage(DataChannel.Buffer buffer) {
-        ConstraintsMap params = new ConstraintsMap();
-        params.putString("event", "dataChannelReceiveMessage");
-        params.putInt("id", dataChannel.id());
+        MapBuilder params = MapBuilder.event("dataChannelReceiveMessage", 3)
+                .put("id", dataChannel.id());
 
         byte[] bytes;
         if (buffer.data.hasArray()) {
@@ -92,21 +92,19 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
         }
 
         if (buffer.binary) {
-            params.putString("type", "binary");
-            params.putByte("data", bytes);
+            params.put("type", "binary").put("data", bytes);
         } else {
-            params.putString("type", "text");
-            params.putString("data", new String(bytes, StandardCharsets.UTF_8));
+            params.put("type", "text").put("data", new String(bytes, StandardCharsets.UTF_8));
         }
 
-        sendEvent(params);
+        sendEvent(params.build());
     }
 
-    private void sendEvent(ConstraintsMap params) {
+    private void sendEvent(Map<String, Object> event) {
         if (eventSink != null) {
-            eventSink.success(params.toMap());
+            eventSink.success(event);
         } else {
-            eventQueue.add(params.toMap());
+            eventQueue.add(event);
         }
     }
 }
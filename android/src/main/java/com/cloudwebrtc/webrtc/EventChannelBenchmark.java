@@ -0,0 +1,141 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Printer;
+
+import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
+import com.cloudwebrtc.webrtc.utils.MapBuilder;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Pushes synthetic events of a configurable size and rate through the plugin's real event
+ * path (FlutterWebRTCPlugin.sendEvent -> AnyThreadSink -> FlutterWebRTC.Event) from a
+ * background thread, and measures how busy the main looper is while it runs.
+ *
+ * Every event carries a sequence number and a wall-clock send time in microseconds
+ * (elapsedRealtime anchored to currentTimeMillis once, so comparable with Dart's
+ * DateTime.now() to within a millisecond), which the Dart side uses for end-to-end latency.
+ */
+class EventChannelBenchmark {
+  static final String EVENT = "eventChannelBenchmark";
+
+  private final int eventsPerSecond;
+  private final int durationMs;
+  private final Map<String, Object> payload;
+
+  EventChannelBenchmark(int eventsPerSecond, int durationMs, int payloadFields, int fieldBytes) {
+    this.eventsPerSecond = Math.max(1, eventsPerSecond);
+    this.durationMs = Math.max(100, durationMs);
+    char[] chars = new char[Math.max(0, fieldBytes)];
+    Arrays.fill(chars, 'x');
+    String value = new String(chars);
+    int fields = Math.max(0, payloadFields);
+    payload = MapBuilder.newMap(fields);
+    for (int i = 0; i < fields; i++) {
+      payload.put("field" + i, value);
+    }
+  }
+
+  /** Blocks the calling thread for the duration of the run. */
+  Map<String, Object> run() {
+    FlutterWebRTCPlugin plugin = FlutterWebRTCPlugin.sharedSingleton;
+    MainLooperMonitor monitor = new MainLooperMonitor();
+    AnyThreadSink.resetMetrics();
+
+    long anchorWallUs = System.currentTimeMillis() * 1000;
+    long anchorNs = SystemClock.elapsedRealtimeNanos();
+    long intervalNs = 1_000_000_000L / eventsPerSecond;
+    long total = (long) eventsPerSecond * durationMs / 1000;
+
+    monitor.start();
+    long start = SystemClock.elapsedRealtimeNanos();
+    long sent = 0;
+    long behind = 0;
+    for (; sent < total; sent++) {
+      long due = start + sent * intervalNs;
+      long now = SystemClock.elapsedRealtimeNanos();
+      if (due > now) {
+        long waitNs = due - now;
+        try {
+          Thread.sleep(waitNs / 1_000_000, (int) (waitNs % 1_000_000));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      } else if (now - due > intervalNs) {
+        behind++;
+      }
+      long sentUs = anchorWallUs + (SystemClock.elapsedRealtimeNanos() - anchorNs) / 1000;
+      plugin.sendEvent(MapBuilder.event(EVENT, 3)
+              .put("seq", sent)
+              .put("sentUs", sentUs)
+              .put("payload", payload)
+              .build());
+    }
+    long sendElapsedNs = SystemClock.elapsedRealtimeNanos() - start;
+    // give the main looper a moment to drain what is still queued
+    SystemClock.sleep(200);
+    monitor.stop();
+
+    Map<String, Object> result = MapBuilder.newMap(8);
+    result.put("sent", sent);
+    result.put("targetEventsPerSecond", eventsPerSecond);
+    result.put("sendDurationMs", sendElapsedNs / 1_000_000.0);
+    result.put("producerFellBehind", behind);
+    result.put("mainThreadBusyPercent", monitor.busyPercent());
+    result.put("mainThreadLongestMessageMs", monitor.longestMessageNs() / 1_000_000.0);
+    result.put("sinkMetrics", AnyThreadSink.getMetrics());
+    return result;
+  }
+
+  /**
+   * Measures main-thread busy time from the looper's dispatch log, which brackets every
+   * message with ">>>>> Dispatching" and "<<<<< Finished". Replaces any other message
+   * logging printer for the duration of the run.
+   */
+  private static final class MainLooperMonitor implements Printer {
+    private long startNs;
+    private long stopNs;
+    private long dispatchStartNs = -1;
+    private long busyNs;
+    private long longestNs;
+
+    void start() {
+      startNs = SystemClock.elapsedRealtimeNanos();
+      Looper.getMainLooper().setMessageLogging(this);
+    }
+
+    void stop() {
+      Looper.getMainLooper().setMessageLogging(null);
+      stopNs = SystemClock.elapsedRealtimeNanos();
+    }
+
+    @Override
+    public void println(String x) {
+      // called on the main thread only
+      long now = SystemClock.elapsedRealtimeNanos();
+      if (x.startsWith(">")) {
+        dispatchStartNs = now;
+      } else if (x.startsWith("<") && dispatchStartNs >= 0) {
+        long elapsed = now - dispatchStartNs;
+        synchronized (this) {
+          busyNs += elapsed;
+          longestNs = Math.max(longestNs, elapsed);
+        }
+        dispatchStartNs = -1;
+      }
+    }
+
+    synchronized double busyPercent() {
+      long window = stopNs - startNs;
+      return window > 0 ? busyNs * 100.0 / window : 0.0;
+    }
+
+    synchronized long longestMessageNs() {
+      return longestNs;
+    }
+  }
+}
@@ -14,10 +14,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
-import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 
-class FlutterDataPacketCryptor {
+class FlutterDataPacketCryptor implements MethodDispatcher.Module {
     private static final String TAG = "FlutterDataPacketCryptor";
     private final Map<String, DataPacketCryptor> dataCryptos = new HashMap<>();
 
@@ -27,21 +26,12 @@ class FlutterDataPacketCryptor {
         this.frameCryptor = frameCryptor;
     }
 
-    public boolean handleMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
-        String method_name = call.method;
-        Map<String, Object> params = (Map<String, Object>) call.arguments;
-        if (method_name.equals("createDataPacketCryptor")) {
-            createDataPacketCryptor(params, result);
-        } else if(method_name.equals("dataPacketCryptorEncrypt")) {
-            dataPacketCryptorEncrypt(params, result);
-        } else if(method_name.equals("dataPacketCryptorDecrypt")) {
-            dataPacketCryptorDecrypt(params, result);
-        } else if(method_name.equals("dataPacketCryptorDispose")) {
-            dataPacketCryptorDispose(params, result);
-        } else {
-            return false;
-        }
-        return true;
+    @Override
+    public void registerMethods(MethodDispatcher dispatcher) {
+        dispatcher.register("createDataPacketCryptor", (call, result) -> createDataPacketCryptor(call.arguments(), result));
+        dispatcher.register("dataPacketCryptorEncrypt", (call, result) -> dataPacketCryptorEncrypt(call.arguments(), result));
+        dispatcher.register("dataPacketCryptorDecrypt", (call, result) -> dataPacketCryptorDecrypt(call.arguments(), result));
+        dispatcher.register("dataPacketCryptorDispose", (call, result) -> dataPacketCryptorDispose(call.arguments(), result));
     }
 
     private void createDataPacketCryptor(@NonNull Map<String, Object> params, @NonNull MethodChannel.Result result) {
@@ -18,7 +18,6 @@ import java.util.UUID;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
-import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 
@@ -26,7 +25,7 @@ import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 
-public class FlutterRTCFrameCryptor {
+public class FlutterRTCFrameCryptor implements MethodDispatcher.Module {
 
     class FrameCryptorStateObserver  implements FrameCryptor.Observer, EventChannel.StreamHandler {
         public FrameCryptorStateObserver(BinaryMessenger messenger, String frameCryptorId){
@@ -109,43 +108,23 @@ public class FlutterRTCFrameCryptor {
     public FlutterRTCFrameCryptor(StateProvider stateProvider) {
         this.stateProvider = stateProvider;
     }
-    public boolean handleMethodCall(MethodCall call, @NonNull Result result) {
-        String method_name = call.method;
-        Map<String, Object> params = (Map<String, Object>) call.arguments;
-        if (method_name.equals("frameCryptorFactoryCreateFrameCryptor")) {
-            frameCryptorFactoryCreateFrameCryptor(params, result);
-          } else if (method_name.equals("frameCryptorSetKeyIndex")) {
-            frameCryptorSetKeyIndex(params, result);
-          } else if (method_name.equals("frameCryptorGetKeyIndex")) {
-            frameCryptorGetKeyIndex(params, result);
-          } else if (method_name.equals("frameCryptorSetEnabled")) {
-            frameCryptorSetEnabled(params, result);
-          } else if (method_name.equals("frameCryptorGetEnabled")) {
-            frameCryptorGetEnabled(params, result);
-          } else if (method_name.equals("frameCryptorDispose")) {
-            frameCryptorDispose(params, result);
-          } else if (method_name.equals("frameCryptorFactoryCreateKeyProvider")) {
-            frameCryptorFactoryCreateKeyProvider(params, result);
-          }else if (method_name.equals("keyProviderSetSharedKey")) {
-            keyProviderSetSharedKey(params, result);
-          } else if (method_name.equals("keyProviderRatchetSharedKey")) {
-            keyProviderRatchetSharedKey(params, result);
-          }  else if (method_name.equals("keyProviderExportSharedKey")) {
-            keyProviderExportKey(params, result);
-          } else if (method_name.equals("keyProviderSetKey")) {
-            keyProviderSetKey(params, result);
-          } else if (method_name.equals("keyProviderRatchetKey")) {
-            keyProviderRatchetKey(params, result);
-          } else if (method_name.equals("keyProviderExportKey")) {
-            keyProviderExportKey(params, result);
-          } else if (method_name.equals("keyProviderSetSifTrailer")) {
-            keyProviderSetSifTrailer(params, result);
-          } else if (method_name.equals("keyProviderDispose")) {
-            keyProviderDispose(params, result);
-          } else  {
-            return false;
-          }
-        return true;
+    @Override
+    public void registerMethods(MethodDispatcher dispatcher) {
+        dispatcher.register("frameCryptorFactoryCreateFrameCryptor", (call, result) -> frameCryptorFactoryCreateFrameCryptor(call.arguments(), result));
+        dispatcher.register("frameCryptorSetKeyIndex", (call, result) -> frameCryptorSetKeyIndex(call.arguments(), result));
+        dispatcher.register("frameCryptorGetKeyIndex", (call, result) -> frameCryptorGetKeyIndex(call.arguments(), result));
+        dispatcher.register("frameCryptorSetEnabled", (call, result) -> frameCryptorSetEnabled(call.arguments(), result));
+        dispatcher.register("frameCryptorGetEnabled", (call, result) -> frameCryptorGetEnabled(call.arguments(), result));
+        dispatcher.register("frameCryptorDispose", (call, result) -> frameCryptorDispose(call.arguments(), result));
+        dispatcher.register("frameCryptorFactoryCreateKeyProvider", (call, result) -> frameCryptorFactoryCreateKeyProvider(call.arguments(), result));
+        dispatcher.register("keyProviderSetSharedKey", (call, result) -> keyProviderSetSharedKey(call.arguments(), result));
+        dispatcher.register("keyProviderRatchetSharedKey", (call, result) -> keyProviderRatchetSharedKey(call.arguments(), result));
+        dispatcher.register("keyProviderExportSharedKey", (call, result) -> keyProviderExportKey(call.arguments(), result));
+        dispatcher.register("keyProviderSetKey", (call, result) -> keyProviderSetKey(call.arguments(), result));
+        dispatcher.register("keyProviderRatchetKey", (call, result) -> keyProviderRatchetKey(call.arguments(), result));
+        dispatcher.register("keyProviderExportKey", (call, result) -> keyProviderExportKey(call.arguments(), result));
+        dispatcher.register("keyProviderSetSifTrailer", (call, result) -> keyProviderSetSifTrailer(call.arguments(), result));
+        dispatcher.register("keyProviderDispose", (call, result) -> keyProviderDispose(call.arguments(), result));
     }
 
     public FrameCryptorAlgorithm frameCryptorAlgorithmFromInt(int algorithm) {
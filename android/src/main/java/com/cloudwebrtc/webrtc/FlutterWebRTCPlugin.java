@@ -15,6 +15,7 @@ import com.cloudwebrtc.webrtc.audio.AudioProcessingController;
 import com.cloudwebrtc.webrtc.audio.AudioSwitchManager;
 import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.WebRTCMessageCodec;
 
 import org.webrtc.ExternalAudioProcessingFactory;
 import org.webrtc.MediaStreamTrack;
@@ -123,9 +124,13 @@ public class FlutterWebRTCPlugin implements FlutterPlugin, ActivityAware, EventC
                                 TextureRegistry textureRegistry) {
         AudioSwitchManager.instance = new AudioSwitchManager(context);
         methodCallHandler = new MethodCallHandlerImpl(context, messenger, textureRegistry);
-        methodChannel = new MethodChannel(messenger, "FlutterWebRTC.Method");
+        // Handle method calls on a background task queue; MethodCallHandlerImpl hops to the
+        // main thread only for the calls that need it.
+        BinaryMessenger.TaskQueue taskQueue = messenger.makeBackgroundTaskQueue();
+        methodChannel = new MethodChannel(messenger, "FlutterWebRTC.Method",
+                WebRTCMessageCodec.METHOD_CODEC, taskQueue);
         methodChannel.setMethodCallHandler(methodCallHandler);
-        eventChannel = new EventChannel( messenger,"FlutterWebRTC.Event");
+        eventChannel = new EventChannel(messenger, "FlutterWebRTC.Event", WebRTCMessageCodec.METHOD_CODEC);
         eventChannel.setStreamHandler(this);
 
         // Register frame stream channels
@@ -38,15 +38,21 @@ import com.cloudwebrtc.webrtc.audio.AudioUtils;
 import com.cloudwebrtc.webrtc.audio.LocalAudioTrack;
 import com.cloudwebrtc.webrtc.record.AudioChannel;
 import com.cloudwebrtc.webrtc.record.AudioSamplesInterceptor;
+import com.cloudwebrtc.webrtc.record.EncoderConfigCache;
 import com.cloudwebrtc.webrtc.record.MediaRecorderImpl;
+import com.cloudwebrtc.webrtc.record.MixedAudioSamplesInterceptor;
 import com.cloudwebrtc.webrtc.record.OutputAudioSamplesInterceptor;
+import com.cloudwebrtc.webrtc.record.RecordingProfile;
+import com.cloudwebrtc.webrtc.record.SegmentPolicy;
 import com.cloudwebrtc.webrtc.utils.Callback;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
+import com.cloudwebrtc.webrtc.utils.MapBuilder;
 import com.cloudwebrtc.webrtc.utils.MediaConstraintsUtils;
 import com.cloudwebrtc.webrtc.utils.ObjectType;
 import com.cloudwebrtc.webrtc.utils.PermissionUtils;
+import com.cloudwebrtc.webrtc.utils.WorkerPool;
 import com.cloudwebrtc.webrtc.video.LocalVideoTrack;
 import com.cloudwebrtc.webrtc.video.VideoCapturerInfo;
 
@@ -76,9 +82,9 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.flutter.plugin.common.MethodChannel.Result;
 
@@ -103,8 +109,9 @@ public class GetUserMediaImpl {
 
     static final String TAG = FlutterWebRTCPlugin.TAG;
 
-    private final Map<String, VideoCapturerInfoEx> mVideoCapturers = new HashMap<>();
-    private final Map<String, SurfaceTextureHelper> mSurfaceTextureHelpers = new HashMap<>();
+    // accessed from the capture worker pool as well as the main thread
+    private final Map<String, VideoCapturerInfoEx> mVideoCapturers = new ConcurrentHashMap<>();
+    private final Map<String, SurfaceTextureHelper> mSurfaceTextureHelpers = new ConcurrentHashMap<>();
     private final StateProvider stateProvider;
     private final Context applicationContext;
 
@@ -112,11 +119,14 @@ public class GetUserMediaImpl {
 
     final AudioSamplesInterceptor inputSamplesInterceptor = new AudioSamplesInterceptor();
     private OutputAudioSamplesInterceptor outputSamplesInterceptor = null;
+    final MixedAudioSamplesInterceptor mixedSamplesInterceptor = new MixedAudioSamplesInterceptor();
+    private EncoderConfigCache encoderConfigCache = null;
     JavaAudioDeviceModule audioDeviceModule;
     private final SparseArray<MediaRecorderImpl> mediaRecorders = new SparseArray<>();
     private AudioDeviceInfo preferredInput = null;
     private boolean isTorchOn;
     private Intent mediaProjectionData = null;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
 
     public void screenRequestPermissions(ResultReceiver resultReceiver) {
@@ -455,7 +465,8 @@ public class GetUserMediaImpl {
 
         /// Only systems pre-M, no additional permission request is needed.
         if (VERSION.SDK_INT < VERSION_CODES.M) {
-            getUserMedia(constraints, result, mediaStream, requestPermissions);
+            WorkerPool.CAPTURE.execute(() ->
+                    getUserMedia(constraints, result, mediaStream, requestPermissions));
             return;
         }
 
@@ -466,7 +477,8 @@ public class GetUserMediaImpl {
                     public void invoke(Object... args) {
                         List<String> grantedPermissions = (List<String>) args[0];
 
-                        getUserMedia(constraints, result, mediaStream, grantedPermissions);
+                        WorkerPool.CAPTURE.execute(() ->
+                                getUserMedia(constraints, result, mediaStream, grantedPermissions));
                     }
                 },
                 /* errorCallback */ new Callback() {
@@ -897,10 +909,11 @@ public class GetUserMediaImpl {
 
         final Activity activity = stateProvider.getActivity();
         final Context context = stateProvider.getApplicationContext();
-        PermissionUtils.requestPermissions(
+        // the permission fragment has to be committed on the main thread
+        mainHandler.post(() -> PermissionUtils.requestPermissions(
                 context,
                 activity,
-                permissions.toArray(new String[permissions.size()]), callback);
+                permissions.toArray(new String[permissions.size()]), callback));
     }
 
     void switchCamera(String id, Result result) {
@@ -949,10 +962,13 @@ public class GetUserMediaImpl {
      * @param path         to the file for record
      * @param videoTrack   to record or null if only audio needed
      * @param audioChannel channel for recording or null
+     * @param profile      encoder settings
+     * @param segments     split the recording into several files, or null for a single file
      * @throws Exception lot of different exceptions, pass back to dart layer to print them at least
      */
     void startRecordingToFile(
-            String path, Integer id, @Nullable VideoTrack videoTrack, @Nullable AudioChannel audioChannel)
+            String path, Integer id, List<VideoTrack> videoTracks, @Nullable AudioChannel audioChannel,
+            RecordingProfile profile, @Nullable SegmentPolicy segments)
             throws Exception {
         AudioSamplesInterceptor interceptor = null;
         if (audioChannel == AudioChannel.INPUT) {
@@ -962,8 +978,26 @@ public class GetUserMediaImpl {
                 outputSamplesInterceptor = new OutputAudioSamplesInterceptor(audioDeviceModule);
             }
             interceptor = outputSamplesInterceptor;
+        } else if (audioChannel == AudioChannel.MIXED) {
+            interceptor = mixedSamplesInterceptor;
         }
-        MediaRecorderImpl mediaRecorder = new MediaRecorderImpl(id, videoTrack, interceptor);
+        MediaRecorderImpl.SegmentListener segmentListener = null;
+        if (segments != null) {
+            segmentListener = (file, index, durationUs, bytes, removed) ->
+                    FlutterWebRTCPlugin.sharedSingleton.sendEvent(MapBuilder.event("onRecordingSegment", 6)
+                            .put("recorderId", id)
+                            .put("path", file.getAbsolutePath())
+                            .put("index", index)
+                            .put("durationMs", durationUs / 1000)
+                            .put("bytes", bytes)
+                            .put("removedPath", removed != null ? removed.getAbsolutePath() : null)
+                            .build());
+        }
+        if (encoderConfigCache == null) {
+            encoderConfigCache = new EncoderConfigCache(applicationContext);
+        }
+        MediaRecorderImpl mediaRecorder = new MediaRecorderImpl(id, videoTracks, interceptor, profile,
+                segments, segmentListener, encoderConfigCache);
         mediaRecorder.startRecording(new File(path));
         mediaRecorders.append(id, mediaRecorder);
     }
@@ -0,0 +1,177 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.MapBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Runs an ordered list of method calls through the dispatcher with a single reply.
+ * Each operation starts only after the previous one has delivered its result, so an
+ * async step such as createOffer completes before setLocalDescription runs.
+ *
+ * Operation map keys: method, args. Anywhere in args, {"$ref": index} is replaced with the
+ * result of the earlier operation at index, e.g. createOffer's description as
+ * setLocalDescription's "description". Each entry of the reply's results list is either
+ * {"result": value} or {"error": code, "message": message}. An operation that hasn't replied
+ * within the step timeout gets a "timeout" error entry and its late reply is ignored.
+ */
+class MethodBatch {
+  private final MethodDispatcher dispatcher;
+  private final Executor executor;
+  private final List<Map<String, Object>> operations;
+  private final boolean stopOnError;
+  private final long stepTimeoutMs;
+  private final Result result;
+  private final ArrayList<Object> results;
+  private final Handler timeoutHandler = new Handler(Looper.getMainLooper());
+  private int index = 0;
+
+  MethodBatch(MethodDispatcher dispatcher, Executor executor, List<Map<String, Object>> operations,
+              boolean stopOnError, long stepTimeoutMs, Result result) {
+    this.dispatcher = dispatcher;
+    this.executor = executor;
+    this.operations = operations;
+    this.stopOnError = stopOnError;
+    this.stepTimeoutMs = stepTimeoutMs;
+    this.result = result;
+    this.results = MapBuilder.newList(operations.size());
+  }
+
+  void start() {
+    executor.execute(this::next);
+  }
+
+  private void next() {
+    if (index == operations.size()) {
+      finish();
+      return;
+    }
+    Map<String, Object> operation = operations.get(index++);
+    Object method = operation.get("method");
+    if (!(method instanceof String) || "batch".equals(method)) {
+      complete(errorEntry("batch", "invalid method: " + method), true);
+      return;
+    }
+    Object args;
+    try {
+      args = resolve(operation.get("args"));
+    } catch (IllegalArgumentException e) {
+      complete(errorEntry("batch", e.getMessage()), true);
+      return;
+    }
+    StepResult step = new StepResult((String) method);
+    if (stepTimeoutMs > 0) {
+      timeoutHandler.postDelayed(step, stepTimeoutMs);
+    }
+    if (!dispatcher.dispatch(new MethodCall((String) method, args), step)) {
+      step.notImplemented();
+    }
+  }
+
+  /** Copies args with every {"$ref": index} replaced by that earlier operation's result. */
+  private Object resolve(@Nullable Object value) {
+    if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      if (map.size() == 1 && map.containsKey("$ref")) {
+        Object ref = map.get("$ref");
+        if (!(ref instanceof Integer) || (Integer) ref < 0 || (Integer) ref >= results.size()) {
+          throw new IllegalArgumentException("invalid $ref: " + ref);
+        }
+        Map<?, ?> entry = (Map<?, ?>) results.get((Integer) ref);
+        if (!entry.containsKey("result")) {
+          throw new IllegalArgumentException("$ref " + ref + " failed");
+        }
+        return entry.get("result");
+      }
+      Map<Object, Object> resolved = new HashMap<>(map.size());
+      for (Map.Entry<?, ?> e : map.entrySet()) {
+        resolved.put(e.getKey(), resolve(e.getValue()));
+      }
+      return resolved;
+    }
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      List<Object> resolved = new ArrayList<>(list.size());
+      for (Object item : list) {
+        resolved.add(resolve(item));
+      }
+      return resolved;
+    }
+    return value;
+  }
+
+  private void complete(Map<String, Object> entry, boolean failed) {
+    results.add(entry);
+    if (failed && stopOnError) {
+      finish();
+    } else {
+      // hop back to the executor so a long run of synchronous steps doesn't recurse
+      executor.execute(this::next);
+    }
+  }
+
+  private void finish() {
+    result.success(MapBuilder.of(2)
+            .put("results", results)
+            .put("completed", results.size() == operations.size())
+            .build());
+  }
+
+  private static Map<String, Object> errorEntry(String code, @Nullable String message) {
+    return MapBuilder.of(2).put("error", code).put("message", message).build();
+  }
+
+  private class StepResult implements Result, Runnable {
+    private final String method;
+    private final AtomicBoolean replied = new AtomicBoolean();
+
+    StepResult(String method) {
+      this.method = method;
+    }
+
+    /** Step timeout. */
+    @Override
+    public void run() {
+      if (replied.compareAndSet(false, true)) {
+        complete(errorEntry("timeout", method + " did not reply within " + stepTimeoutMs + "ms"), true);
+      }
+    }
+
+    @Override
+    public void success(@Nullable Object o) {
+      if (replied.compareAndSet(false, true)) {
+        timeoutHandler.removeCallbacks(this);
+        complete(MapBuilder.of(1).put("result", o).build(), false);
+      }
+    }
+
+    @Override
+    public void error(String code, @Nullable String message, @Nullable Object details) {
+      if (replied.compareAndSet(false, true)) {
+        timeoutHandler.removeCallbacks(this);
+        complete(errorEntry(code, message), true);
+      }
+    }
+
+    @Override
+    public void notImplemented() {
+      if (replied.compareAndSet(false, true)) {
+        timeoutHandler.removeCallbacks(this);
+        complete(errorEntry("notImplemented", "method not implemented"), true);
+      }
+    }
+  }
+}
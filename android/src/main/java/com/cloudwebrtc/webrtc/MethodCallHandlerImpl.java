@@ -30,15 +30,20 @@ import com.cloudwebrtc.webrtc.audio.LocalAudioTrack;
 import com.cloudwebrtc.webrtc.audio.PlaybackSamplesReadyCallbackAdapter;
 import com.cloudwebrtc.webrtc.audio.RecordSamplesReadyCallbackAdapter;
 import com.cloudwebrtc.webrtc.record.AudioChannel;
+import com.cloudwebrtc.webrtc.record.RecordingProfile;
+import com.cloudwebrtc.webrtc.record.SegmentPolicy;
 import com.cloudwebrtc.webrtc.record.FrameCapturer;
 import com.cloudwebrtc.webrtc.utils.AnyThreadResult;
+import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.Callback;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
+import com.cloudwebrtc.webrtc.utils.MapBuilder;
 import com.cloudwebrtc.webrtc.utils.ObjectType;
 import com.cloudwebrtc.webrtc.utils.PermissionUtils;
 import com.cloudwebrtc.webrtc.utils.Utils;
+import com.cloudwebrtc.webrtc.utils.WorkerPool;
 import com.cloudwebrtc.webrtc.video.VideoCapturerInfo;
 import com.cloudwebrtc.webrtc.video.camera.CameraUtils;
 import com.cloudwebrtc.webrtc.video.camera.Point;
@@ -52,7 +57,6 @@ import org.webrtc.EglBase;
 import org.webrtc.IceCandidate;
 import org.webrtc.Logging;
 import org.webrtc.Logging.Severity;
-import org.webrtc.Loggable;
 import org.webrtc.MediaConstraints;
 import org.webrtc.MediaConstraints.KeyValuePair;
 import org.webrtc.MediaStream;
@@ -88,12 +92,13 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
@@ -106,13 +111,15 @@ import io.flutter.view.TextureRegistry.SurfaceTextureEntry;
 public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   static public final String TAG = "FlutterWebRTCPlugin";
 
-  private final Map<String, PeerConnectionObserver> mPeerConnectionObservers = new HashMap<>();
+  // Method calls arrive on a background task queue, while main-thread methods and
+  // SDK callbacks run on other threads, so the shared registries are concurrent.
+  private final Map<String, PeerConnectionObserver> mPeerConnectionObservers = new ConcurrentHashMap<>();
   private final BinaryMessenger messenger;
   private final Context context;
   private final TextureRegistry textures;
   private PeerConnectionFactory mFactory;
-  private final Map<String, MediaStream> localStreams = new HashMap<>();
-  private final Map<String, LocalTrack> localTracks = new HashMap<>();
+  private final Map<String, MediaStream> localStreams = new ConcurrentHashMap<>();
+  private final Map<String, LocalTrack> localTracks = new ConcurrentHashMap<>();
   private final LongSparseArray<FlutterRTCVideoRenderer> renders = new LongSparseArray<>();
 
   // Public getter for renderer access (used by FrameStreamer)
@@ -146,25 +153,17 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   public AudioProcessingController audioProcessingController;
 
-  public static class LogSink implements Loggable {
-    @Override
-    public void onLogMessage(String message, Severity sev, String tag) {
-      ConstraintsMap params = new ConstraintsMap();
-      params.putString("event", "onLogData");
-      params.putString("data", message);
-      FlutterWebRTCPlugin.sharedSingleton.sendEvent(params.toMap());
-    }
-  }
-
-  ExecutorService executor = Executors.newSingleThreadExecutor();
   Handler mainHandler = new Handler(Looper.getMainLooper());
 
-  public static LogSink logSink = new LogSink();
+  private final MethodDispatcher dispatcher = new MethodDispatcher();
+
+  static final BufferedLogSink logSink = new BufferedLogSink();
 
   MethodCallHandlerImpl(Context context, BinaryMessenger messenger, TextureRegistry textureRegistry) {
     this.context = context;
     this.textures = textureRegistry;
     this.messenger = messenger;
+    registerMethods();
   }
 
   static private void resultError(String method, String error, Result result) {
@@ -189,7 +188,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     mPeerConnectionObservers.clear();
   }
   private void initialize(boolean bypassVoiceProcessing, int networkIgnoreMask, boolean forceSWCodec, List<String> forceSWCodecList,
-  @Nullable ConstraintsMap androidAudioConfiguration, Severity logSeverity) {
+  @Nullable ConstraintsMap androidAudioConfiguration, Severity logSeverity, boolean encodedFrameTap) {
     if (mFactory != null) {
       return;
     }
@@ -208,6 +207,9 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
     dataPacketCryptor = new FlutterDataPacketCryptor(frameCryptor);
 
+    dispatcher.registerModule(frameCryptor);
+    dispatcher.registerModule(dataPacketCryptor);
+
     AudioAttributes audioAttributes = null;
     if (androidAudioConfiguration != null) {
       Integer usageType = AudioUtils.getAudioAttributesUsageTypeForString(
@@ -250,6 +252,8 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     audioDeviceModuleBuilder.setPlaybackSamplesReadyCallback(playbackSamplesReadyCallbackAdapter);
 
     recordSamplesReadyCallbackAdapter.addCallback(getUserMediaImpl.inputSamplesInterceptor);
+    recordSamplesReadyCallbackAdapter.addCallback(getUserMediaImpl.mixedSamplesInterceptor);
+    playbackSamplesReadyCallbackAdapter.addCallback(getUserMediaImpl.mixedSamplesInterceptor);
 
     recordSamplesReadyCallbackAdapter.addCallback(new JavaAudioDeviceModule.SamplesReadyCallback() {
       @Override
@@ -295,6 +299,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
     videoDecoderFactory.setForceSWCodec(forceSWCodec);
     videoDecoderFactory.setForceSWCodecList(forceSWCodecList);
+    videoDecoderFactory.setEncodedFrameTap(encodedFrameTap);
     videoEncoderFactory.setForceSWCodec(forceSWCodec);
     videoEncoderFactory.setForceSWCodecList(forceSWCodecList);
 
@@ -310,781 +315,872 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   @Override
   public void onMethodCall(MethodCall call, @NonNull Result notSafeResult) {
-
     final AnyThreadResult result = new AnyThreadResult(notSafeResult);
-    switch (call.method) {
-      case "initialize": {
-        int networkIgnoreMask = Options.ADAPTER_TYPE_UNKNOWN;
-        Map<String, Object> options = call.argument("options");
-        ConstraintsMap constraintsMap = new ConstraintsMap(options);
-        if (constraintsMap.hasKey("networkIgnoreMask")
-                && constraintsMap.getType("networkIgnoreMask") == ObjectType.Array) {
-          final ConstraintsArray ignoredAdapters = constraintsMap.getArray("networkIgnoreMask");
-          if (ignoredAdapters != null) {
-            for (Object adapter : ignoredAdapters.toArrayList()) {
-              switch (adapter.toString()) {
-                case "adapterTypeEthernet":
-                  networkIgnoreMask += Options.ADAPTER_TYPE_ETHERNET;
-                  break;
-                case "adapterTypeWifi":
-                  networkIgnoreMask += Options.ADAPTER_TYPE_WIFI;
-                  break;
-                case "adapterTypeCellular":
-                  networkIgnoreMask += Options.ADAPTER_TYPE_CELLULAR;
-                  break;
-                case "adapterTypeVpn":
-                  networkIgnoreMask += Options.ADAPTER_TYPE_VPN;
-                  break;
-                case "adapterTypeLoopback":
-                  networkIgnoreMask += Options.ADAPTER_TYPE_LOOPBACK;
-                  break;
-                case "adapterTypeAny":
-                  networkIgnoreMask += Options.ADAPTER_TYPE_ANY;
-                  break;
-              }
+    if (!dispatcher.dispatch(call, result)) {
+      result.notImplemented();
+    }
+  }
+
+  private void registerMethods() {
+    dispatcher.register("initialize", (call, result) -> {
+      int networkIgnoreMask = Options.ADAPTER_TYPE_UNKNOWN;
+      Map<String, Object> options = call.argument("options");
+      ConstraintsMap constraintsMap = new ConstraintsMap(options);
+      if (constraintsMap.hasKey("networkIgnoreMask")
+              && constraintsMap.getType("networkIgnoreMask") == ObjectType.Array) {
+        final ConstraintsArray ignoredAdapters = constraintsMap.getArray("networkIgnoreMask");
+        if (ignoredAdapters != null) {
+          for (Object adapter : ignoredAdapters.toArrayList()) {
+            switch (adapter.toString()) {
+              case "adapterTypeEthernet":
+                networkIgnoreMask += Options.ADAPTER_TYPE_ETHERNET;
+                break;
+              case "adapterTypeWifi":
+                networkIgnoreMask += Options.ADAPTER_TYPE_WIFI;
+                break;
+              case "adapterTypeCellular":
+                networkIgnoreMask += Options.ADAPTER_TYPE_CELLULAR;
+                break;
+              case "adapterTypeVpn":
+                networkIgnoreMask += Options.ADAPTER_TYPE_VPN;
+                break;
+              case "adapterTypeLoopback":
+                networkIgnoreMask += Options.ADAPTER_TYPE_LOOPBACK;
+                break;
+              case "adapterTypeAny":
+                networkIgnoreMask += Options.ADAPTER_TYPE_ANY;
+                break;
             }
-
-          }
-        }
-        boolean forceSWCodec = false;
-        if (constraintsMap.hasKey("forceSWCodec")
-                && constraintsMap.getType("forceSWCodec") == ObjectType.Boolean) {
-          final boolean v = constraintsMap.getBoolean("forceSWCodec");
-          forceSWCodec = v;
-        }
-        List<String> forceSWCodecList = new ArrayList<>();
-        if(constraintsMap.hasKey("forceSWCodecList")
-                && constraintsMap.getType("forceSWCodecList") == ObjectType.Array) {
-          final List<Object> array = constraintsMap.getListArray("forceSWCodecList");
-          for(Object v : array) {
-            forceSWCodecList.add(v.toString());
           }
-        } else {
-          // disable HW Codec for VP9 by default.
-          forceSWCodecList.add("VP9");
-        }
-
-        ConstraintsMap androidAudioConfiguration = null;
-        if (constraintsMap.hasKey("androidAudioConfiguration")
-                && constraintsMap.getType("androidAudioConfiguration") == ObjectType.Map) {
-            androidAudioConfiguration = constraintsMap.getMap("androidAudioConfiguration");
-        }
-        boolean enableBypassVoiceProcessing = false;
-        if(options.get("bypassVoiceProcessing") != null) {
-          enableBypassVoiceProcessing = (boolean)options.get("bypassVoiceProcessing");
-        }
 
-        Severity logSeverity = Severity.LS_NONE;
-        if (constraintsMap.hasKey("logSeverity")
-                && constraintsMap.getType("logSeverity") == ObjectType.String) {
-          String logSeverityStr = constraintsMap.getString("logSeverity");
-          logSeverity = str2LogSeverity(logSeverityStr);
         }
-
-        initialize(enableBypassVoiceProcessing, networkIgnoreMask, forceSWCodec, forceSWCodecList, androidAudioConfiguration, logSeverity);
-        result.success(null);
-        break;
-      }
-      case "createPeerConnection": {
-        Map<String, Object> constraints = call.argument("constraints");
-        Map<String, Object> configuration = call.argument("configuration");
-        String peerConnectionId = peerConnectionInit(new ConstraintsMap(configuration),
-                new ConstraintsMap((constraints)));
-        ConstraintsMap res = new ConstraintsMap();
-        res.putString("peerConnectionId", peerConnectionId);
-        result.success(res.toMap());
-        break;
-      }
-      case "getUserMedia": {
-        Map<String, Object> constraints = call.argument("constraints");
-        ConstraintsMap constraintsMap = new ConstraintsMap(constraints);
-        getUserMedia(constraintsMap, result);
-        break;
-      }
-      case "createLocalMediaStream":
-        createLocalMediaStream(result);
-        break;
-      case "getSources":
-        getSources(result);
-        break;
-      case "createOffer": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        Map<String, Object> constraints = call.argument("constraints");
-        peerConnectionCreateOffer(peerConnectionId, new ConstraintsMap(constraints), result);
-        break;
       }
-      case "createAnswer": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        Map<String, Object> constraints = call.argument("constraints");
-        peerConnectionCreateAnswer(peerConnectionId, new ConstraintsMap(constraints), result);
-        break;
-      }
-      case "mediaStreamGetTracks": {
-        String streamId = call.argument("streamId");
-        MediaStream stream = getStreamForId(streamId, "");
-        Map<String, Object> resultMap = new HashMap<>();
-        List<Object> audioTracks = new ArrayList<>();
-        List<Object> videoTracks = new ArrayList<>();
-        for (AudioTrack track : stream.audioTracks) {
-          localTracks.put(track.id(), new LocalAudioTrack(track));
-          Map<String, Object> trackMap = new HashMap<>();
-          trackMap.put("enabled", track.enabled());
-          trackMap.put("id", track.id());
-          trackMap.put("kind", track.kind());
-          trackMap.put("label", track.id());
-          trackMap.put("readyState", "live");
-          trackMap.put("remote", false);
-          audioTracks.add(trackMap);
-        }
-        for (VideoTrack track : stream.videoTracks) {
-          localTracks.put(track.id(), new LocalVideoTrack(track));
-          Map<String, Object> trackMap = new HashMap<>();
-          trackMap.put("enabled", track.enabled());
-          trackMap.put("id", track.id());
-          trackMap.put("kind", track.kind());
-          trackMap.put("label", track.id());
-          trackMap.put("readyState", "live");
-          trackMap.put("remote", false);
-          videoTracks.add(trackMap);
+      boolean forceSWCodec = false;
+      if (constraintsMap.hasKey("forceSWCodec")
+              && constraintsMap.getType("forceSWCodec") == ObjectType.Boolean) {
+        final boolean v = constraintsMap.getBoolean("forceSWCodec");
+        forceSWCodec = v;
+      }
+      List<String> forceSWCodecList = new ArrayList<>();
+      if(constraintsMap.hasKey("forceSWCodecList")
+              && constraintsMap.getType("forceSWCodecList") == ObjectType.Array) {
+        final List<Object> array = constraintsMap.getListArray("forceSWCodecList");
+        for(Object v : array) {
+          forceSWCodecList.add(v.toString());
         }
-        resultMap.put("audioTracks", audioTracks);
-        resultMap.put("videoTracks", videoTracks);
-        result.success(resultMap);
-        break;
+      } else {
+        // disable HW Codec for VP9 by default.
+        forceSWCodecList.add("VP9");
       }
-      case "addStream": {
-        String streamId = call.argument("streamId");
-        String peerConnectionId = call.argument("peerConnectionId");
-        peerConnectionAddStream(streamId, peerConnectionId, result);
-        break;
+
+      ConstraintsMap androidAudioConfiguration = null;
+      if (constraintsMap.hasKey("androidAudioConfiguration")
+              && constraintsMap.getType("androidAudioConfiguration") == ObjectType.Map) {
+          androidAudioConfiguration = constraintsMap.getMap("androidAudioConfiguration");
       }
-      case "removeStream": {
-        String streamId = call.argument("streamId");
-        String peerConnectionId = call.argument("peerConnectionId");
-        peerConnectionRemoveStream(streamId, peerConnectionId, result);
-        break;
+      boolean enableBypassVoiceProcessing = false;
+      if(options.get("bypassVoiceProcessing") != null) {
+        enableBypassVoiceProcessing = (boolean)options.get("bypassVoiceProcessing");
       }
-      case "setLocalDescription": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        Map<String, Object> description = call.argument("description");
-        peerConnectionSetLocalDescription(new ConstraintsMap(description), peerConnectionId,
-                result);
-        break;
+
+      Severity logSeverity = Severity.LS_NONE;
+      if (constraintsMap.hasKey("logSeverity")
+              && constraintsMap.getType("logSeverity") == ObjectType.String) {
+        String logSeverityStr = constraintsMap.getString("logSeverity");
+        logSeverity = str2LogSeverity(logSeverityStr);
       }
-      case "setRemoteDescription": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        Map<String, Object> description = call.argument("description");
-        peerConnectionSetRemoteDescription(new ConstraintsMap(description), peerConnectionId,
-                result);
-        break;
+
+      boolean encodedFrameTap = false;
+      if (constraintsMap.hasKey("encodedFrameTap")
+              && constraintsMap.getType("encodedFrameTap") == ObjectType.Boolean) {
+        encodedFrameTap = constraintsMap.getBoolean("encodedFrameTap");
       }
-      case "sendDtmf": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String tone = call.argument("tone");
-        int duration = call.argument("duration");
-        int gap = call.argument("gap");
-        PeerConnection peerConnection = getPeerConnection(peerConnectionId);
-        if (peerConnection != null) {
-          RtpSender audioSender = null;
-          for (RtpSender sender : peerConnection.getSenders()) {
-
-            if (sender != null && sender.track() != null && sender.track().kind().equals("audio")) {
-              audioSender = sender;
-            }
-          }
-          if (audioSender != null) {
-            DtmfSender dtmfSender = audioSender.dtmf();
-            dtmfSender.insertDtmf(tone, duration, gap);
+
+      initialize(enableBypassVoiceProcessing, networkIgnoreMask, forceSWCodec, forceSWCodecList, androidAudioConfiguration, logSeverity, encodedFrameTap);
+      result.success(null);
+    });
+    dispatcher.register("createPeerConnection", (call, result) -> {
+      Map<String, Object> constraints = call.argument("constraints");
+      Map<String, Object> configuration = call.argument("configuration");
+      String peerConnectionId = peerConnectionInit(new ConstraintsMap(configuration),
+              new ConstraintsMap((constraints)));
+      ConstraintsMap res = new ConstraintsMap();
+      res.putString("peerConnectionId", peerConnectionId);
+      result.success(res.toMap());
+    });
+    dispatcher.register("getUserMedia", (call, result) -> {
+      Map<String, Object> constraints = call.argument("constraints");
+      ConstraintsMap constraintsMap = new ConstraintsMap(constraints);
+      getUserMedia(constraintsMap, result);
+    });
+    dispatcher.register("createLocalMediaStream", (call, result) -> {
+      createLocalMediaStream(result);
+    });
+    dispatcher.registerOnMainThread("getSources", (call, result) -> {
+      getSources(result);
+    });
+    dispatcher.register("createOffer", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      Map<String, Object> constraints = call.argument("constraints");
+      peerConnectionCreateOffer(peerConnectionId, new ConstraintsMap(constraints), result);
+    });
+    dispatcher.register("createAnswer", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      Map<String, Object> constraints = call.argument("constraints");
+      peerConnectionCreateAnswer(peerConnectionId, new ConstraintsMap(constraints), result);
+    });
+    dispatcher.register("mediaStreamGetTracks", (call, result) -> {
+      String streamId = call.argument("streamId");
+      MediaStream stream = getStreamForId(streamId, "");
+      Map<String, Object> resultMap = new HashMap<>();
+      List<Object> audioTracks = new ArrayList<>();
+      List<Object> videoTracks = new ArrayList<>();
+      for (AudioTrack track : stream.audioTracks) {
+        localTracks.put(track.id(), new LocalAudioTrack(track));
+        Map<String, Object> trackMap = new HashMap<>();
+        trackMap.put("enabled", track.enabled());
+        trackMap.put("id", track.id());
+        trackMap.put("kind", track.kind());
+        trackMap.put("label", track.id());
+        trackMap.put("readyState", "live");
+        trackMap.put("remote", false);
+        audioTracks.add(trackMap);
+      }
+      for (VideoTrack track : stream.videoTracks) {
+        localTracks.put(track.id(), new LocalVideoTrack(track));
+        Map<String, Object> trackMap = new HashMap<>();
+        trackMap.put("enabled", track.enabled());
+        trackMap.put("id", track.id());
+        trackMap.put("kind", track.kind());
+        trackMap.put("label", track.id());
+        trackMap.put("readyState", "live");
+        trackMap.put("remote", false);
+        videoTracks.add(trackMap);
+      }
+      resultMap.put("audioTracks", audioTracks);
+      resultMap.put("videoTracks", videoTracks);
+      result.success(resultMap);
+    });
+    dispatcher.register("addStream", (call, result) -> {
+      String streamId = call.argument("streamId");
+      String peerConnectionId = call.argument("peerConnectionId");
+      peerConnectionAddStream(streamId, peerConnectionId, result);
+    });
+    dispatcher.register("removeStream", (call, result) -> {
+      String streamId = call.argument("streamId");
+      String peerConnectionId = call.argument("peerConnectionId");
+      peerConnectionRemoveStream(streamId, peerConnectionId, result);
+    });
+    dispatcher.register("setLocalDescription", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      Map<String, Object> description = call.argument("description");
+      peerConnectionSetLocalDescription(new ConstraintsMap(description), peerConnectionId,
+              result);
+    });
+    dispatcher.register("setRemoteDescription", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      Map<String, Object> description = call.argument("description");
+      peerConnectionSetRemoteDescription(new ConstraintsMap(description), peerConnectionId,
+              result);
+    });
+    dispatcher.register("sendDtmf", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String tone = call.argument("tone");
+      int duration = call.argument("duration");
+      int gap = call.argument("gap");
+      PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+      if (pco != null && pco.getPeerConnection() != null) {
+        RtpSender audioSender = null;
+        for (RtpSender sender : pco.senders()) {
+
+          if (sender != null && sender.track() != null && sender.track().kind().equals("audio")) {
+            audioSender = sender;
           }
-          result.success("success");
-        } else {
-          resultError("dtmf", "peerConnection is null", result);
         }
-        break;
-      }
-      case "addCandidate": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        Map<String, Object> candidate = call.argument("candidate");
-        peerConnectionAddICECandidate(new ConstraintsMap(candidate), peerConnectionId, result);
-        break;
+        if (audioSender != null) {
+          DtmfSender dtmfSender = audioSender.dtmf();
+          dtmfSender.insertDtmf(tone, duration, gap);
+        }
+        result.success("success");
+      } else {
+        resultError("dtmf", "peerConnection is null", result);
       }
-      case "getStats": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String trackId = call.argument("trackId");
-        peerConnectionGetStats(trackId, peerConnectionId, result);
-        break;
+    });
+    dispatcher.register("addCandidate", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      Map<String, Object> candidate = call.argument("candidate");
+      peerConnectionAddICECandidate(new ConstraintsMap(candidate), peerConnectionId, result);
+    });
+    dispatcher.register("addCandidates", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      List<Map<String, Object>> candidates = call.argument("candidates");
+      peerConnectionAddICECandidates(candidates, peerConnectionId, result);
+    });
+    dispatcher.register("setCandidateBatching", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      Integer windowMs = call.argument("windowMs");
+      PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+      if (pco == null || pco.getPeerConnection() == null) {
+        resultError("setCandidateBatching", "peerConnection is null", result);
+        return;
       }
-      case "createDataChannel": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String label = call.argument("label");
-        Map<String, Object> dataChannelDict = call.argument("dataChannelDict");
-        createDataChannel(peerConnectionId, label, new ConstraintsMap(dataChannelDict), result);
-        break;
+      pco.setCandidateBatching(windowMs == null ? 0 : windowMs);
+      result.success(null);
+    });
+    dispatcher.register("getStats", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String trackId = call.argument("trackId");
+      peerConnectionGetStats(trackId, peerConnectionId, result);
+    });
+    dispatcher.register("getStatsAll", (call, result) -> {
+      List<String> peerConnectionIds = call.argument("peerConnectionIds");
+      peerConnectionGetStatsAll(peerConnectionIds, result);
+    });
+    dispatcher.register("startStatsHistory", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      List<String> metrics = call.argument("metrics");
+      Integer intervalMs = call.argument("intervalMs");
+      Integer capacity = call.argument("capacity");
+      PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+      if (pco == null || pco.getPeerConnection() == null) {
+        resultError("startStatsHistory", "peerConnection is null", result);
+      } else if (metrics == null || metrics.isEmpty()) {
+        resultError("startStatsHistory", "metrics is empty", result);
+      } else {
+        pco.startStatsHistory(metrics, intervalMs != null ? intervalMs : 1000,
+                capacity != null ? capacity : 300, result);
       }
-      case "dataChannelGetBufferedAmount": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String dataChannelId = call.argument("dataChannelId");
-        dataChannelGetBufferedAmount(peerConnectionId, dataChannelId, result);
-        break;
+    });
+    dispatcher.register("stopStatsHistory", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+      if (pco != null) {
+        pco.stopStatsHistory();
       }
-      case "dataChannelSend": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String dataChannelId = call.argument("dataChannelId");
-        String type = call.argument("type");
-        Boolean isBinary = type.equals("binary");
-        ByteBuffer byteBuffer;
-        if (isBinary) {
-          byteBuffer = ByteBuffer.wrap(call.argument("data"));
-        } else {
-            String data = call.argument("data");
-            byteBuffer = ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
-        }
-        dataChannelSend(peerConnectionId, dataChannelId, byteBuffer, isBinary);
-        result.success(null);
-        break;
+      result.success(null);
+    });
+    dispatcher.register("exportStatsHistory", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String path = call.argument("path");
+      PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+      if (pco == null) {
+        resultError("exportStatsHistory", "peerConnection is null", result);
+      } else {
+        pco.exportStatsHistory(path, result);
       }
-      case "dataChannelClose": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String dataChannelId = call.argument("dataChannelId");
-        dataChannelClose(peerConnectionId, dataChannelId);
-        result.success(null);
-        break;
+    });
+    dispatcher.register("getEventSinkMetrics", (call, result) -> {
+      Map<String, Object> metrics = AnyThreadSink.getMetrics();
+      Boolean reset = call.argument("reset");
+      if (reset != null && reset) {
+        AnyThreadSink.resetMetrics();
       }
-      case "streamDispose": {
-        String streamId = call.argument("streamId");
-        streamDispose(streamId);
-        result.success(null);
-        break;
+      result.success(metrics);
+    });
+    dispatcher.register("runStatsBenchmark", (call, result) -> {
+      Integer peerConnections = call.argument("peerConnections");
+      Integer tracks = call.argument("tracksPerPeerConnection");
+      Integer candidates = call.argument("candidatesPerPeerConnection");
+      Integer iterations = call.argument("iterations");
+      StatsBenchmark benchmark = new StatsBenchmark(
+              peerConnections != null ? peerConnections : 2,
+              tracks != null ? tracks : 4,
+              candidates != null ? candidates : 20,
+              iterations != null ? iterations : 200);
+      WorkerPool.COMPUTE.execute(() -> result.success(benchmark.run()));
+    });
+    dispatcher.register("runEventChannelBenchmark", (call, result) -> {
+      Integer eventsPerSecond = call.argument("eventsPerSecond");
+      Integer durationMs = call.argument("durationMs");
+      Integer payloadFields = call.argument("payloadFields");
+      Integer fieldBytes = call.argument("fieldBytes");
+      EventChannelBenchmark benchmark = new EventChannelBenchmark(
+              eventsPerSecond != null ? eventsPerSecond : 1000,
+              durationMs != null ? durationMs : 3000,
+              payloadFields != null ? payloadFields : 8,
+              fieldBytes != null ? fieldBytes : 32);
+      // paced and long running, so it gets its own thread instead of a bounded pool
+      new Thread(() -> result.success(benchmark.run()), "EventChannelBenchmark").start();
+    });
+    dispatcher.register("setStatsAlertRules", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      List<Map<String, Object>> rules = call.argument("rules");
+      Integer intervalMs = call.argument("intervalMs");
+      PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+      if (pco == null || pco.getPeerConnection() == null) {
+        resultError("setStatsAlertRules", "peerConnection is null", result);
+      } else {
+        pco.setStatsAlertRules(rules, intervalMs != null ? intervalMs : 1000, result);
       }
-      case "mediaStreamTrackSetEnable": {
-        String trackId = call.argument("trackId");
-        Boolean enabled = call.argument("enabled");
-        String peerConnectionId = call.argument("peerConnectionId");
-        mediaStreamTrackSetEnabled(trackId, enabled, peerConnectionId);
-        result.success(null);
-        break;
+    });
+    dispatcher.register("createDataChannel", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String label = call.argument("label");
+      Map<String, Object> dataChannelDict = call.argument("dataChannelDict");
+      createDataChannel(peerConnectionId, label, new ConstraintsMap(dataChannelDict), result);
+    });
+    dispatcher.register("dataChannelGetBufferedAmount", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String dataChannelId = call.argument("dataChannelId");
+      dataChannelGetBufferedAmount(peerConnectionId, dataChannelId, result);
+    });
+    dispatcher.register("dataChannelSend", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String dataChannelId = call.argument("dataChannelId");
+      String type = call.argument("type");
+      Boolean isBinary = type.equals("binary");
+      ByteBuffer byteBuffer;
+      if (isBinary) {
+        byteBuffer = ByteBuffer.wrap(call.argument("data"));
+      } else {
+          String data = call.argument("data");
+          byteBuffer = ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
       }
-      case "mediaStreamAddTrack": {
-        String streamId = call.argument("streamId");
-        String trackId = call.argument("trackId");
-        mediaStreamAddTrack(streamId, trackId, result);
-        for (int i = 0; i < renders.size(); i++) {
-          FlutterRTCVideoRenderer renderer = renders.valueAt(i);
-          if (renderer.checkMediaStream(streamId, "local")) {
-            LocalTrack track = localTracks.get(trackId);
-            if(track != null) {
-              renderer.setVideoTrack((VideoTrack) track.track);
-            }
+      dataChannelSend(peerConnectionId, dataChannelId, byteBuffer, isBinary);
+      result.success(null);
+    });
+    dispatcher.register("dataChannelClose", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String dataChannelId = call.argument("dataChannelId");
+      dataChannelClose(peerConnectionId, dataChannelId);
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("streamDispose", (call, result) -> {
+      String streamId = call.argument("streamId");
+      streamDispose(streamId);
+      result.success(null);
+    });
+    dispatcher.register("mediaStreamTrackSetEnable", (call, result) -> {
+      String trackId = call.argument("trackId");
+      Boolean enabled = call.argument("enabled");
+      String peerConnectionId = call.argument("peerConnectionId");
+      mediaStreamTrackSetEnabled(trackId, enabled, peerConnectionId);
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("mediaStreamAddTrack", (call, result) -> {
+      String streamId = call.argument("streamId");
+      String trackId = call.argument("trackId");
+      mediaStreamAddTrack(streamId, trackId, result);
+      for (int i = 0; i < renders.size(); i++) {
+        FlutterRTCVideoRenderer renderer = renders.valueAt(i);
+        if (renderer.checkMediaStream(streamId, "local")) {
+          LocalTrack track = localTracks.get(trackId);
+          if(track != null) {
+            renderer.setVideoTrack((VideoTrack) track.track);
           }
         }
-        break;
-      }
-      case "mediaStreamRemoveTrack": {
-        String streamId = call.argument("streamId");
-        String trackId = call.argument("trackId");
-        mediaStreamRemoveTrack(streamId, trackId, result);
-        removeStreamForRendererById(streamId);
-        break;
-      }
-      case "trackDispose": {
-        String trackId = call.argument("trackId");
-        trackDispose(trackId);
-        result.success(null);
-        break;
       }
-      case "restartIce": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        restartIce(peerConnectionId);
-        result.success(null);
-        break;
-      }
-      case "peerConnectionClose": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        peerConnectionClose(peerConnectionId);
-        result.success(null);
-        break;
-      }
-      case "peerConnectionDispose": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        peerConnectionDispose(peerConnectionId);
-        result.success(null);
-        break;
-      }
-      case "createVideoRenderer": {
-        TextureRegistry.SurfaceProducer producer = textures.createSurfaceProducer();
-        FlutterRTCVideoRenderer render = new FlutterRTCVideoRenderer(producer);
-        renders.put(producer.id(), render);
+    });
+    dispatcher.registerOnMainThread("mediaStreamRemoveTrack", (call, result) -> {
+      String streamId = call.argument("streamId");
+      String trackId = call.argument("trackId");
+      mediaStreamRemoveTrack(streamId, trackId, result);
+      removeStreamForRendererById(streamId);
+    });
+    dispatcher.registerOnMainThread("trackDispose", (call, result) -> {
+      String trackId = call.argument("trackId");
+      trackDispose(trackId);
+      result.success(null);
+    });
+    dispatcher.register("restartIce", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      restartIce(peerConnectionId);
+      result.success(null);
+    });
+    dispatcher.register("peerConnectionClose", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      peerConnectionClose(peerConnectionId);
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("peerConnectionDispose", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      peerConnectionDispose(peerConnectionId);
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("createVideoRenderer", (call, result) -> {
+      TextureRegistry.SurfaceProducer producer = textures.createSurfaceProducer();
+      FlutterRTCVideoRenderer render = new FlutterRTCVideoRenderer(producer);
+      renders.put(producer.id(), render);
 
-        EventChannel eventChannel =
-                new EventChannel(
-                        messenger,
-                        "FlutterWebRTC/Texture" + producer.id());
+      EventChannel eventChannel =
+              new EventChannel(
+                      messenger,
+                      "FlutterWebRTC/Texture" + producer.id());
 
-        eventChannel.setStreamHandler(render);
-        render.setEventChannel(eventChannel);
-        render.setId((int) producer.id());
+      eventChannel.setStreamHandler(render);
+      render.setEventChannel(eventChannel);
+      render.setId((int) producer.id());
 
-        ConstraintsMap params = new ConstraintsMap();
-        params.putInt("textureId", (int) producer.id());
-        result.success(params.toMap());
-        break;
-      }
-      case "videoRendererDispose": {
-        int textureId = call.argument("textureId");
-        FlutterRTCVideoRenderer render = renders.get(textureId);
-        if (render == null) {
-          resultError("videoRendererDispose", "render [" + textureId + "] not found !", result);
-          return;
-        }
-        render.Dispose();
-        renders.delete(textureId);
-        result.success(null);
-        break;
-      }
-      case "videoRendererSetSrcObject": {
-        int textureId = call.argument("textureId");
-        String streamId = call.argument("streamId");
-        String ownerTag = call.argument("ownerTag");
-        String trackId = call.argument("trackId");
-        FlutterRTCVideoRenderer render = renders.get(textureId);
-        if (render == null) {
-          resultError("videoRendererSetSrcObject", "render [" + textureId + "] not found !", result);
-          return;
-        }
-        MediaStream stream = null;
-        if (ownerTag.equals("local")) {
-          stream = localStreams.get(streamId);
-        } else {
-          stream = getStreamForId(streamId, ownerTag);
-        }
-        if (trackId != null && !trackId.equals("0")){
-          render.setStream(stream, trackId, ownerTag);
-        } else {
-          render.setStream(stream, ownerTag);
-        }
-        result.success(null);
-        break;
-      }
-      case "mediaStreamTrackHasTorch": {
-        String trackId = call.argument("trackId");
-        cameraUtils.hasTorch(trackId, result);
-        break;
-      }
-      case "mediaStreamTrackSetTorch": {
-        String trackId = call.argument("trackId");
-        boolean torch = call.argument("torch");
-        cameraUtils.setTorch(trackId, torch, result);
-        break;
-      }
-      case "mediaStreamTrackSetZoom": {
-        String trackId = call.argument("trackId");
-        double zoomLevel = call.argument("zoomLevel");
-        cameraUtils.setZoom(trackId, zoomLevel, result);
-        break;
-      }
-      case "mediaStreamTrackSetFocusMode": {
-        cameraUtils.setFocusMode(call, result);
-        break;
-      }
-      case "mediaStreamTrackSetFocusPoint":{
-        Map<String, Object> focusPoint = call.argument("focusPoint");
-        Boolean reset = (Boolean)focusPoint.get("reset");
-        Double x = null;
-        Double y = null;
-        if (reset == null || !reset) {
-          x =  (Double)focusPoint.get("x");
-          y =  (Double)focusPoint.get("y");
-        }
-        cameraUtils.setFocusPoint(call, new Point(x, y), result);
-        break;
-      }
-      case "mediaStreamTrackSetExposureMode": {
-        cameraUtils.setExposureMode(call, result);
-        break;
-      }
-      case "mediaStreamTrackSetExposurePoint": {
-        Map<String, Object> exposurePoint = call.argument("exposurePoint");
-        Boolean reset = (Boolean)exposurePoint.get("reset");
-        Double x = null;
-        Double y = null;
-        if (reset == null || !reset) {
-          x =  (Double)exposurePoint.get("x");
-          y =  (Double)exposurePoint.get("y");
-        }
-        cameraUtils.setExposurePoint(call, new Point(x, y), result);
-        break;
-      }
-      case "mediaStreamTrackSwitchCamera": {
-        String trackId = call.argument("trackId");
-        getUserMediaImpl.switchCamera(trackId, result);
-        break;
+      ConstraintsMap params = new ConstraintsMap();
+      params.putInt("textureId", (int) producer.id());
+      result.success(params.toMap());
+    });
+    dispatcher.registerOnMainThread("videoRendererDispose", (call, result) -> {
+      int textureId = call.argument("textureId");
+      FlutterRTCVideoRenderer render = renders.get(textureId);
+      if (render == null) {
+        resultError("videoRendererDispose", "render [" + textureId + "] not found !", result);
+        return;
+      }
+      render.Dispose();
+      renders.delete(textureId);
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("videoRendererSetSrcObject", (call, result) -> {
+      int textureId = call.argument("textureId");
+      String streamId = call.argument("streamId");
+      String ownerTag = call.argument("ownerTag");
+      String trackId = call.argument("trackId");
+      FlutterRTCVideoRenderer render = renders.get(textureId);
+      if (render == null) {
+        resultError("videoRendererSetSrcObject", "render [" + textureId + "] not found !", result);
+        return;
+      }
+      MediaStream stream = null;
+      if (ownerTag.equals("local")) {
+        stream = localStreams.get(streamId);
+      } else {
+        stream = getStreamForId(streamId, ownerTag);
       }
-      case "setVolume": {
-        String trackId = call.argument("trackId");
-        double volume = call.argument("volume");
-        String peerConnectionId = call.argument("peerConnectionId");
-        mediaStreamTrackSetVolume(trackId, volume, peerConnectionId);
-        result.success(null);
-        break;
+      if (trackId != null && !trackId.equals("0")){
+        render.setStream(stream, trackId, ownerTag);
+      } else {
+        render.setStream(stream, ownerTag);
       }
-      case "selectAudioOutput": {
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("mediaStreamTrackHasTorch", (call, result) -> {
+      String trackId = call.argument("trackId");
+      cameraUtils.hasTorch(trackId, result);
+    });
+    dispatcher.registerOnMainThread("mediaStreamTrackSetTorch", (call, result) -> {
+      String trackId = call.argument("trackId");
+      boolean torch = call.argument("torch");
+      cameraUtils.setTorch(trackId, torch, result);
+    });
+    dispatcher.registerOnMainThread("mediaStreamTrackSetZoom", (call, result) -> {
+      String trackId = call.argument("trackId");
+      double zoomLevel = call.argument("zoomLevel");
+      cameraUtils.setZoom(trackId, zoomLevel, result);
+    });
+    dispatcher.registerOnMainThread("mediaStreamTrackSetFocusMode", (call, result) -> {
+      cameraUtils.setFocusMode(call, result);
+    });
+    dispatcher.registerOnMainThread("mediaStreamTrackSetFocusPoint", (call, result) -> {
+      Map<String, Object> focusPoint = call.argument("focusPoint");
+      Boolean reset = (Boolean)focusPoint.get("reset");
+      Double x = null;
+      Double y = null;
+      if (reset == null || !reset) {
+        x =  (Double)focusPoint.get("x");
+        y =  (Double)focusPoint.get("y");
+      }
+      cameraUtils.setFocusPoint(call, new Point(x, y), result);
+    });
+    dispatcher.registerOnMainThread("mediaStreamTrackSetExposureMode", (call, result) -> {
+      cameraUtils.setExposureMode(call, result);
+    });
+    dispatcher.registerOnMainThread("mediaStreamTrackSetExposurePoint", (call, result) -> {
+      Map<String, Object> exposurePoint = call.argument("exposurePoint");
+      Boolean reset = (Boolean)exposurePoint.get("reset");
+      Double x = null;
+      Double y = null;
+      if (reset == null || !reset) {
+        x =  (Double)exposurePoint.get("x");
+        y =  (Double)exposurePoint.get("y");
+      }
+      cameraUtils.setExposurePoint(call, new Point(x, y), result);
+    });
+    dispatcher.registerOnMainThread("mediaStreamTrackSwitchCamera", (call, result) -> {
+      String trackId = call.argument("trackId");
+      getUserMediaImpl.switchCamera(trackId, result);
+    });
+    dispatcher.register("setVolume", (call, result) -> {
+      String trackId = call.argument("trackId");
+      double volume = call.argument("volume");
+      String peerConnectionId = call.argument("peerConnectionId");
+      mediaStreamTrackSetVolume(trackId, volume, peerConnectionId);
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("selectAudioOutput", (call, result) -> {
+      String deviceId = call.argument("deviceId");
+      AudioSwitchManager.instance.selectAudioOutput(AudioDeviceKind.fromTypeName(deviceId));
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("clearAndroidCommunicationDevice", (call, result) -> {
+      AudioSwitchManager.instance.clearCommunicationDevice();
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("setMicrophoneMute", (call, result) -> {
+      boolean mute = call.argument("mute");
+      AudioSwitchManager.instance.setMicrophoneMute(mute);
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("selectAudioInput", (call, result) -> {
+      if (Build.VERSION.SDK_INT > Build.VERSION_CODES.LOLLIPOP_MR1) {
         String deviceId = call.argument("deviceId");
-        AudioSwitchManager.instance.selectAudioOutput(AudioDeviceKind.fromTypeName(deviceId));
+        getUserMediaImpl.setPreferredInputDevice(deviceId);
         result.success(null);
-        break;
-      }
-      case "clearAndroidCommunicationDevice": {
-        AudioSwitchManager.instance.clearCommunicationDevice();
-        result.success(null);
-        break;
-      }
-      case "setMicrophoneMute":
-        boolean mute = call.argument("mute");
-        AudioSwitchManager.instance.setMicrophoneMute(mute);
-        result.success(null);
-        break;
-      case "selectAudioInput":
-        if (Build.VERSION.SDK_INT > Build.VERSION_CODES.LOLLIPOP_MR1) {
-          String deviceId = call.argument("deviceId");
-          getUserMediaImpl.setPreferredInputDevice(deviceId);
-          result.success(null);
-        } else {
-          result.notImplemented();
-        }
-        break;
-      case "setAndroidAudioConfiguration": {
-        Map<String, Object> configuration = call.argument("configuration");
-        AudioSwitchManager.instance.setAudioConfiguration(configuration);
-        result.success(null);
-        break;
+      } else {
+        result.notImplemented();
       }
-      case "enableSpeakerphone":
-        boolean enable = call.argument("enable");
-        AudioSwitchManager.instance.enableSpeakerphone(enable);
-        result.success(null);
-        break;
-      case "enableSpeakerphoneButPreferBluetooth":
-        AudioSwitchManager.instance.enableSpeakerButPreferBluetooth();
-        result.success(null);
-        break;
-      case "requestCapturePermission": {
-        getUserMediaImpl.requestCapturePermission(result);
-        break;
-      }
-      case "getDisplayMedia": {
-        Map<String, Object> constraints = call.argument("constraints");
-        ConstraintsMap constraintsMap = new ConstraintsMap(constraints);
-        getDisplayMedia(constraintsMap, result);
-        break;
-      }
-      case "startRecordToFile":
-        //This method can a lot of different exceptions
-        //so we should notify plugin user about them
-        try {
-          String path = call.argument("path");
-          VideoTrack videoTrack = null;
-          String videoTrackId = call.argument("videoTrackId");
-          String peerConnectionId = call.argument("peerConnectionId");
-          if (videoTrackId != null) {
-            MediaStreamTrack track = getTrackForId(videoTrackId, peerConnectionId);
-            if (track instanceof VideoTrack) {
-              videoTrack = (VideoTrack) track;
-            }
-          }
-          AudioChannel audioChannel = null;
-          if (call.hasArgument("audioChannel")
-                  && call.argument("audioChannel") != null) {
-            audioChannel = AudioChannel.values()[(Integer) call.argument("audioChannel")];
-          }
-          Integer recorderId = call.argument("recorderId");
-          if (videoTrack != null || audioChannel != null) {
-            getUserMediaImpl.startRecordingToFile(path, recorderId, videoTrack, audioChannel);
-            result.success(null);
-          } else {
-            resultError("startRecordToFile", "No tracks", result);
-          }
-        } catch (Exception e) {
-          resultError("startRecordToFile", e.getMessage(), result);
-        }
-        break;
-      case "stopRecordToFile":
-        Integer recorderId = call.argument("recorderId");
-        String albumName = call.argument("albumName");
-        getUserMediaImpl.stopRecording(recorderId, albumName, () -> result.success(null));
-        break;
-      case "captureFrame": {
+    });
+    dispatcher.registerOnMainThread("setAndroidAudioConfiguration", (call, result) -> {
+      Map<String, Object> configuration = call.argument("configuration");
+      AudioSwitchManager.instance.setAudioConfiguration(configuration);
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("enableSpeakerphone", (call, result) -> {
+      boolean enable = call.argument("enable");
+      AudioSwitchManager.instance.enableSpeakerphone(enable);
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("enableSpeakerphoneButPreferBluetooth", (call, result) -> {
+      AudioSwitchManager.instance.enableSpeakerButPreferBluetooth();
+      result.success(null);
+    });
+    dispatcher.registerOnMainThread("requestCapturePermission", (call, result) -> {
+      getUserMediaImpl.requestCapturePermission(result);
+    });
+    dispatcher.registerOnMainThread("getDisplayMedia", (call, result) -> {
+      Map<String, Object> constraints = call.argument("constraints");
+      ConstraintsMap constraintsMap = new ConstraintsMap(constraints);
+      getDisplayMedia(constraintsMap, result);
+    });
+    dispatcher.register("startRecordToFile", (call, result) -> {
+      //This method can a lot of different exceptions
+      //so we should notify plugin user about them
+      try {
         String path = call.argument("path");
-        String videoTrackId = call.argument("trackId");
+        List<VideoTrack> videoTracks = new ArrayList<>();
+        String videoTrackId = call.argument("videoTrackId");
         String peerConnectionId = call.argument("peerConnectionId");
         if (videoTrackId != null) {
           MediaStreamTrack track = getTrackForId(videoTrackId, peerConnectionId);
           if (track instanceof VideoTrack) {
-            new FrameCapturer((VideoTrack) track, new File(path), result);
-          } else {
-            resultError("captureFrame", "It's not video track", result);
+            videoTracks.add((VideoTrack) track);
           }
-        } else {
-          resultError("captureFrame", "Track is null", result);
-        }
-        break;
-      }
-      case "getLocalDescription": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        PeerConnection peerConnection = getPeerConnection(peerConnectionId);
-        if (peerConnection != null) {
-          SessionDescription sdp = peerConnection.getLocalDescription();
-          ConstraintsMap params = new ConstraintsMap();
-          params.putString("sdp", sdp.description);
-          params.putString("type", sdp.type.canonicalForm());
-          result.success(params.toMap());
-        } else {
-          resultError("getLocalDescription", "peerConnection is null", result);
         }
-        break;
-      }
-      case "getRemoteDescription": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        PeerConnection peerConnection = getPeerConnection(peerConnectionId);
-        if (peerConnection != null) {
-          SessionDescription sdp = peerConnection.getRemoteDescription();
-          if (null == sdp) {
-            result.success(null);
-          } else {
-            ConstraintsMap params = new ConstraintsMap();
-            params.putString("sdp", sdp.description);
-            params.putString("type", sdp.type.canonicalForm());
-            result.success(params.toMap());
+        // several tracks, local or from any peer connection, are recorded as one grid
+        List<String> videoTrackIds = call.argument("videoTrackIds");
+        if (videoTrackIds != null) {
+          for (String trackId : videoTrackIds) {
+            MediaStreamTrack track = getTrackForId(trackId, null);
+            if (!(track instanceof VideoTrack)) {
+              resultError("startRecordToFile", "Video track " + trackId + " not found", result);
+              return;
+            }
+            videoTracks.add((VideoTrack) track);
           }
-        } else {
-          resultError("getRemoteDescription", "peerConnection is null", result);
         }
-        break;
-      }
-      case "setConfiguration": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        Map<String, Object> configuration = call.argument("configuration");
-        PeerConnection peerConnection = getPeerConnection(peerConnectionId);
-        if (peerConnection != null) {
-          peerConnectionSetConfiguration(new ConstraintsMap(configuration), peerConnection);
+        AudioChannel audioChannel = null;
+        if (call.hasArgument("audioChannel")
+                && call.argument("audioChannel") != null) {
+          audioChannel = AudioChannel.values()[(Integer) call.argument("audioChannel")];
+        }
+        Integer recorderId = call.argument("recorderId");
+        RecordingProfile profile = RecordingProfile.fromMap(call.argument("profile"));
+        SegmentPolicy segments = SegmentPolicy.fromMap(call.argument("segments"));
+        if (!videoTracks.isEmpty() || audioChannel != null) {
+          getUserMediaImpl.startRecordingToFile(path, recorderId, videoTracks, audioChannel, profile, segments);
           result.success(null);
         } else {
-          resultError("setConfiguration", "peerConnection is null", result);
+          resultError("startRecordToFile", "No tracks", result);
         }
-        break;
-      }
-      case "addTrack": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String trackId = call.argument("trackId");
-        List<String> streamIds = call.argument("streamIds");
-        addTrack(peerConnectionId, trackId, streamIds, result);
-        break;
-      }
-      case "removeTrack": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String senderId = call.argument("senderId");
-
-        removeTrack(peerConnectionId, senderId, result);
-        break;
+      } catch (Exception e) {
+        resultError("startRecordToFile", e.getMessage(), result);
       }
-      case "addTransceiver": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        Map<String, Object> transceiverInit = call.argument("transceiverInit");
-        if (call.hasArgument("trackId")) {
-          String trackId = call.argument("trackId");
-          addTransceiver(peerConnectionId, trackId, transceiverInit, result);
-        } else if (call.hasArgument("mediaType")) {
-          String mediaType = call.argument("mediaType");
-          addTransceiverOfType(peerConnectionId, mediaType, transceiverInit, result);
+    });
+    dispatcher.register("stopRecordToFile", (call, result) -> {
+      Integer recorderId = call.argument("recorderId");
+      String albumName = call.argument("albumName");
+      getUserMediaImpl.stopRecording(recorderId, albumName, () -> result.success(null));
+    });
+    dispatcher.register("captureFrame", (call, result) -> {
+      String path = call.argument("path");
+      String videoTrackId = call.argument("trackId");
+      String peerConnectionId = call.argument("peerConnectionId");
+      if (videoTrackId != null) {
+        MediaStreamTrack track = getTrackForId(videoTrackId, peerConnectionId);
+        if (track instanceof VideoTrack) {
+          String format = call.argument("format");
+          Integer quality = call.argument("quality");
+          new FrameCapturer((VideoTrack) track, new File(path),
+                  format != null ? FrameCapturer.formatFor(format) : FrameCapturer.Format.JPEG,
+                  quality != null ? quality : 100, result);
         } else {
-          resultError("addTransceiver", "Incomplete parameters", result);
+          resultError("captureFrame", "It's not video track", result);
         }
-        break;
-      }
-      case "rtpTransceiverSetDirection": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String direction = call.argument("direction");
-        String transceiverId = call.argument("transceiverId");
-        rtpTransceiverSetDirection(peerConnectionId, direction, transceiverId, result);
-        break;
-      }
-      case "rtpTransceiverGetDirection": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String transceiverId = call.argument("transceiverId");
-        rtpTransceiverGetDirection(peerConnectionId, transceiverId, result);
-        break;
+      } else {
+        resultError("captureFrame", "Track is null", result);
       }
-      case "rtpTransceiverGetCurrentDirection": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String transceiverId = call.argument("transceiverId");
-        rtpTransceiverGetCurrentDirection(peerConnectionId, transceiverId, result);
-        break;
+    });
+    dispatcher.register("getLocalDescription", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      PeerConnection peerConnection = getPeerConnection(peerConnectionId);
+      if (peerConnection != null) {
+        SessionDescription sdp = peerConnection.getLocalDescription();
+        ConstraintsMap params = new ConstraintsMap();
+        params.putString("sdp", sdp.description);
+        params.putString("type", sdp.type.canonicalForm());
+        result.success(params.toMap());
+      } else {
+        resultError("getLocalDescription", "peerConnection is null", result);
       }
-      case "rtpTransceiverStop": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String transceiverId = call.argument("transceiverId");
-        rtpTransceiverStop(peerConnectionId, transceiverId, result);
-        break;
+    });
+    dispatcher.register("getRemoteDescription", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      PeerConnection peerConnection = getPeerConnection(peerConnectionId);
+      if (peerConnection != null) {
+        SessionDescription sdp = peerConnection.getRemoteDescription();
+        if (null == sdp) {
+          result.success(null);
+        } else {
+          ConstraintsMap params = new ConstraintsMap();
+          params.putString("sdp", sdp.description);
+          params.putString("type", sdp.type.canonicalForm());
+          result.success(params.toMap());
+        }
+      } else {
+        resultError("getRemoteDescription", "peerConnection is null", result);
       }
-      case "rtpSenderSetParameters": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String rtpSenderId = call.argument("rtpSenderId");
-        Map<String, Object> parameters = call.argument("parameters");
-        rtpSenderSetParameters(peerConnectionId, rtpSenderId, parameters, result);
-        break;
+    });
+    dispatcher.register("setConfiguration", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      Map<String, Object> configuration = call.argument("configuration");
+      PeerConnection peerConnection = getPeerConnection(peerConnectionId);
+      if (peerConnection != null) {
+        peerConnectionSetConfiguration(new ConstraintsMap(configuration), peerConnection);
+        result.success(null);
+      } else {
+        resultError("setConfiguration", "peerConnection is null", result);
       }
-      case "rtpSenderReplaceTrack": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String rtpSenderId = call.argument("rtpSenderId");
+    });
+    dispatcher.register("addTrack", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String trackId = call.argument("trackId");
+      List<String> streamIds = call.argument("streamIds");
+      addTrack(peerConnectionId, trackId, streamIds, result);
+    });
+    dispatcher.register("removeTrack", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String senderId = call.argument("senderId");
+
+      removeTrack(peerConnectionId, senderId, result);
+    });
+    dispatcher.register("addTransceiver", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      Map<String, Object> transceiverInit = call.argument("transceiverInit");
+      if (call.hasArgument("trackId")) {
         String trackId = call.argument("trackId");
-        rtpSenderSetTrack(peerConnectionId, rtpSenderId, trackId, true, result);
-        break;
+        addTransceiver(peerConnectionId, trackId, transceiverInit, result);
+      } else if (call.hasArgument("mediaType")) {
+        String mediaType = call.argument("mediaType");
+        addTransceiverOfType(peerConnectionId, mediaType, transceiverInit, result);
+      } else {
+        resultError("addTransceiver", "Incomplete parameters", result);
       }
-      case "rtpSenderSetTrack": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String rtpSenderId = call.argument("rtpSenderId");
-        String trackId = call.argument("trackId");
-        rtpSenderSetTrack(peerConnectionId, rtpSenderId, trackId, false, result);
-        break;
+    });
+    dispatcher.register("rtpTransceiverSetDirection", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String direction = call.argument("direction");
+      String transceiverId = call.argument("transceiverId");
+      rtpTransceiverSetDirection(peerConnectionId, direction, transceiverId, result);
+    });
+    dispatcher.register("rtpTransceiverGetDirection", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String transceiverId = call.argument("transceiverId");
+      rtpTransceiverGetDirection(peerConnectionId, transceiverId, result);
+    });
+    dispatcher.register("rtpTransceiverGetCurrentDirection", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String transceiverId = call.argument("transceiverId");
+      rtpTransceiverGetCurrentDirection(peerConnectionId, transceiverId, result);
+    });
+    dispatcher.register("rtpTransceiverStop", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String transceiverId = call.argument("transceiverId");
+      rtpTransceiverStop(peerConnectionId, transceiverId, result);
+    });
+    dispatcher.register("rtpSenderSetParameters", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String rtpSenderId = call.argument("rtpSenderId");
+      Map<String, Object> parameters = call.argument("parameters");
+      rtpSenderSetParameters(peerConnectionId, rtpSenderId, parameters, result);
+    });
+    dispatcher.register("rtpSenderReplaceTrack", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String rtpSenderId = call.argument("rtpSenderId");
+      String trackId = call.argument("trackId");
+      rtpSenderSetTrack(peerConnectionId, rtpSenderId, trackId, true, result);
+    });
+    dispatcher.register("rtpSenderSetTrack", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String rtpSenderId = call.argument("rtpSenderId");
+      String trackId = call.argument("trackId");
+      rtpSenderSetTrack(peerConnectionId, rtpSenderId, trackId, false, result);
+    });
+    dispatcher.register("rtpSenderSetStreams", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      String rtpSenderId = call.argument("rtpSenderId");
+      List<String> streamIds = call.argument("streamIds");
+      rtpSenderSetStreams(peerConnectionId, rtpSenderId, streamIds, result);
+    });
+    dispatcher.register("getSenders", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      getSenders(peerConnectionId, result);
+    });
+    dispatcher.register("getReceivers", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      getReceivers(peerConnectionId, result);
+    });
+    dispatcher.register("getTransceivers", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      getTransceivers(peerConnectionId, result);
+    });
+    dispatcher.registerOnMainThread("setPreferredInputDevice", (call, result) -> {
+      if (Build.VERSION.SDK_INT > Build.VERSION_CODES.LOLLIPOP_MR1) {
+        String deviceId = call.argument("deviceId");
+        getUserMediaImpl.setPreferredInputDevice(deviceId);
+        result.success(null);
+      } else {
+        result.notImplemented();
       }
-      case "rtpSenderSetStreams": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        String rtpSenderId = call.argument("rtpSenderId");
-        List<String> streamIds = call.argument("streamIds");
-        rtpSenderSetStreams(peerConnectionId, rtpSenderId, streamIds, result);
-        break;
+    });
+    dispatcher.register("getRtpSenderCapabilities", (call, result) -> {
+      String kind = call.argument("kind");
+      MediaStreamTrack.MediaType mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_AUDIO;
+      if (kind.equals("video")) {
+        mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_VIDEO;
+      }
+      RtpCapabilities capabilities = mFactory.getRtpSenderCapabilities(mediaType);
+      result.success(capabilitiestoMap(capabilities).toMap());
+    });
+    dispatcher.register("getRtpReceiverCapabilities", (call, result) -> {
+      String kind = call.argument("kind");
+      MediaStreamTrack.MediaType mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_AUDIO;
+      if (kind.equals("video")) {
+        mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_VIDEO;
+      }
+      RtpCapabilities capabilities = mFactory.getRtpReceiverCapabilities(mediaType);
+      result.success(capabilitiestoMap(capabilities).toMap());
+    });
+    dispatcher.register("setCodecPreferences", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      List<Map<String, Object>> codecs = call.argument("codecs");
+      String transceiverId = call.argument("transceiverId");
+      rtpTransceiverSetCodecPreferences(peerConnectionId, transceiverId, codecs, result);
+    });
+    dispatcher.register("getSignalingState", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      PeerConnection pc = getPeerConnection(peerConnectionId);
+      if (pc == null) {
+        resultError("getSignalingState", "peerConnection is null", result);
+      } else {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putString("state", Utils.signalingStateString(pc.signalingState()));
+        result.success(params.toMap());
       }
-      case "getSenders": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        getSenders(peerConnectionId, result);
-        break;
+    });
+    dispatcher.register("getIceGatheringState", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      PeerConnection pc = getPeerConnection(peerConnectionId);
+      if (pc == null) {
+        resultError("getIceGatheringState", "peerConnection is null", result);
+      } else {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putString("state", Utils.iceGatheringStateString(pc.iceGatheringState()));
+        result.success(params.toMap());
       }
-      case "getReceivers": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        getReceivers(peerConnectionId, result);
-        break;
+    });
+    dispatcher.register("getIceConnectionState", (call, result) -> {
+     String peerConnectionId = call.argument("peerConnectionId");
+     PeerConnection pc = getPeerConnection(peerConnectionId);
+      if (pc == null) {
+        resultError("getIceConnectionState", "peerConnection is null", result);
+      } else {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putString("state", Utils.iceConnectionStateString(pc.iceConnectionState()));
+        result.success(params.toMap());
       }
-      case "getTransceivers": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        getTransceivers(peerConnectionId, result);
-        break;
+    });
+    dispatcher.register("getConnectionState", (call, result) -> {
+      String peerConnectionId = call.argument("peerConnectionId");
+      PeerConnection pc = getPeerConnection(peerConnectionId);
+      if (pc == null) {
+        resultError("getConnectionState", "peerConnection is null", result);
+      } else {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putString("state", Utils.connectionStateString(pc.connectionState()));
+        result.success(params.toMap());
       }
-      case "setPreferredInputDevice": {
-        if (Build.VERSION.SDK_INT > Build.VERSION_CODES.LOLLIPOP_MR1) {
-          String deviceId = call.argument("deviceId");
-          getUserMediaImpl.setPreferredInputDevice(deviceId);
+    });
+    dispatcher.register("startLocalRecording", (call, result) -> {
+      WorkerPool.IO.execute(() -> {
+        audioDeviceModule.prewarmRecording();
+        mainHandler.post(() -> {
           result.success(null);
-        } else {
-          result.notImplemented();
-        }
-        break;
-      }
-      case "getRtpSenderCapabilities": {
-        String kind = call.argument("kind");
-        MediaStreamTrack.MediaType mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_AUDIO;
-        if (kind.equals("video")) {
-          mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_VIDEO;
-        }
-        RtpCapabilities capabilities = mFactory.getRtpSenderCapabilities(mediaType);
-        result.success(capabilitiestoMap(capabilities).toMap());
-        break;
-      }
-      case "getRtpReceiverCapabilities": {
-        String kind = call.argument("kind");
-        MediaStreamTrack.MediaType mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_AUDIO;
-        if (kind.equals("video")) {
-          mediaType = MediaStreamTrack.MediaType.MEDIA_TYPE_VIDEO;
-        }
-        RtpCapabilities capabilities = mFactory.getRtpReceiverCapabilities(mediaType);
-        result.success(capabilitiestoMap(capabilities).toMap());
-        break;
-      }
-      case "setCodecPreferences": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        List<Map<String, Object>> codecs = call.argument("codecs");
-        String transceiverId = call.argument("transceiverId");
-        rtpTransceiverSetCodecPreferences(peerConnectionId, transceiverId, codecs, result);
-        break;
-      }
-      case "getSignalingState": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        PeerConnection pc = getPeerConnection(peerConnectionId);
-        if (pc == null) {
-          resultError("getSignalingState", "peerConnection is null", result);
-        } else {
-          ConstraintsMap params = new ConstraintsMap();
-          params.putString("state", Utils.signalingStateString(pc.signalingState()));
-          result.success(params.toMap());
-        }
-        break;
-      }
-      case "getIceGatheringState": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        PeerConnection pc = getPeerConnection(peerConnectionId);
-        if (pc == null) {
-          resultError("getIceGatheringState", "peerConnection is null", result);
-        } else {
-          ConstraintsMap params = new ConstraintsMap();
-          params.putString("state", Utils.iceGatheringStateString(pc.iceGatheringState()));
-          result.success(params.toMap());
-        }
-        break;
-      }
-      case "getIceConnectionState": {
-       String peerConnectionId = call.argument("peerConnectionId");
-       PeerConnection pc = getPeerConnection(peerConnectionId);
-        if (pc == null) {
-          resultError("getIceConnectionState", "peerConnection is null", result);
-        } else {
-          ConstraintsMap params = new ConstraintsMap();
-          params.putString("state", Utils.iceConnectionStateString(pc.iceConnectionState()));
-          result.success(params.toMap());
-        }
-        break;
-      }
-      case "getConnectionState": {
-        String peerConnectionId = call.argument("peerConnectionId");
-        PeerConnection pc = getPeerConnection(peerConnectionId);
-        if (pc == null) {
-          resultError("getConnectionState", "peerConnection is null", result);
-        } else {
-          ConstraintsMap params = new ConstraintsMap();
-          params.putString("state", Utils.connectionStateString(pc.connectionState()));
-          result.success(params.toMap());
-        }
-        break;
-      }
-      case "startLocalRecording": {
-        executor.execute(() -> {
-          audioDeviceModule.prewarmRecording();
-          mainHandler.post(() -> {
-            result.success(null);
-          });
         });
-        break;
-      }
-      case "stopLocalRecording": {
-        executor.execute(() -> {
-          audioDeviceModule.requestStopRecording();
-          mainHandler.post(() -> {
-            result.success(null);
-          });
+      });
+    });
+    dispatcher.register("stopLocalRecording", (call, result) -> {
+      WorkerPool.IO.execute(() -> {
+        audioDeviceModule.requestStopRecording();
+        mainHandler.post(() -> {
+          result.success(null);
         });
-        break;
+      });
+    });
+    dispatcher.register("configureLogSink", (call, result) -> {
+      Integer flushIntervalMs = call.argument("flushIntervalMs");
+      Integer bufferSize = call.argument("bufferSize");
+      Integer maxLinesPerSecondPerTag = call.argument("maxLinesPerSecondPerTag");
+      Boolean sendEvents = call.argument("sendEvents");
+      String filePath = call.argument("filePath");
+      Number maxFileBytes = call.argument("maxFileBytes");
+      Integer maxFiles = call.argument("maxFiles");
+      logSink.configure(
+              flushIntervalMs != null ? flushIntervalMs : 250,
+              bufferSize != null ? bufferSize : 1024,
+              maxLinesPerSecondPerTag != null ? maxLinesPerSecondPerTag : 100,
+              sendEvents == null || sendEvents,
+              filePath,
+              maxFileBytes != null ? maxFileBytes.longValue() : 1024 * 1024,
+              maxFiles != null ? maxFiles : 3);
+      result.success(null);
+    });
+    dispatcher.register("setLogSeverity", (call, result) -> {
+      //now it's possible to setup logSeverity only via PeerConnectionFactory.initialize method
+      //Log.d(TAG, "no implementation for 'setLogSeverity'");
+      result.success(null);
+    });
+    dispatcher.register("batch", (call, result) -> {
+      List<Map<String, Object>> operations = call.argument("operations");
+      Boolean stopOnError = call.argument("stopOnError");
+      Integer stepTimeoutMs = call.argument("stepTimeoutMs");
+      if (operations == null) {
+        resultError("batch", "operations is null", result);
+        return;
+      }
+      new MethodBatch(dispatcher, WorkerPool.SIGNALING, operations, stopOnError == null || stopOnError,
+              stepTimeoutMs != null ? stepTimeoutMs : 10000, result).start();
+    });
+    dispatcher.register("getWorkerPoolMetrics", (call, result) -> {
+      Map<String, Object> metrics = WorkerPool.getMetrics();
+      Boolean reset = call.argument("reset");
+      if (reset != null && reset) {
+        WorkerPool.resetMetrics();
       }
-      case "setLogSeverity": {
-        //now it's possible to setup logSeverity only via PeerConnectionFactory.initialize method
-        //Log.d(TAG, "no implementation for 'setLogSeverity'");
-        break;
+      result.success(metrics);
+    });
+    dispatcher.register("getMethodCallMetrics", (call, result) -> {
+      Boolean reset = call.argument("reset");
+      Map<String, Object> metrics = dispatcher.getMetrics();
+      if (reset != null && reset) {
+        dispatcher.resetMetrics();
       }
-      default:
-        if(frameCryptor.handleMethodCall(call, result)) {
-          break;
-        } else if(dataPacketCryptor.handleMethodCall(call, result)) {
-          break;
-        }
-        result.notImplemented();
-        break;
-    }
+      result.success(metrics);
+    });
   }
 
   private ConstraintsMap capabilitiestoMap(RtpCapabilities capabilities) {
@@ -1809,6 +1905,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     PeerConnection peerConnection = getPeerConnection(id);
     if (peerConnection != null) {
       boolean res = peerConnection.addStream(mediaStream);
+      mPeerConnectionObservers.get(id).invalidateRtpIndex();
       Log.d(TAG, "addStream" + result);
       result.success(res);
     } else {
@@ -1825,6 +1922,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     PeerConnection peerConnection = getPeerConnection(id);
     if (peerConnection != null) {
       peerConnection.removeStream(mediaStream);
+      mPeerConnectionObservers.get(id).invalidateRtpIndex();
       result.success(null);
     } else {
       resultError("peerConnectionRemoveStream", "peerConnection is null", result);
@@ -1985,6 +2083,34 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     result.success(res);
   }
 
+  /** Adds the candidates in order and replies with one addIceCandidate result per candidate. */
+  public void peerConnectionAddICECandidates(List<Map<String, Object>> candidates, final String id,
+                                             final Result result) {
+    PeerConnection peerConnection = getPeerConnection(id);
+    if (peerConnection == null) {
+      resultError("peerConnectionAddICECandidates", "peerConnection is null", result);
+      return;
+    }
+    if (candidates == null) {
+      resultError("peerConnectionAddICECandidates", "candidates is null", result);
+      return;
+    }
+    ArrayList<Object> added = MapBuilder.newList(candidates.size());
+    for (Map<String, Object> map : candidates) {
+      ConstraintsMap candidateMap = new ConstraintsMap(map);
+      int sdpMLineIndex = 0;
+      if (!candidateMap.isNull("sdpMLineIndex")) {
+        sdpMLineIndex = candidateMap.getInt("sdpMLineIndex");
+      }
+      IceCandidate candidate = new IceCandidate(
+          candidateMap.getString("sdpMid"),
+          sdpMLineIndex,
+          candidateMap.getString("candidate"));
+      added.add(peerConnection.addIceCandidate(candidate));
+    }
+    result.success(added);
+  }
+
   public void peerConnectionGetStats(String trackId, String id, final Result result) {
     PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
     if (pco == null || pco.getPeerConnection() == null) {
@@ -1998,6 +2124,50 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     }
   }
 
+  /**
+   * Fans getStats out to all (or the listed) peer connections in parallel and replies once
+   * with the reports keyed by peerConnectionId. Unknown or closed ids are skipped.
+   */
+  public void peerConnectionGetStatsAll(@Nullable List<String> ids, final Result result) {
+    final List<PeerConnectionObserver> targets = new ArrayList<>();
+    if (ids == null) {
+      targets.addAll(mPeerConnectionObservers.values());
+    } else {
+      for (String id : ids) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco != null) {
+          targets.add(pco);
+        }
+      }
+    }
+    for (Iterator<PeerConnectionObserver> it = targets.iterator(); it.hasNext(); ) {
+      if (it.next().getPeerConnection() == null) {
+        it.remove();
+      }
+    }
+
+    final Map<String, Object> stats = new HashMap<>(targets.size() * 2);
+    final Map<String, Object> params = new HashMap<>();
+    params.put("stats", stats);
+    if (targets.isEmpty()) {
+      result.success(params);
+      return;
+    }
+
+    final AtomicInteger pending = new AtomicInteger(targets.size());
+    for (final PeerConnectionObserver pco : targets) {
+      pco.getPeerConnection().getStats(rtcStatsReport -> {
+        Object reports = PeerConnectionObserver.statsReportToMap(rtcStatsReport).get("stats");
+        synchronized (stats) {
+          stats.put(pco.getId(), reports);
+        }
+        if (pending.decrementAndGet() == 0) {
+          result.success(params);
+        }
+      });
+    }
+  }
+
   public void restartIce(final String id) {
     PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
     if (pco == null || pco.getPeerConnection() == null) {
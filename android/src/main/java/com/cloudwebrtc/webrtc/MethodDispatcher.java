@@ -0,0 +1,177 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Method name -> handler table for the FlutterWebRTC.Method channel.
+ *
+ * Sub-modules (frame cryptor, data packet cryptor, ...) register their own methods as a
+ * {@link Module} instead of being chained as fallbacks. Every dispatched call is counted and
+ * timed from dispatch until its result is delivered.
+ */
+class MethodDispatcher {
+
+  interface MethodHandler {
+    void onMethodCall(MethodCall call, Result result);
+  }
+
+  interface Module {
+    void registerMethods(MethodDispatcher dispatcher);
+  }
+
+  private static final class Entry {
+    final MethodHandler handler;
+    final boolean mainThread;
+    final AtomicLong calls = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    final AtomicLong completed = new AtomicLong();
+    final AtomicLong totalNs = new AtomicLong();
+    final AtomicLong maxNs = new AtomicLong();
+
+    Entry(MethodHandler handler, boolean mainThread) {
+      this.handler = handler;
+      this.mainThread = mainThread;
+    }
+
+    void record(long elapsedNs, boolean error) {
+      completed.incrementAndGet();
+      if (error) {
+        errors.incrementAndGet();
+      }
+      totalNs.addAndGet(elapsedNs);
+      long current;
+      while (elapsedNs > (current = maxNs.get()) && !maxNs.compareAndSet(current, elapsedNs)) {
+      }
+    }
+
+    void reset() {
+      calls.set(0);
+      errors.set(0);
+      completed.set(0);
+      totalNs.set(0);
+      maxNs.set(0);
+    }
+  }
+
+  // modules are registered lazily from initialize() while the channel is already live
+  private final Map<String, Entry> handlers = new ConcurrentHashMap<>();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  /** Registers a handler that runs on whichever thread the call arrives on. */
+  void register(String method, MethodHandler handler) {
+    handlers.put(method, new Entry(handler, false));
+  }
+
+  /**
+   * Registers a handler that touches renderers, the camera, audio routing or the Activity
+   * and therefore has to run on the main thread. It still runs in channel order relative to
+   * the other calls.
+   */
+  void registerOnMainThread(String method, MethodHandler handler) {
+    handlers.put(method, new Entry(handler, true));
+  }
+
+  void registerModule(Module module) {
+    module.registerMethods(this);
+  }
+
+  /** Returns false if no handler is registered for the method. */
+  boolean dispatch(MethodCall call, Result result) {
+    final Entry entry = handlers.get(call.method);
+    if (entry == null) {
+      return false;
+    }
+    entry.calls.incrementAndGet();
+    final Result timed = new TimedResult(entry, result, SystemClock.elapsedRealtimeNanos());
+    if (entry.mainThread && Looper.myLooper() != Looper.getMainLooper()) {
+      // Calls run in the order they were sent: the background queue waits until the
+      // main-thread handler has run (not for its result) before dispatching the next call.
+      final CountDownLatch handled = new CountDownLatch(1);
+      mainHandler.post(() -> {
+        try {
+          entry.handler.onMethodCall(call, timed);
+        } finally {
+          handled.countDown();
+        }
+      });
+      try {
+        handled.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    } else {
+      entry.handler.onMethodCall(call, timed);
+    }
+    return true;
+  }
+
+  /** Per-method metrics for every method that has been called at least once. */
+  Map<String, Object> getMetrics() {
+    Map<String, Object> metrics = new HashMap<>();
+    for (Map.Entry<String, Entry> e : handlers.entrySet()) {
+      Entry entry = e.getValue();
+      long calls = entry.calls.get();
+      if (calls == 0) {
+        continue;
+      }
+      long completed = entry.completed.get();
+      Map<String, Object> method = new HashMap<>();
+      method.put("calls", calls);
+      method.put("completed", completed);
+      method.put("errors", entry.errors.get());
+      method.put("avgUs", completed > 0 ? entry.totalNs.get() / 1000.0 / completed : 0.0);
+      method.put("maxUs", entry.maxNs.get() / 1000.0);
+      metrics.put(e.getKey(), method);
+    }
+    return metrics;
+  }
+
+  void resetMetrics() {
+    for (Entry entry : handlers.values()) {
+      entry.reset();
+    }
+  }
+
+  private static final class TimedResult implements Result {
+    private final Entry entry;
+    private final Result result;
+    private final long startNs;
+
+    TimedResult(Entry entry, Result result, long startNs) {
+      this.entry = entry;
+      this.result = result;
+      this.startNs = startNs;
+    }
+
+    @Override
+    public void success(@Nullable Object o) {
+      entry.record(SystemClock.elapsedRealtimeNanos() - startNs, false);
+      result.success(o);
+    }
+
+    @Override
+    public void error(String code, @Nullable String message, @Nullable Object details) {
+      entry.record(SystemClock.elapsedRealtimeNanos() - startNs, true);
+      result.error(code, message, details);
+    }
+
+    @Override
+    public void notImplemented() {
+      entry.record(SystemClock.elapsedRealtimeNanos() - startNs, true);
+      result.notImplemented();
+    }
+  }
+}
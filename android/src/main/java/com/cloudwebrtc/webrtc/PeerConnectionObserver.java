@@ -1,5 +1,7 @@
 package com.cloudwebrtc.webrtc;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
@@ -8,12 +10,17 @@ import com.cloudwebrtc.webrtc.audio.AudioSwitchManager;
 import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.MapBuilder;
 import com.cloudwebrtc.webrtc.utils.Utils;
+import com.cloudwebrtc.webrtc.utils.WebRTCMessageCodec;
+import com.cloudwebrtc.webrtc.utils.WorkerPool;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodChannel.Result;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
@@ -57,6 +64,24 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   private final StateProvider stateProvider;
   private final EventChannel eventChannel;
   private EventChannel.EventSink eventSink;
+  private StatsHistory statsHistory;
+  private StatsAlertEngine statsAlertEngine;
+  // trickle ICE batching: candidates gathered within the window go out as one onCandidates event
+  private final Handler candidateHandler = new Handler(Looper.getMainLooper());
+  private final Runnable flushCandidatesTask = this::flushCandidates;
+  private volatile int candidateBatchWindowMs = 0;
+  private ArrayList<Object> pendingCandidates;
+  // getSenders() and getReceivers() dispose the wrappers their previous call returned, so the
+  // plugin calls them only in senders()/receivers(), keeps the lists and indexes them by track
+  // id until invalidateRtpIndex(). Wrappers are only used while holding rtpLock or on the
+  // method call thread, which is the only one that refreshes the lists.
+  private final Object rtpLock = new Object();
+  @Nullable private List<RtpSender> senders;
+  @Nullable private List<RtpReceiver> receivers;
+  private final Map<String, RtpSender> sendersByTrackId = new HashMap<>();
+  private final Map<String, RtpSender> sendersById = new HashMap<>();
+  private final Map<String, RtpReceiver> receiversByTrackId = new HashMap<>();
+  private final Map<String, RtpReceiver> receiversById = new HashMap<>();
 
   PeerConnectionObserver(PeerConnection.RTCConfiguration configuration, StateProvider stateProvider, BinaryMessenger messenger, String id) {
     this.configuration = configuration;
@@ -64,7 +89,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     this.messenger = messenger;
     this.id = id;
 
-    eventChannel = new EventChannel(messenger, "FlutterWebRTC/peerConnectionEvent" + id);
+    eventChannel = new EventChannel(messenger, "FlutterWebRTC/peerConnectionEvent" + id,
+            WebRTCMessageCodec.METHOD_CODEC);
     eventChannel.setStreamHandler(this);
   }
 
@@ -88,6 +114,10 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     return peerConnection;
   }
 
+  String getId() {
+    return id;
+  }
+
   void setPeerConnection(PeerConnection peerConnection) {
     this.peerConnection = peerConnection;
   }
@@ -97,7 +127,17 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   void close() {
+    candidateHandler.removeCallbacks(flushCandidatesTask);
+    synchronized (flushCandidatesTask) {
+      pendingCandidates = null;
+    }
+    stopStatsHistory();
+    if (statsAlertEngine != null) {
+      statsAlertEngine.stop();
+      statsAlertEngine = null;
+    }
     peerConnection.close();
+    invalidateRtpIndex();
     remoteStreams.clear();
     remoteTracks.clear();
     dataChannels.clear();
@@ -193,91 +233,132 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     return transceiver;
   }
 
+  /**
+   * Drops the sender/receiver lists and their indexes, to be rebuilt on next use. Called
+   * whenever the set of senders or receivers, or the tracks they carry, may have changed.
+   */
+  void invalidateRtpIndex() {
+    synchronized (rtpLock) {
+      senders = null;
+      receivers = null;
+    }
+  }
+
+  List<RtpSender> senders() {
+    synchronized (rtpLock) {
+      if (senders == null) {
+        senders = peerConnection.getSenders();
+        sendersByTrackId.clear();
+        sendersById.clear();
+        for (RtpSender sender : senders) {
+          sendersById.put(sender.id(), sender);
+          MediaStreamTrack track = sender.track();
+          if (track != null) {
+            sendersByTrackId.put(track.id(), sender);
+          }
+        }
+      }
+      return senders;
+    }
+  }
+
+  List<RtpReceiver> receivers() {
+    synchronized (rtpLock) {
+      if (receivers == null) {
+        receivers = peerConnection.getReceivers();
+        receiversByTrackId.clear();
+        receiversById.clear();
+        for (RtpReceiver receiver : receivers) {
+          receiversById.put(receiver.id(), receiver);
+          MediaStreamTrack track = receiver.track();
+          if (track != null) {
+            receiversByTrackId.put(track.id(), receiver);
+          }
+        }
+      }
+      return receivers;
+    }
+  }
+
+  // A miss rebuilds the index once, for senders and receivers created outside the paths that
+  // invalidate it (e.g. addStream before onRenegotiationNeeded has arrived).
+
+  @Nullable
   RtpSender getRtpSenderById(String id) {
-    List<RtpSender> senders = peerConnection.getSenders();
-    for (RtpSender sender : senders) {
-      if (id.equals(sender.id())) {
-        return sender;
+    synchronized (rtpLock) {
+      senders();
+      if (!sendersById.containsKey(id)) {
+        senders = null;
+        senders();
       }
+      return sendersById.get(id);
     }
-    return null;
   }
 
+  @Nullable
   RtpReceiver getRtpReceiverById(String id) {
-    List<RtpReceiver> receivers = peerConnection.getReceivers();
-    for (RtpReceiver receiver : receivers) {
-      if (id.equals(receiver.id())) {
-        return receiver;
+    synchronized (rtpLock) {
+      receivers();
+      if (!receiversById.containsKey(id)) {
+        receivers = null;
+        receivers();
       }
+      return receiversById.get(id);
     }
-    return null;
   }
 
   void handleStatsReport(RTCStatsReport rtcStatsReport, Result result) {
+    result.success(statsReportToMap(rtcStatsReport));
+  }
+
+  static Map<String, Object> statsReportToMap(RTCStatsReport rtcStatsReport) {
       Map<String, RTCStats>    reports = rtcStatsReport.getStatsMap();
-      ConstraintsMap params = new ConstraintsMap();
-      ConstraintsArray stats = new ConstraintsArray();
+      ArrayList<Object> stats = MapBuilder.newList(reports.size());
 
       for (RTCStats report : reports.values()) {
-          ConstraintsMap report_map = new ConstraintsMap();
-
-          report_map.putString("id", report.getId());
-          report_map.putString("type", report.getType());
-          report_map.putDouble("timestamp", report.getTimestampUs());
-
           Map<String, Object> values = report.getMembers();
-          ConstraintsMap v_map = new ConstraintsMap();
-          for (String key : values.keySet()) {
-              Object v = values.get(key);
-              if(v instanceof String) {
-                  v_map.putString(key, (String)v);
+          Map<String, Object> v_map = MapBuilder.newMap(values.size());
+          for (Map.Entry<String, Object> member : values.entrySet()) {
+              String key = member.getKey();
+              Object v = member.getValue();
+              if(v instanceof String || v instanceof Integer || v instanceof Long
+                      || v instanceof Double || v instanceof Boolean) {
+                  v_map.put(key, v);
               } else if(v instanceof String[]) {
-                  ConstraintsArray arr = new ConstraintsArray();
-                  for(String s : (String[])v) {
-                      arr.pushString(s);
-                  }
-                  v_map.putArray(key, arr.toArrayList());
-              } else if(v instanceof Integer) {
-                  v_map.putInt(key, (Integer)v);
-              } else if(v instanceof Long) {
-                  v_map.putLong(key, (Long)v);
-              } else if(v instanceof Double) {
-                  v_map.putDouble(key, (Double)v);
-              } else if(v instanceof Boolean) {
-                  v_map.putBoolean(key, (Boolean)v);
+                  String[] strings = (String[])v;
+                  ArrayList<Object> arr = MapBuilder.newList(strings.length);
+                  Collections.addAll(arr, strings);
+                  v_map.put(key, arr);
               } else if(v instanceof BigInteger){
-                  v_map.putLong(key, ((BigInteger)v).longValue());
+                  v_map.put(key, ((BigInteger)v).longValue());
               }  else if(v instanceof LinkedHashMap) {
-                    ConstraintsMap m = new ConstraintsMap();
-                    for(Map.Entry<String, Object> entry : ((LinkedHashMap<String, Object>)v).entrySet()) {
+                    LinkedHashMap<String, Object> nested = (LinkedHashMap<String, Object>)v;
+                    Map<String, Object> m = MapBuilder.newMap(nested.size());
+                    for(Map.Entry<String, Object> entry : nested.entrySet()) {
                         Object value = entry.getValue();
-                        if(value instanceof String) {
-                            m.putString(entry.getKey(), (String)value);
-                        } else if(value instanceof Integer) {
-                            m.putInt(entry.getKey(), (Integer)value);
-                        } else if(value instanceof Long) {
-                            m.putLong(entry.getKey(), (Long)value);
-                        } else if(value instanceof Double) {
-                            m.putDouble(entry.getKey(), (Double)value);
-                        } else if(value instanceof Boolean) {
-                            m.putBoolean(entry.getKey(), (Boolean)value);
+                        if(value instanceof String || value instanceof Integer || value instanceof Long
+                                || value instanceof Double || value instanceof Boolean) {
+                            m.put(entry.getKey(), value);
                         } else if(value instanceof BigInteger) {
-                            m.putLong(entry.getKey(), ((BigInteger)value).longValue());
+                            m.put(entry.getKey(), ((BigInteger)value).longValue());
                         } else {
                             Log.d(TAG, "getStats() unknown type: " + value.getClass().getName() + " for [" + entry.getKey() + "] value: " + value);
                         }
                     }
-                    v_map.putMap(key, m.toMap());
+                    v_map.put(key, m);
               } else {
                   Log.d(TAG, "getStats() unknown type: " + v.getClass().getName() + " for [" + key + "] value: " + v);
               }
           }
-      report_map.putMap("values", v_map.toMap());
-      stats.pushMap(report_map);
+      stats.add(MapBuilder.of(4)
+              .put("id", report.getId())
+              .put("type", report.getType())
+              .put("timestamp", report.getTimestampUs())
+              .put("values", v_map)
+              .build());
     }
 
-    params.putArray("stats", stats.toArrayList());
-    result.success(params.toMap());
+    return MapBuilder.of(1).put("stats", stats).build();
   }
 
   void getStatsForTrack(String trackId, Result result) {
@@ -286,27 +367,24 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       return;
     }
 
-    RtpSender sender = null;
-    RtpReceiver receiver = null;
-    for (RtpSender s : peerConnection.getSenders()) {
-      if (s.track() != null && trackId.equals(s.track().id())) {
-        sender = s;
-        break;
+    synchronized (rtpLock) {
+      senders();
+      receivers();
+      if (!sendersByTrackId.containsKey(trackId) && !receiversByTrackId.containsKey(trackId)) {
+        invalidateRtpIndex();
+        senders();
+        receivers();
       }
-    }
-    for (RtpReceiver r : peerConnection.getReceivers()) {
-      if (r.track() != null && trackId.equals(r.track().id())) {
-        receiver = r;
-        break;
+      RtpSender sender = sendersByTrackId.get(trackId);
+      RtpReceiver receiver = receiversByTrackId.get(trackId);
+      if (sender != null) {
+        peerConnection.getStats(sender, rtcStatsReport -> handleStatsReport(rtcStatsReport, result));
+      } else if (receiver != null) {
+        peerConnection.getStats(receiver, rtcStatsReport -> handleStatsReport(rtcStatsReport, result));
+      } else {
+        resultError("peerConnectionGetStats", "MediaStreamTrack not found for id: " + trackId, result);
       }
     }
-    if (sender != null) {
-      peerConnection.getStats(sender, rtcStatsReport -> handleStatsReport(rtcStatsReport, result));
-    } else if (receiver != null) {
-      peerConnection.getStats(receiver, rtcStatsReport -> handleStatsReport(rtcStatsReport, result));
-    } else {
-      resultError("peerConnectionGetStats", "MediaStreamTrack not found for id: " + trackId, result);
-    }
   }
 
   void getStats(final Result result) {
@@ -314,27 +392,123 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
         rtcStatsReport -> handleStatsReport(rtcStatsReport, result));
   }
 
+  void startStatsHistory(List<String> metrics, int intervalMs, int capacity, Result result) {
+    stopStatsHistory();
+    try {
+      statsHistory = new StatsHistory(peerConnection, metrics, intervalMs, capacity);
+    } catch (IllegalArgumentException e) {
+      resultError("startStatsHistory", e.getMessage(), result);
+      return;
+    }
+    statsHistory.start();
+    result.success(null);
+  }
+
+  void stopStatsHistory() {
+    if (statsHistory != null) {
+      statsHistory.stop();
+    }
+  }
+
+  void exportStatsHistory(@Nullable String path, Result result) {
+    if (statsHistory == null) {
+      resultError("exportStatsHistory", "stats history not started", result);
+      return;
+    }
+    final StatsHistory history = statsHistory;
+    WorkerPool.IO.execute(() -> {
+      try {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putInt("samples", history.sampleCount());
+        if (path != null) {
+          File file = new File(path);
+          history.exportToFile(file);
+          params.putString("path", path);
+          params.putLong("size", file.length());
+        } else {
+          params.putByte("data", history.export());
+        }
+        result.success(params.toMap());
+      } catch (IOException e) {
+        resultError("exportStatsHistory", e.getMessage(), result);
+      }
+    });
+  }
+
+  void setStatsAlertRules(@Nullable List<Map<String, Object>> rules, int intervalMs, Result result) {
+    if (statsAlertEngine != null) {
+      statsAlertEngine.stop();
+      statsAlertEngine = null;
+    }
+    if (rules == null || rules.isEmpty()) {
+      result.success(null);
+      return;
+    }
+    try {
+      statsAlertEngine = new StatsAlertEngine(peerConnection, rules, intervalMs, alert -> {
+        alert.putString("event", "onStatsAlert");
+        sendEvent(alert);
+      });
+    } catch (IllegalArgumentException | ClassCastException e) {
+      resultError("setStatsAlertRules", e.getMessage(), result);
+      return;
+    }
+    statsAlertEngine.start();
+    result.success(null);
+  }
+
+  /** Sets the onCandidates coalescing window, 0 sends one onCandidate event per candidate. */
+  void setCandidateBatching(int windowMs) {
+    candidateBatchWindowMs = Math.max(0, windowMs);
+    if (candidateBatchWindowMs == 0) {
+      flushCandidates();
+    }
+  }
+
+  private void flushCandidates() {
+    candidateHandler.removeCallbacks(flushCandidatesTask);
+    // send under the lock so a flush racing with the gathering thread can't reorder events
+    synchronized (flushCandidatesTask) {
+      if (pendingCandidates != null) {
+        sendEvent(MapBuilder.event("onCandidates", 1)
+                .put("candidates", pendingCandidates)
+                .build());
+        pendingCandidates = null;
+      }
+    }
+  }
+
   @Override
   public void onIceCandidate(final IceCandidate candidate) {
     Log.d(TAG, "onIceCandidate");
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "onCandidate");
-    params.putMap("candidate", candidateToMap(candidate));
-    sendEvent(params);
+    int windowMs = candidateBatchWindowMs;
+    if (windowMs > 0) {
+      synchronized (flushCandidatesTask) {
+        if (pendingCandidates == null) {
+          pendingCandidates = new ArrayList<>();
+          candidateHandler.postDelayed(flushCandidatesTask, windowMs);
+        }
+        pendingCandidates.add(candidateToMap(candidate));
+      }
+      return;
+    }
+    sendEvent(MapBuilder.event("onCandidate", 1)
+            .put("candidate", candidateToMap(candidate))
+            .build());
   }
 
   @Override
   public void onSelectedCandidatePairChanged(CandidatePairChangeEvent event) {
     Log.d(TAG, "onSelectedCandidatePairChanged");
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "onSelectedCandidatePairChanged");
-    ConstraintsMap candidateParams = new ConstraintsMap();
-    candidateParams.putInt("lastDataReceivedMs", event.lastDataReceivedMs);
-    candidateParams.putMap("local", candidateToMap(event.local));
-    candidateParams.putMap("remote", candidateToMap(event.remote));
-    candidateParams.putString("reason", event.reason);
-    params.putMap("candidate", candidateParams.toMap());
-    sendEvent(params);
+    Map<String, Object> candidateParams = MapBuilder.of(4)
+            .put("lastDataReceivedMs", event.lastDataReceivedMs)
+            .put("local", candidateToMap(event.local))
+            .put("remote", candidateToMap(event.remote))
+            .put("reason", event.reason)
+            .build();
+    sendEvent(MapBuilder.event("onSelectedCandidatePairChanged", 1)
+            .put("candidate", candidateParams)
+            .build());
   }
 
   @Override
@@ -344,10 +518,9 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   @Override
   public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "iceConnectionState");
-    params.putString("state", Utils.iceConnectionStateString(iceConnectionState));
-    sendEvent(params);
+    sendEvent(MapBuilder.event("iceConnectionState", 1)
+            .put("state", Utils.iceConnectionStateString(iceConnectionState))
+            .build());
   }
 
   @Override
@@ -362,10 +535,11 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   @Override
   public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
     Log.d(TAG, "onIceGatheringChange" + iceGatheringState.name());
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "iceGatheringState");
-    params.putString("state", Utils.iceGatheringStateString(iceGatheringState));
-    sendEvent(params);
+    // candidates gathered so far must reach Dart before the gathering state changes
+    flushCandidates();
+    sendEvent(MapBuilder.event("iceGatheringState", 1)
+            .put("state", Utils.iceGatheringStateString(iceGatheringState))
+            .build());
   }
 
   private String getUIDForStream(MediaStream mediaStream) {
@@ -402,13 +576,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       remoteStreams.put(streamId, mediaStream);
     }
 
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "onAddStream");
-    params.putString("streamId", streamId);
-    params.putString("ownerTag", id);
-
-    ConstraintsArray audioTracks = new ConstraintsArray();
-    ConstraintsArray videoTracks = new ConstraintsArray();
+    ArrayList<Object> audioTracks = MapBuilder.newList(mediaStream.audioTracks.size());
+    ArrayList<Object> videoTracks = MapBuilder.newList(mediaStream.videoTracks.size());
 
     for (int i = 0; i < mediaStream.videoTracks.size(); i++) {
       VideoTrack track = mediaStream.videoTracks.get(i);
@@ -416,14 +585,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
       remoteTracks.put(trackId, track);
 
-      ConstraintsMap trackInfo = new ConstraintsMap();
-      trackInfo.putString("id", trackId);
-      trackInfo.putString("label", "Video");
-      trackInfo.putString("kind", track.kind());
-      trackInfo.putBoolean("enabled", track.enabled());
-      trackInfo.putString("readyState", track.state().toString());
-      trackInfo.putBoolean("remote", true);
-      videoTracks.pushMap(trackInfo);
+      videoTracks.add(remoteTrackToMap(track, "Video"));
     }
     for (int i = 0; i < mediaStream.audioTracks.size(); i++) {
       AudioTrack track = mediaStream.audioTracks.get(i);
@@ -431,27 +593,37 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
       remoteTracks.put(trackId, track);
 
-      ConstraintsMap trackInfo = new ConstraintsMap();
-      trackInfo.putString("id", trackId);
-      trackInfo.putString("label", "Audio");
-      trackInfo.putString("kind", track.kind());
-      trackInfo.putBoolean("enabled", track.enabled());
-      trackInfo.putString("readyState", track.state().toString());
-      trackInfo.putBoolean("remote", true);
-      audioTracks.pushMap(trackInfo);
+      audioTracks.add(remoteTrackToMap(track, "Audio"));
     }
-    params.putArray("audioTracks", audioTracks.toArrayList());
-    params.putArray("videoTracks", videoTracks.toArrayList());
-
-    sendEvent(params);
+    sendEvent(MapBuilder.event("onAddStream", 4)
+            .put("streamId", streamId)
+            .put("ownerTag", id)
+            .put("audioTracks", audioTracks)
+            .put("videoTracks", videoTracks)
+            .build());
   }
 
   void sendEvent(ConstraintsMap event) {
+    sendEvent(event.toMap());
+  }
+
+  void sendEvent(Map<String, Object> event) {
     if (eventSink != null) {
-      eventSink.success(event.toMap());
+      eventSink.success(event);
     }
   }
 
+  private static Map<String, Object> remoteTrackToMap(MediaStreamTrack track, String label) {
+    return MapBuilder.of(6)
+            .put("id", track.id())
+            .put("label", label)
+            .put("kind", track.kind())
+            .put("enabled", track.enabled())
+            .put("readyState", track.state().toString())
+            .put("remote", true)
+            .build();
+  }
+
   @Override
   public void onRemoveStream(MediaStream mediaStream) {
 
@@ -464,39 +636,30 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       this.remoteTracks.remove(track.id());
     }
 
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "onRemoveStream");
-    params.putString("streamId", streamId);
-    sendEvent(params);
+    sendEvent(MapBuilder.event("onRemoveStream", 1)
+            .put("streamId", streamId)
+            .build());
   }
 
   @Override
   public void onTrack(RtpTransceiver transceiver) {
+    invalidateRtpIndex();
   }
 
   @Override
   public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
     Log.d(TAG, "onAddTrack");
+    invalidateRtpIndex();
     // for plan-b
     for (MediaStream stream : mediaStreams) {
       String streamId = stream.getId();
       MediaStreamTrack track = receiver.track();
-      ConstraintsMap params = new ConstraintsMap();
-      params.putString("event", "onAddTrack");
-      params.putString("streamId", streamId);
-      params.putString("ownerTag", id);
-      params.putString("trackId", track.id());
-
-      String trackId = track.id();
-      ConstraintsMap trackInfo = new ConstraintsMap();
-      trackInfo.putString("id", trackId);
-      trackInfo.putString("label", track.kind());
-      trackInfo.putString("kind", track.kind());
-      trackInfo.putBoolean("enabled", track.enabled());
-      trackInfo.putString("readyState", track.state().toString());
-      trackInfo.putBoolean("remote", true);
-      params.putMap("track", trackInfo.toMap());
-      sendEvent(params);
+      sendEvent(MapBuilder.event("onAddTrack", 4)
+              .put("streamId", streamId)
+              .put("ownerTag", id)
+              .put("trackId", track.id())
+              .put("track", remoteTrackToMap(track, track.kind()))
+              .build());
 
       if ("audio".equals(track.kind())) {
         AudioSwitchManager.instance.start();
@@ -504,17 +667,15 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     }
 
     // For unified-plan
-    ConstraintsMap params = new ConstraintsMap();
-    ConstraintsArray streams = new ConstraintsArray();
-    for (int i = 0; i < mediaStreams.length; i++) {
-      MediaStream stream = mediaStreams[i];
-      streams.pushMap(new ConstraintsMap(mediaStreamToMap(stream)));
+    ArrayList<Object> streams = MapBuilder.newList(mediaStreams.length);
+    for (MediaStream stream : mediaStreams) {
+      streams.add(mediaStreamToMap(stream));
     }
 
-    params.putString("event", "onTrack");
-    params.putArray("streams", streams.toArrayList());
-    params.putMap("track", mediaTrackToMap(receiver.track()));
-    params.putMap("receiver", rtpReceiverToMap(receiver));
+    MapBuilder params = MapBuilder.event("onTrack", 4)
+            .put("streams", streams)
+            .put("track", mediaTrackToMap(receiver.track()))
+            .put("receiver", rtpReceiverToMap(receiver));
 
     if (this.configuration.sdpSemantics == PeerConnection.SdpSemantics.UNIFIED_PLAN) {
       List<RtpTransceiver> transceivers = peerConnection.getTransceivers();
@@ -525,41 +686,34 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
             transceiverId = stateProvider.getNextStreamUUID();
             this.transceivers.put(transceiverId,transceiver);
           }
-          params.putMap("transceiver", transceiverToMap(transceiverId, transceiver));
+          params.put("transceiver", transceiverToMap(transceiverId, transceiver));
         }
       }
     }
-    sendEvent(params);
+    sendEvent(params.build());
   }
 
   @Override
   public void onRemoveTrack(RtpReceiver rtpReceiver) {
     Log.d(TAG, "onRemoveTrack");
+    invalidateRtpIndex();
 
     MediaStreamTrack track = rtpReceiver.track();
     String trackId = track.id();
-    ConstraintsMap trackInfo = new ConstraintsMap();
-    trackInfo.putString("id", trackId);
-    trackInfo.putString("label", track.kind());
-    trackInfo.putString("kind", track.kind());
-    trackInfo.putBoolean("enabled", track.enabled());
-    trackInfo.putString("readyState", track.state().toString());
-    trackInfo.putBoolean("remote", true);
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "onRemoveTrack");
-    params.putString("trackId", track.id());
-    params.putMap("track", trackInfo.toMap());
-    sendEvent(params);
+    sendEvent(MapBuilder.event("onRemoveTrack", 2)
+            .put("trackId", trackId)
+            .put("track", remoteTrackToMap(track, track.kind()))
+            .build());
   }
 
   @Override
   public void onDataChannel(DataChannel dataChannel) {
     String flutterId = getNextDataChannelUUID();
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "didOpenDataChannel");
-    params.putInt("id", dataChannel.id());
-    params.putString("label", dataChannel.label());
-    params.putString("flutterId", flutterId);
+    Map<String, Object> params = MapBuilder.event("didOpenDataChannel", 3)
+            .put("id", dataChannel.id())
+            .put("label", dataChannel.label())
+            .put("flutterId", flutterId)
+            .build();
 
     dataChannels.put(flutterId, dataChannel);
     registerDataChannelObserver(flutterId, dataChannel);
@@ -577,26 +731,24 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   @Override
   public void onRenegotiationNeeded() {
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "onRenegotiationNeeded");
-    sendEvent(params);
+    invalidateRtpIndex();
+    sendEvent(MapBuilder.event("onRenegotiationNeeded", 0).build());
   }
 
   @Override
   public void onSignalingChange(PeerConnection.SignalingState signalingState) {
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "signalingState");
-    params.putString("state", Utils.signalingStateString(signalingState));
-    sendEvent(params);
+    invalidateRtpIndex();
+    sendEvent(MapBuilder.event("signalingState", 1)
+            .put("state", Utils.signalingStateString(signalingState))
+            .build());
   }
 
   @Override
   public void onConnectionChange(PeerConnection.PeerConnectionState connectionState) {
     Log.d(TAG, "onConnectionChange" + connectionState.name());
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "peerConnectionState");
-    params.putString("state", Utils.connectionStateString(connectionState));
-    sendEvent(params);
+    sendEvent(MapBuilder.event("peerConnectionState", 1)
+            .put("state", Utils.connectionStateString(connectionState))
+            .build());
   }
 
   @Nullable
@@ -843,36 +995,36 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   @Nullable
   private Map<String, Object> mediaStreamToMap(MediaStream stream) {
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("streamId", stream.getId());
-    params.putString("ownerTag", id);
-    ConstraintsArray audioTracks = new ConstraintsArray();
-    ConstraintsArray videoTracks = new ConstraintsArray();
+    ArrayList<Object> audioTracks = MapBuilder.newList(stream.audioTracks.size());
+    ArrayList<Object> videoTracks = MapBuilder.newList(stream.videoTracks.size());
 
     for (MediaStreamTrack track : stream.audioTracks) {
-      audioTracks.pushMap(new ConstraintsMap(mediaTrackToMap(track)));
+      audioTracks.add(mediaTrackToMap(track));
     }
 
     for (MediaStreamTrack track : stream.videoTracks) {
-      videoTracks.pushMap(new ConstraintsMap(mediaTrackToMap(track)));
+      videoTracks.add(mediaTrackToMap(track));
     }
 
-    params.putArray("audioTracks", audioTracks.toArrayList());
-    params.putArray("videoTracks", videoTracks.toArrayList());
-    return params.toMap();
+    return MapBuilder.of(4)
+            .put("streamId", stream.getId())
+            .put("ownerTag", id)
+            .put("audioTracks", audioTracks)
+            .put("videoTracks", videoTracks)
+            .build();
   }
 
   @Nullable
   private Map<String, Object> mediaTrackToMap(MediaStreamTrack track) {
-    ConstraintsMap info = new ConstraintsMap();
+    Map<String, Object> info = MapBuilder.newMap(5);
     if (track != null) {
-      info.putString("id", track.id());
-      info.putString("label", track.getClass() == VideoTrack.class ? "video" : "audio");
-      info.putString("kind", track.kind());
-      info.putBoolean("enabled", track.enabled());
-      info.putString("readyState", track.state().toString());
+      info.put("id", track.id());
+      info.put("label", track.getClass() == VideoTrack.class ? "video" : "audio");
+      info.put("kind", track.kind());
+      info.put("enabled", track.enabled());
+      info.put("readyState", track.state().toString());
     }
-    return info.toMap();
+    return info;
   }
 
   private Map<String, Object> dtmfSenderToMap(DtmfSender dtmfSender, String id) {
@@ -918,15 +1070,16 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   Map<String, Object> candidateToMap(IceCandidate candidate) {
-    ConstraintsMap candidateParams = new ConstraintsMap();
-    candidateParams.putInt("sdpMLineIndex", candidate.sdpMLineIndex);
-    candidateParams.putString("sdpMid", candidate.sdpMid);
-    candidateParams.putString("candidate", candidate.sdp);
-    return candidateParams.toMap();
+    return MapBuilder.of(3)
+            .put("sdpMLineIndex", candidate.sdpMLineIndex)
+            .put("sdpMid", candidate.sdpMid)
+            .put("candidate", candidate.sdp)
+            .build();
   }
 
   public void addTrack(MediaStreamTrack track, List<String> streamIds, Result result) {
     RtpSender sender = peerConnection.addTrack(track, streamIds);
+    invalidateRtpIndex();
     result.success(rtpSenderToMap(sender));
   }
 
@@ -937,6 +1090,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       return;
     }
     boolean res = peerConnection.removeTrack(sender);
+    invalidateRtpIndex();
     Map<String, Object> params = new HashMap<>();
     params.put("result", res);
     result.success(params);
@@ -954,6 +1108,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       transceiverId = stateProvider.getNextStreamUUID();
     }
     transceivers.put(transceiverId, transceiver);
+    invalidateRtpIndex();
     result.success(transceiverToMap(transceiverId, transceiver));
   }
 
@@ -969,6 +1124,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       transceiverId = stateProvider.getNextStreamUUID();
     }
     transceivers.put(transceiverId, transceiver);
+    invalidateRtpIndex();
     result.success(transceiverToMap(transceiverId, transceiver));
   }
 
@@ -1054,6 +1210,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       return;
     }
     transceiver.stop();
+    invalidateRtpIndex();
     result.success(null);
   }
 
@@ -1077,6 +1234,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       return;
     }
     sender.setTrack(track, false);
+    invalidateRtpIndex();
     result.success(null);
   }
 
@@ -1091,7 +1249,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   public void getSenders(Result result) {
-    List<RtpSender> senders = peerConnection.getSenders();
+    invalidateRtpIndex();
+    List<RtpSender> senders = senders();
     ConstraintsArray sendersParams = new ConstraintsArray();
     for (RtpSender sender : senders) {
       sendersParams.pushMap(new ConstraintsMap(rtpSenderToMap(sender)));
@@ -1102,7 +1261,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   public void getReceivers(Result result) {
-    List<RtpReceiver> receivers = peerConnection.getReceivers();
+    invalidateRtpIndex();
+    List<RtpReceiver> receivers = receivers();
     ConstraintsArray receiversParams = new ConstraintsArray();
     for (RtpReceiver receiver : receivers) {
       receiversParams.pushMap(new ConstraintsMap(rtpReceiverToMap(receiver)));
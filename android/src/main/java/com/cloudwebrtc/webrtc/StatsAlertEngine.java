@@ -0,0 +1,251 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates quality threshold rules on periodically sampled stats and reports only
+ * transitions, so the Dart side does not need to poll getStats to detect degradations.
+ *
+ * Rule map keys:
+ *  id, metric ("type.member"), comparator (">", ">=", "<", "<="), threshold,
+ *  mode ("value", "delta" or "rate"), window (samples), hysteresis,
+ *  denominator (optional list of "type.member", divides the metric delta by their summed delta).
+ */
+class StatsAlertEngine {
+
+  interface Listener {
+    void onStatsAlert(ConstraintsMap alert);
+  }
+
+  private final PeerConnection peerConnection;
+  private final List<Rule> rules;
+  private final int intervalMs;
+  private final Listener listener;
+  private final Handler handler = new Handler(StatsHistory.getSamplingLooper());
+  private volatile boolean running = false;
+
+  private final Runnable sampleTask = new Runnable() {
+    @Override
+    public void run() {
+      if (!running) {
+        return;
+      }
+      peerConnection.getStats(StatsAlertEngine.this::evaluate);
+      handler.postDelayed(this, intervalMs);
+    }
+  };
+
+  StatsAlertEngine(PeerConnection peerConnection, List<Map<String, Object>> rules, int intervalMs,
+                   Listener listener) {
+    this.peerConnection = peerConnection;
+    this.intervalMs = Math.max(100, intervalMs);
+    this.listener = listener;
+    this.rules = new ArrayList<>(rules.size());
+    for (Map<String, Object> rule : rules) {
+      this.rules.add(new Rule(new ConstraintsMap(rule)));
+    }
+  }
+
+  void start() {
+    if (running) return;
+    running = true;
+    handler.post(sampleTask);
+  }
+
+  /** Returns once no sample can still be running, so the peer connection may be disposed. */
+  void stop() {
+    running = false;
+    handler.removeCallbacks(sampleTask);
+    StatsHistory.awaitSampling(handler, sampleTask);
+  }
+
+  private void evaluate(RTCStatsReport report) {
+    if (!running) {
+      return;
+    }
+    Map<String, RTCStats> statsMap = report.getStatsMap();
+    for (Rule rule : rules) {
+      Double value = rule.sample(statsMap);
+      if (value == null) {
+        continue;
+      }
+      boolean fire = rule.compare(value, rule.threshold);
+      boolean clear = !rule.compare(value, rule.clearThreshold());
+      if (!rule.active && fire) {
+        rule.active = true;
+        listener.onStatsAlert(rule.toAlert("fired", value));
+      } else if (rule.active && clear) {
+        rule.active = false;
+        listener.onStatsAlert(rule.toAlert("cleared", value));
+      }
+    }
+  }
+
+  private static double sumMetric(Map<String, RTCStats> statsMap, String type, String member) {
+    double sum = Double.NaN;
+    for (RTCStats stats : statsMap.values()) {
+      if (!type.equals(stats.getType())) {
+        continue;
+      }
+      double v = StatsHistory.toDouble(stats.getMembers().get(member));
+      if (!Double.isNaN(v)) {
+        sum = Double.isNaN(sum) ? v : sum + v;
+      }
+    }
+    return sum;
+  }
+
+  private static double getNumber(ConstraintsMap map, String key, double fallback) {
+    Object v = map.toMap().get(key);
+    return v instanceof Number ? ((Number) v).doubleValue() : fallback;
+  }
+
+  private static String[] splitMetric(String metric) {
+    int dot = metric == null ? -1 : metric.indexOf('.');
+    if (dot <= 0 || dot == metric.length() - 1) {
+      throw new IllegalArgumentException("Invalid stats metric: " + metric);
+    }
+    return new String[] {metric.substring(0, dot), metric.substring(dot + 1)};
+  }
+
+  private static final class Rule {
+    final String id;
+    final String metric;
+    final String[] metricPath;
+    final String[][] denominatorPaths;
+    final String comparator;
+    final double threshold;
+    final double hysteresis;
+    final String mode;
+    final int window;
+    // ring of the last window + 1 raw samples (metric and denominator sum)
+    final double[] metricSamples;
+    final double[] denominatorSamples;
+    final long[] timestampsMs;
+    int head = 0;
+    int count = 0;
+    boolean active = false;
+
+    Rule(ConstraintsMap map) {
+      id = map.getString("id");
+      metric = map.getString("metric");
+      metricPath = splitMetric(metric);
+      comparator = map.hasKey("comparator") ? map.getString("comparator") : ">";
+      if (!">".equals(comparator) && !">=".equals(comparator)
+              && !"<".equals(comparator) && !"<=".equals(comparator)) {
+        throw new IllegalArgumentException("Invalid comparator: " + comparator);
+      }
+      threshold = getNumber(map, "threshold", Double.NaN);
+      if (Double.isNaN(threshold)) {
+        throw new IllegalArgumentException("Missing threshold for rule: " + id);
+      }
+      hysteresis = getNumber(map, "hysteresis", 0);
+      mode = map.hasKey("mode") ? map.getString("mode") : "value";
+      if (!"value".equals(mode) && !"delta".equals(mode) && !"rate".equals(mode)) {
+        throw new IllegalArgumentException("Invalid mode: " + mode);
+      }
+      window = map.hasKey("window") ? Math.max(1, map.getInt("window")) : 1;
+      ArrayList<Object> denominator = map.hasKey("denominator") ? map.getListArray("denominator") : null;
+      if (denominator != null) {
+        denominatorPaths = new String[denominator.size()][];
+        for (int i = 0; i < denominator.size(); i++) {
+          denominatorPaths[i] = splitMetric((String) denominator.get(i));
+        }
+      } else {
+        denominatorPaths = null;
+      }
+      metricSamples = new double[window + 1];
+      denominatorSamples = new double[window + 1];
+      timestampsMs = new long[window + 1];
+    }
+
+    boolean compare(double value, double limit) {
+      switch (comparator) {
+        case ">":
+          return value > limit;
+        case ">=":
+          return value >= limit;
+        case "<":
+          return value < limit;
+        default:
+          return value <= limit;
+      }
+    }
+
+    double clearThreshold() {
+      return comparator.startsWith(">") ? threshold - hysteresis : threshold + hysteresis;
+    }
+
+    /** Records the current sample and returns the rule value, or null if not enough data. */
+    @Nullable
+    Double sample(Map<String, RTCStats> statsMap) {
+      double m = sumMetric(statsMap, metricPath[0], metricPath[1]);
+      if (Double.isNaN(m)) {
+        return null;
+      }
+      double d = 0;
+      if (denominatorPaths != null) {
+        for (String[] path : denominatorPaths) {
+          double v = sumMetric(statsMap, path[0], path[1]);
+          if (!Double.isNaN(v)) {
+            d += v;
+          }
+        }
+      }
+      metricSamples[head] = m;
+      denominatorSamples[head] = d;
+      timestampsMs[head] = System.currentTimeMillis();
+      int newest = head;
+      head = (head + 1) % metricSamples.length;
+      if (count < metricSamples.length) {
+        count++;
+      }
+
+      if ("value".equals(mode)) {
+        double sum = 0;
+        int n = Math.min(count, window);
+        for (int i = 0; i < n; i++) {
+          sum += metricSamples[(newest - i + metricSamples.length) % metricSamples.length];
+        }
+        return sum / n;
+      }
+
+      if (count < 2) {
+        return null;
+      }
+      int oldest = count == metricSamples.length ? head : 0;
+      double delta = metricSamples[newest] - metricSamples[oldest];
+      if (denominatorPaths != null) {
+        double total = denominatorSamples[newest] - denominatorSamples[oldest];
+        delta = total > 0 ? delta / total : 0;
+      }
+      if ("rate".equals(mode)) {
+        long elapsedMs = timestampsMs[newest] - timestampsMs[oldest];
+        return elapsedMs > 0 ? delta * 1000.0 / elapsedMs : null;
+      }
+      return delta;
+    }
+
+    ConstraintsMap toAlert(String state, double value) {
+      ConstraintsMap alert = new ConstraintsMap();
+      alert.putString("ruleId", id);
+      alert.putString("metric", metric);
+      alert.putString("state", state);
+      alert.putDouble("value", value);
+      alert.putDouble("threshold", threshold);
+      return alert;
+    }
+  }
+}
@@ -0,0 +1,292 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.WebRTCMessageCodec;
+
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/**
+ * Benchmark for the stats conversion path: feeds synthetic RTCStatsReport-shaped data through
+ * PeerConnectionObserver.statsReportToMap and reports time, allocated bytes and the size of
+ * the encoded result. Encoding is measured with both StandardMessageCodec and
+ * WebRTCMessageCodec, for the stats payloads and for a typical burst of signaling events.
+ */
+class StatsBenchmark {
+  private final int peerConnections;
+  private final int tracksPerPeerConnection;
+  private final int candidatesPerPeerConnection;
+  private final int iterations;
+
+  StatsBenchmark(int peerConnections, int tracksPerPeerConnection, int candidatesPerPeerConnection,
+                 int iterations) {
+    this.peerConnections = Math.max(1, peerConnections);
+    this.tracksPerPeerConnection = Math.max(1, tracksPerPeerConnection);
+    this.candidatesPerPeerConnection = Math.max(1, candidatesPerPeerConnection);
+    this.iterations = Math.max(1, iterations);
+  }
+
+  Map<String, Object> run() {
+    RTCStatsReport[] reports = new RTCStatsReport[peerConnections];
+    int reportCount = 0;
+    for (int i = 0; i < peerConnections; i++) {
+      reports[i] = syntheticReport(i);
+      reportCount += reports[i].getStatsMap().size();
+    }
+
+    // warm up so JIT and class loading do not end up in the numbers
+    for (int i = 0; i < Math.min(iterations, 10); i++) {
+      for (RTCStatsReport report : reports) {
+        PeerConnectionObserver.statsReportToMap(report);
+      }
+    }
+
+    long[] convertNs = new long[iterations];
+    long[] encodeNs = new long[iterations];
+    long[] internedEncodeNs = new long[iterations];
+    long encodedBytes = 0;
+    long internedBytes = 0;
+    long allocatedBefore = allocatedBytes();
+    for (int i = 0; i < iterations; i++) {
+      for (RTCStatsReport report : reports) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        Map<String, Object> map = PeerConnectionObserver.statsReportToMap(report);
+        long converted = SystemClock.elapsedRealtimeNanos();
+        ByteBuffer encoded = StandardMessageCodec.INSTANCE.encodeMessage(map);
+        long end = SystemClock.elapsedRealtimeNanos();
+        ByteBuffer interned = WebRTCMessageCodec.INSTANCE.encodeMessage(map);
+        long internedEnd = SystemClock.elapsedRealtimeNanos();
+        convertNs[i] += converted - start;
+        encodeNs[i] += end - converted;
+        internedEncodeNs[i] += internedEnd - end;
+        if (i == 0) {
+          encodedBytes += encoded.position();
+          internedBytes += interned.position();
+        }
+      }
+    }
+    long allocatedAfter = allocatedBytes();
+
+    Map<String, Object>[] signaling = syntheticSignalingEvents();
+    long[] signalingEncodeNs = new long[iterations];
+    long[] signalingInternedEncodeNs = new long[iterations];
+    long signalingBytes = 0;
+    long signalingInternedBytes = 0;
+    for (int i = 0; i < iterations; i++) {
+      for (Map<String, Object> event : signaling) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        ByteBuffer encoded = StandardMessageCodec.INSTANCE.encodeMessage(event);
+        long end = SystemClock.elapsedRealtimeNanos();
+        ByteBuffer interned = WebRTCMessageCodec.INSTANCE.encodeMessage(event);
+        long internedEnd = SystemClock.elapsedRealtimeNanos();
+        signalingEncodeNs[i] += end - start;
+        signalingInternedEncodeNs[i] += internedEnd - end;
+        if (i == 0) {
+          signalingBytes += encoded.position();
+          signalingInternedBytes += interned.position();
+        }
+      }
+    }
+
+    ConstraintsMap result = new ConstraintsMap();
+    result.putInt("peerConnections", peerConnections);
+    result.putInt("reportsPerIteration", reportCount);
+    result.putInt("iterations", iterations);
+    putPercentiles(result, "convert", convertNs);
+    putPercentiles(result, "encode", encodeNs);
+    putPercentiles(result, "internedEncode", internedEncodeNs);
+    result.putLong("serializedBytes", encodedBytes);
+    result.putLong("internedSerializedBytes", internedBytes);
+    result.putInt("signalingEvents", signaling.length);
+    putPercentiles(result, "signalingEncode", signalingEncodeNs);
+    putPercentiles(result, "signalingInternedEncode", signalingInternedEncodeNs);
+    result.putLong("signalingBytes", signalingBytes);
+    result.putLong("signalingInternedBytes", signalingInternedBytes);
+    if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+      // includes encoding; process-wide counter, so run on an otherwise idle app
+      result.putLong("allocatedBytesPerIteration", (allocatedAfter - allocatedBefore) / iterations);
+    }
+    return result.toMap();
+  }
+
+  private static void putPercentiles(ConstraintsMap result, String prefix, long[] samplesNs) {
+    long[] sorted = samplesNs.clone();
+    Arrays.sort(sorted);
+    long total = 0;
+    for (long v : sorted) {
+      total += v;
+    }
+    result.putDouble(prefix + "AvgUs", total / 1000.0 / sorted.length);
+    result.putDouble(prefix + "P50Us", sorted[sorted.length / 2] / 1000.0);
+    result.putDouble(prefix + "P95Us", sorted[(int) Math.min(sorted.length - 1, sorted.length * 0.95)] / 1000.0);
+  }
+
+  private static long allocatedBytes() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+      String v = Debug.getRuntimeStat("art.gc.bytes-allocated");
+      if (v != null) {
+        try {
+          return Long.parseLong(v);
+        } catch (NumberFormatException ignored) {
+        }
+      }
+    }
+    return -1;
+  }
+
+  private RTCStatsReport syntheticReport(int pc) {
+    long ts = System.currentTimeMillis() * 1000;
+    Map<String, RTCStats> stats = new HashMap<>();
+    String transportId = "T" + pc;
+
+    stats.put("P" + pc, stats(ts, "peer-connection", "P" + pc, members(
+            "dataChannelsOpened", 1, "dataChannelsClosed", 0)));
+    stats.put(transportId, stats(ts, "transport", transportId, members(
+            "bytesSent", new BigInteger("123456789"), "bytesReceived", new BigInteger("987654321"),
+            "packetsSent", 120000L, "packetsReceived", 118000L,
+            "dtlsState", "connected", "iceState", "connected", "selectedCandidatePairId", "CP" + pc + "_0",
+            "tlsVersion", "FEFD", "dtlsCipher", "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+            "srtpCipher", "AES_CM_128_HMAC_SHA1_80", "selectedCandidatePairChanges", 1)));
+    stats.put("CF" + pc, stats(ts, "certificate", "CF" + pc, members(
+            "fingerprint", "AB:CD:EF:01:23:45:67:89:AB:CD:EF:01:23:45:67:89:AB:CD:EF:01:23:45:67:89",
+            "fingerprintAlgorithm", "sha-256", "base64Certificate", "MIIBFjCBvaADAgECAgkA")));
+
+    for (int c = 0; c < candidatesPerPeerConnection; c++) {
+      String local = "I" + pc + "_L" + c;
+      String remote = "I" + pc + "_R" + c;
+      stats.put(local, stats(ts, "local-candidate", local, candidate(transportId, c, true)));
+      stats.put(remote, stats(ts, "remote-candidate", remote, candidate(transportId, c, false)));
+      String pair = "CP" + pc + "_" + c;
+      stats.put(pair, stats(ts, "candidate-pair", pair, members(
+              "transportId", transportId, "localCandidateId", local, "remoteCandidateId", remote,
+              "state", c == 0 ? "succeeded" : "waiting", "priority", new BigInteger("9115005270282354687"),
+              "nominated", c == 0, "writable", c == 0, "packetsSent", 1000L + c, "packetsReceived", 990L + c,
+              "bytesSent", new BigInteger("1000000"), "bytesReceived", new BigInteger("990000"),
+              "totalRoundTripTime", 1.234, "currentRoundTripTime", 0.021,
+              "availableOutgoingBitrate", 2500000.0, "requestsReceived", new BigInteger("40"),
+              "requestsSent", new BigInteger("41"), "responsesReceived", new BigInteger("40"),
+              "responsesSent", new BigInteger("40"), "consentRequestsSent", new BigInteger("30"),
+              "packetsDiscardedOnSend", 0L, "bytesDiscardedOnSend", new BigInteger("0"),
+              "lastPacketReceivedTimestamp", 1700000000000.0, "lastPacketSentTimestamp", 1700000000000.0)));
+    }
+
+    for (int t = 0; t < tracksPerPeerConnection; t++) {
+      boolean video = t % 2 == 1;
+      String kind = video ? "video" : "audio";
+      String codec = "CIT" + pc + "_" + t;
+      stats.put(codec, stats(ts, "codec", codec, members(
+              "transportId", transportId, "payloadType", video ? 96L : 111L,
+              "mimeType", video ? "video/VP8" : "audio/opus", "clockRate", video ? 90000L : 48000L,
+              "channels", video ? 1L : 2L, "sdpFmtpLine", video ? "" : "minptime=10;useinbandfec=1")));
+
+      String source = "S" + pc + "_" + t;
+      stats.put(source, stats(ts, "media-source", source, video
+              ? members("trackIdentifier", "track" + t, "kind", kind, "width", 1280L, "height", 720L,
+                      "frames", 36000L, "framesPerSecond", 30.0)
+              : members("trackIdentifier", "track" + t, "kind", kind, "audioLevel", 0.02,
+                      "totalAudioEnergy", 0.5, "totalSamplesDuration", 1200.0, "echoReturnLoss", -100.0)));
+
+      LinkedHashMap<String, Object> durations = new LinkedHashMap<>();
+      durations.put("bandwidth", 1.5);
+      durations.put("cpu", 0.25);
+      durations.put("none", 1198.0);
+      durations.put("other", 0.0);
+      LinkedHashMap<String, Object> qpSum = new LinkedHashMap<>();
+      qpSum.put("frames", 36000L);
+      qpSum.put("qp", new BigInteger("720000"));
+
+      String outbound = "OT" + pc + "_" + t;
+      stats.put(outbound, stats(ts, "outbound-rtp", outbound, members(
+              "ssrc", 1000000L + t, "kind", kind, "transportId", transportId, "codecId", codec,
+              "mediaSourceId", source, "packetsSent", 60000L, "bytesSent", new BigInteger("60000000"),
+              "headerBytesSent", new BigInteger("720000"), "retransmittedPacketsSent", new BigInteger("12"),
+              "targetBitrate", 1500000.0, "framesEncoded", 36000L, "keyFramesEncoded", 12L,
+              "totalEncodeTime", 123.4, "framesPerSecond", 30.0, "frameWidth", 1280L, "frameHeight", 720L,
+              "qualityLimitationReason", "none", "qualityLimitationDurations", durations,
+              "qualityLimitationResolutionChanges", 0L, "encoderImplementation", "libvpx",
+              "powerEfficientEncoder", false, "active", true, "scalabilityMode", "L1T3",
+              "rid", "f", "mid", String.valueOf(t), "qpSum", qpSum)));
+      String remoteInbound = "RI" + pc + "_" + t;
+      stats.put(remoteInbound, stats(ts, "remote-inbound-rtp", remoteInbound, members(
+              "ssrc", 1000000L + t, "kind", kind, "transportId", transportId, "codecId", codec,
+              "localId", outbound, "packetsLost", 3, "jitter", 0.004, "fractionLost", 0.0,
+              "roundTripTime", 0.02, "totalRoundTripTime", 12.3, "roundTripTimeMeasurements", 600)));
+
+      String inbound = "IT" + pc + "_" + t;
+      stats.put(inbound, stats(ts, "inbound-rtp", inbound, members(
+              "ssrc", 2000000L + t, "kind", kind, "transportId", transportId, "codecId", codec,
+              "trackIdentifier", "remote" + t, "mid", String.valueOf(t), "packetsReceived", 59000L,
+              "packetsLost", 12, "jitter", 0.003, "bytesReceived", new BigInteger("59000000"),
+              "headerBytesReceived", new BigInteger("708000"), "lastPacketReceivedTimestamp", 1700000000000.0,
+              "jitterBufferDelay", 80.5, "jitterBufferTargetDelay", 80.0, "jitterBufferEmittedCount",
+              new BigInteger("36000"), "framesDecoded", 35990L, "keyFramesDecoded", 12L, "framesDropped", 3L,
+              "frameWidth", 1280L, "frameHeight", 720L, "framesPerSecond", 30.0, "totalDecodeTime", 45.6,
+              "freezeCount", 1L, "pauseCount", 0L, "totalFreezesDuration", 0.5, "decoderImplementation",
+              "libvpx", "powerEfficientDecoder", false, "nackCount", 10L, "pliCount", 2L, "firCount", 0L,
+              "fecPacketsReceived", new BigInteger("0"), "concealedSamples", new BigInteger("480"),
+              "audioLevel", 0.01, "totalAudioEnergy", 0.4, "totalSamplesReceived", new BigInteger("57600000"),
+              "playoutId", "AP", "ssrcs", new String[] {"2000000", "2000001"})));
+      String remoteOutbound = "RO" + pc + "_" + t;
+      stats.put(remoteOutbound, stats(ts, "remote-outbound-rtp", remoteOutbound, members(
+              "ssrc", 2000000L + t, "kind", kind, "transportId", transportId, "codecId", codec,
+              "localId", inbound, "packetsSent", new BigInteger("59012"), "bytesSent", new BigInteger("59012000"),
+              "remoteTimestamp", 1700000000000.0, "reportsSent", new BigInteger("600"))));
+    }
+    return new RTCStatsReport(ts, stats);
+  }
+
+  /** One negotiation's worth of peer connection events, shaped like PeerConnectionObserver's. */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object>[] syntheticSignalingEvents() {
+    int candidates = candidatesPerPeerConnection * 2;
+    Map<String, Object>[] events = new Map[candidates + 6];
+    int n = 0;
+    events[n++] = members("event", "signalingState", "state", "have-local-offer");
+    events[n++] = members("event", "iceGatheringState", "state", "gathering");
+    for (int i = 0; i < candidates; i++) {
+      events[n++] = members("event", "onCandidate", "candidate", members(
+              "sdpMLineIndex", i % 2, "sdpMid", String.valueOf(i % 2),
+              "candidate", "candidate:" + (1000 + i) + " 1 udp 2122260223 192.168.1." + (i + 2)
+                      + " " + (50000 + i) + " typ host generation 0 ufrag abcd network-id 1"));
+    }
+    events[n++] = members("event", "iceGatheringState", "state", "complete");
+    events[n++] = members("event", "signalingState", "state", "stable");
+    events[n++] = members("event", "iceConnectionState", "state", "connected");
+    events[n] = members("event", "peerConnectionState", "state", "connected");
+    return events;
+  }
+
+  private static Map<String, Object> candidate(String transportId, int index, boolean local) {
+    return members(
+            "transportId", transportId, "isRemote", !local, "networkType", index % 2 == 0 ? "wifi" : "cellular",
+            "address", "192.168.1." + (index + 2), "port", 50000 + index, "protocol", index % 3 == 0 ? "tcp" : "udp",
+            "candidateType", index % 4 == 0 ? "relay" : "host", "priority", 2122260223 - index,
+            "url", "turn:turn.example.com:3478", "relayProtocol", "udp", "foundation", String.valueOf(index),
+            "usernameFragment", "abcd", "vpn", false, "networkAdapterType", "wifi");
+  }
+
+  private static RTCStats stats(long ts, String type, String id, Map<String, Object> members) {
+    return new RTCStats(ts, type, id, members);
+  }
+
+  private static Map<String, Object> members(Object... keyValues) {
+    Map<String, Object> members = new LinkedHashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      members.put((String) keyValues[i], keyValues[i + 1]);
+    }
+    return members;
+  }
+}
@@ -0,0 +1,231 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Per-peer-connection ring buffer of compact stats samples.
+ * Only the configured numeric members are kept, stored in primitive arrays, so recording
+ * can run for the whole call and the window is exported only when the app asks for it.
+ *
+ * A metric is written as "type.member" (e.g. "inbound-rtp.packetsLost"); values of all
+ * reports of that type are summed. Missing metrics are recorded as NaN.
+ */
+class StatsHistory {
+  private final static String TAG = FlutterWebRTCPlugin.TAG;
+  private final static int MAGIC = 0x57534831; // "WSH1"
+
+  private static HandlerThread samplingThread;
+
+  private final PeerConnection peerConnection;
+  private final String[] types;
+  private final String[] members;
+  private final String[] metrics;
+  private final int intervalMs;
+  private final int capacity;
+  private final long[] timestampsUs;
+  private final double[] values;
+  private final Handler handler;
+  private int head = 0;
+  private int size = 0;
+  private volatile boolean running = false;
+
+  private final Runnable sampleTask = new Runnable() {
+    @Override
+    public void run() {
+      if (!running) {
+        return;
+      }
+      peerConnection.getStats(StatsHistory.this::record);
+      handler.postDelayed(this, intervalMs);
+    }
+  };
+
+  StatsHistory(PeerConnection peerConnection, List<String> metrics, int intervalMs, int capacity) {
+    this.peerConnection = peerConnection;
+    this.intervalMs = Math.max(100, intervalMs);
+    this.capacity = Math.max(1, capacity);
+    this.metrics = metrics.toArray(new String[0]);
+    this.types = new String[this.metrics.length];
+    this.members = new String[this.metrics.length];
+    for (int i = 0; i < this.metrics.length; i++) {
+      String metric = this.metrics[i];
+      int dot = metric.indexOf('.');
+      if (dot <= 0 || dot == metric.length() - 1) {
+        throw new IllegalArgumentException("Invalid stats metric: " + metric);
+      }
+      types[i] = metric.substring(0, dot);
+      members[i] = metric.substring(dot + 1);
+    }
+    this.timestampsUs = new long[this.capacity];
+    this.values = new double[this.capacity * this.metrics.length];
+    this.handler = new Handler(getSamplingLooper());
+  }
+
+  static synchronized Looper getSamplingLooper() {
+    if (samplingThread == null) {
+      samplingThread = new HandlerThread("StatsSampling");
+      samplingThread.start();
+    }
+    return samplingThread.getLooper();
+  }
+
+  void start() {
+    if (running) return;
+    running = true;
+    handler.post(sampleTask);
+  }
+
+  /** Returns once no sample can still be running, so the peer connection may be disposed. */
+  void stop() {
+    running = false;
+    handler.removeCallbacks(sampleTask);
+    awaitSampling(handler, sampleTask);
+  }
+
+  /**
+   * Waits for the sampling thread to finish the task it is running, if any, and drops the
+   * sampleTask it may have rescheduled meanwhile.
+   */
+  static void awaitSampling(Handler handler, Runnable sampleTask) {
+    if (Looper.myLooper() == handler.getLooper()) {
+      return;
+    }
+    CountDownLatch done = new CountDownLatch(1);
+    handler.post(() -> {
+      handler.removeCallbacks(sampleTask);
+      done.countDown();
+    });
+    boolean interrupted = false;
+    while (true) {
+      try {
+        done.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  synchronized int sampleCount() {
+    return size;
+  }
+
+  private void record(RTCStatsReport report) {
+    if (!running) {
+      return;
+    }
+    Map<String, RTCStats> statsMap = report.getStatsMap();
+    synchronized (this) {
+      int base = head * metrics.length;
+      Arrays.fill(values, base, base + metrics.length, Double.NaN);
+      for (RTCStats stats : statsMap.values()) {
+        String type = stats.getType();
+        Map<String, Object> statsMembers = null;
+        for (int i = 0; i < metrics.length; i++) {
+          if (!types[i].equals(type)) {
+            continue;
+          }
+          if (statsMembers == null) {
+            statsMembers = stats.getMembers();
+          }
+          double v = toDouble(statsMembers.get(members[i]));
+          if (!Double.isNaN(v)) {
+            double current = values[base + i];
+            values[base + i] = Double.isNaN(current) ? v : current + v;
+          }
+        }
+      }
+      timestampsUs[head] = (long) report.getTimestampUs();
+      head = (head + 1) % capacity;
+      if (size < capacity) {
+        size++;
+      }
+    }
+  }
+
+  static double toDouble(@Nullable Object v) {
+    if (v instanceof Number) {
+      if (v instanceof BigInteger) {
+        return ((BigInteger) v).doubleValue();
+      }
+      return ((Number) v).doubleValue();
+    } else if (v instanceof Boolean) {
+      return (Boolean) v ? 1 : 0;
+    }
+    return Double.NaN;
+  }
+
+  /**
+   * Returns the recorded window, oldest sample first, as a big-endian blob:
+   * magic, version, metric count, sample count, metric names (modified UTF-8),
+   * then per sample an int64 timestamp (us) followed by one float64 per metric.
+   */
+  byte[] export() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(exportSize());
+    write(bytes);
+    return bytes.toByteArray();
+  }
+
+  void exportToFile(File file) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      write(out);
+    }
+  }
+
+  private int exportSize() {
+    int namesSize = 0;
+    for (String metric : metrics) {
+      namesSize += 2 + metric.length();
+    }
+    return 16 + namesSize + sampleCount() * (8 + 8 * metrics.length);
+  }
+
+  private void write(OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(stream);
+    synchronized (this) {
+      out.writeInt(MAGIC);
+      out.writeInt(1);
+      out.writeInt(metrics.length);
+      out.writeInt(size);
+      for (String metric : metrics) {
+        out.writeUTF(metric);
+      }
+      int index = (head - size + capacity) % capacity;
+      for (int n = 0; n < size; n++) {
+        out.writeLong(timestampsUs[index]);
+        int base = index * metrics.length;
+        for (int i = 0; i < metrics.length; i++) {
+          out.writeDouble(values[base + i]);
+        }
+        index = (index + 1) % capacity;
+      }
+    }
+    out.flush();
+    Log.d(TAG, "StatsHistory exported " + out.size() + " bytes");
+  }
+}
@@ -2,5 +2,7 @@ package com.cloudwebrtc.webrtc.record;
 
 public enum AudioChannel {
     INPUT,
-    OUTPUT
+    OUTPUT,
+    /** INPUT and OUTPUT mixed, see MixedAudioSamplesInterceptor. */
+    MIXED
 }
\ No newline at end of file
@@ -1,9 +1,10 @@
 package com.cloudwebrtc.webrtc.record;
 
+import android.media.AudioFormat;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
-import android.media.MediaMuxer;
+import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.util.Log;
@@ -13,74 +14,96 @@ import org.webrtc.audio.JavaAudioDeviceModule.SamplesReadyCallback;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Records audio only. Samples are copied into a PcmRingBuffer on the WebRTC audio thread and
+ * fed to an asynchronous encoder on the audio thread whenever it has a free input buffer, so
+ * neither thread waits on the other and nothing is allocated per chunk.
+ */
 class AudioFileRenderer implements SamplesReadyCallback {
     private static final String TAG = "AudioFileRenderer";
+    // how much audio the ring holds before chunks are dropped
+    private static final int RING_BUFFER_MS = 1000;
+
     private final HandlerThread audioThread;
     private final Handler audioThreadHandler;
-    private ByteBuffer[] audioInputBuffers;
-    private ByteBuffer[] audioOutputBuffers;
+    private final RecordingMuxer mediaMuxer;
+    private final RecordingProfile profile;
+    private final CountDownLatch encoderEndOfStream = new CountDownLatch(1);
+    private final AtomicBoolean fillScheduled = new AtomicBoolean();
+    private final Runnable fillTask = () -> {
+        fillScheduled.set(false);
+        fillInputBuffers();
+    };
 
-    private final MediaMuxer mediaMuxer;
-    private MediaCodec.BufferInfo audioBufferInfo;
-    private int audioTrackIndex = -1;
-    private boolean isRunning = true;
+    private volatile boolean isRunning = true;
+    // set once by the WebRTC audio thread with the first samples
+    private volatile PcmRingBuffer ringBuffer;
+    private int sampleRate;
+    private int bytesPerFrame;
+
+    // audio thread only
     private MediaCodec audioEncoder;
-    private boolean audioEncoderStarted = false;
-    private volatile boolean muxerStarted = false;
+    private int[] freeInputBuffers = new int[8];
+    private int freeInputBufferCount = 0;
+    private long framesQueued = 0;
+    private boolean endOfStreamPending = false;
+    private int audioTrackIndex = -1;
+    private boolean muxerStarted = false;
 
-    AudioFileRenderer(String outputFile) throws IOException {
+    AudioFileRenderer(RecordingMuxer mediaMuxer, RecordingProfile profile) {
+        this.profile = profile;
         audioThread = new HandlerThread(TAG + "AudioThread");
         audioThread.start();
         audioThreadHandler = new Handler(audioThread.getLooper());
 
-        // Create a MediaMuxer for audio-only recording
-        mediaMuxer = new MediaMuxer(outputFile, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        this.mediaMuxer = mediaMuxer;
     }
 
     /**
-     * Release all resources. All already posted audio samples will be processed first.
+     * Release all resources. Samples already received will be encoded first.
      */
     void release() {
         isRunning = false;
+        audioThreadHandler.post(() -> {
+            if (audioEncoder == null) {
+                encoderEndOfStream.countDown();
+                return;
+            }
+            fillInputBuffers();
+            endOfStreamPending = true;
+            queueEndOfStream();
+        });
+
+        try {
+            // Wait for the encoder with timeout to prevent ANR
+            if (!encoderEndOfStream.await(2, TimeUnit.SECONDS)) {
+                Log.w(TAG, "Timed out waiting for the audio encoder to drain");
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Release interrupted", e);
+            Thread.currentThread().interrupt();
+        }
+
         CountDownLatch latch = new CountDownLatch(1);
-        
         audioThreadHandler.post(() -> {
             try {
-                // First, stop the encoder if it's running
-                if (audioEncoder != null && audioEncoderStarted) {
-                    try {
-                        // Signal end of stream with timeout
-                        int inputBufferIndex = audioEncoder.dequeueInputBuffer(10000); // 10ms timeout
-                        if (inputBufferIndex >= 0) {
-                            audioEncoder.queueInputBuffer(inputBufferIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-                        }
-                        
-                        // Drain remaining data
-                        drainAudio();
-                        
-                        audioEncoder.stop();
-                        audioEncoderStarted = false;
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error stopping audio encoder", e);
-                    }
-                }
-                
-                // Release encoder
                 if (audioEncoder != null) {
                     try {
+                        audioEncoder.stop();
                         audioEncoder.release();
                     } catch (Exception e) {
                         Log.e(TAG, "Error releasing audio encoder", e);
                     }
                     audioEncoder = null;
                 }
-                
                 // Stop and release muxer only if it was properly started
                 try {
-                    if (muxerStarted && audioTrackIndex != -1) {
+                    if (muxerStarted) {
                         mediaMuxer.stop();
                         muxerStarted = false;
                     }
@@ -88,22 +111,19 @@ class AudioFileRenderer implements SamplesReadyCallback {
                 } catch (Exception e) {
                     Log.e(TAG, "Error stopping/releasing MediaMuxer", e);
                 }
-                
-            } catch (Exception e) {
-                Log.e(TAG, "Error during release", e);
-            } finally {
-                try {
-                    audioThread.quit();
-                } catch (Exception e) {
-                    Log.e(TAG, "Error quitting audio thread", e);
+                PcmRingBuffer ring = ringBuffer;
+                if (ring != null && ring.droppedBytes() > 0) {
+                    Log.w(TAG, "Dropped " + ring.droppedBytes() / bytesPerFrame * 1000 / sampleRate
+                            + "ms of audio the encoder couldn't keep up with");
                 }
+            } finally {
+                audioThread.quit();
                 latch.countDown();
             }
         });
 
         try {
-            // Wait for cleanup with timeout to prevent ANR
-            if (!latch.await(2, java.util.concurrent.TimeUnit.SECONDS)) {
+            if (!latch.await(2, TimeUnit.SECONDS)) {
                 Log.w(TAG, "Release timed out, proceeding anyway");
             }
         } catch (InterruptedException e) {
@@ -112,147 +132,166 @@ class AudioFileRenderer implements SamplesReadyCallback {
         }
     }
 
-    private long presTime = 0L;
+    @Override
+    public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples audioSamples) {
+        if (!isRunning)
+            return;
 
-    private void drainAudio() {
-        if (audioBufferInfo == null)
-            audioBufferInfo = new MediaCodec.BufferInfo();
-            
-        while (isRunning && audioEncoder != null) {
-            int encoderStatus = audioEncoder.dequeueOutputBuffer(audioBufferInfo, 100); // 100ms timeout
-            if (encoderStatus == MediaCodec.INFO_TRY_AGAIN_LATER) {
-                break;
-            } else if (encoderStatus == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
-                audioOutputBuffers = audioEncoder.getOutputBuffers();
-                Log.w(TAG, "audio encoder output buffers changed");
-            } else if (encoderStatus == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-                MediaFormat newFormat = audioEncoder.getOutputFormat();
-                Log.i(TAG, "audio encoder output format changed: " + newFormat);
-                
-                if (audioTrackIndex == -1) {
-                    audioTrackIndex = mediaMuxer.addTrack(newFormat);
-                    if (audioTrackIndex != -1 && !muxerStarted) {
-                        mediaMuxer.start();
-                        muxerStarted = true;
-                        Log.i(TAG, "MediaMuxer started for audio recording");
-                    }
-                }
-                if (!muxerStarted)
-                    break;
-            } else if (encoderStatus < 0) {
-                Log.e(TAG, "unexpected result from audio encoder.dequeueOutputBuffer: " + encoderStatus);
-            } else { // encoderStatus >= 0
-                try {
-                    ByteBuffer encodedData = audioOutputBuffers[encoderStatus];
-                    if (encodedData == null) {
-                        Log.e(TAG, "audio encoderOutputBuffer " + encoderStatus + " was null");
-                        break;
-                    }
-                    
-                    // Adjust ByteBuffer values to match BufferInfo
-                    encodedData.position(audioBufferInfo.offset);
-                    encodedData.limit(audioBufferInfo.offset + audioBufferInfo.size);
-                    
-                    if (muxerStarted && audioTrackIndex != -1) {
-                        mediaMuxer.writeSampleData(audioTrackIndex, encodedData, audioBufferInfo);
-                    }
-                    
-                    audioEncoder.releaseOutputBuffer(encoderStatus, false);
-                    
-                    if ((audioBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                        Log.i(TAG, "End of audio stream reached");
-                        break;
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error processing audio data", e);
-                    break;
-                }
+        PcmRingBuffer ring = ringBuffer;
+        if (ring == null) {
+            int channelCount = audioSamples.getChannelCount();
+            int audioFormat = audioSamples.getAudioFormat();
+            sampleRate = audioSamples.getSampleRate();
+            bytesPerFrame = bytesPerSample(audioFormat) * channelCount;
+            ring = new PcmRingBuffer(sampleRate * RING_BUFFER_MS / 1000 * bytesPerFrame);
+            ringBuffer = ring;
+            audioThreadHandler.post(() -> initializeAudioEncoder(channelCount, audioFormat));
+        }
+
+        byte[] data = audioSamples.getData();
+        ring.write(data, 0, data.length);
+        if (fillScheduled.compareAndSet(false, true)) {
+            audioThreadHandler.post(fillTask);
+        }
+    }
+
+    static int bytesPerSample(int audioFormat) {
+        switch (audioFormat) {
+            case AudioFormat.ENCODING_PCM_8BIT:
+                return 1;
+            case AudioFormat.ENCODING_PCM_24BIT_PACKED:
+                return 3;
+            case AudioFormat.ENCODING_PCM_32BIT:
+            case AudioFormat.ENCODING_PCM_FLOAT:
+                return 4;
+            default:
+                return 2;
+        }
+    }
+
+    /** Moves as much PCM from the ring into free encoder input buffers as they hold. */
+    private void fillInputBuffers() {
+        PcmRingBuffer ring = ringBuffer;
+        if (audioEncoder == null || ring == null)
+            return;
+        try {
+            while (freeInputBufferCount > 0 && ring.available() >= bytesPerFrame) {
+                int index = freeInputBuffers[--freeInputBufferCount];
+                ByteBuffer buffer = audioEncoder.getInputBuffer(index);
+                buffer.clear();
+                // whole frames only, so the sample count below stays exact
+                int length = Math.min(ring.available(), buffer.remaining()) / bytesPerFrame * bytesPerFrame;
+                ring.read(buffer, length);
+                long presentationTimeUs = framesQueued * 1000000L / sampleRate;
+                audioEncoder.queueInputBuffer(index, 0, length, presentationTimeUs, 0);
+                framesQueued += length / bytesPerFrame;
             }
+        } catch (Exception e) {
+            Log.e(TAG, "Error queueing audio samples", e);
         }
     }
 
-    @Override
-    public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples audioSamples) {
-        if (!isRunning)
+    private void queueEndOfStream() {
+        if (freeInputBufferCount == 0) {
+            // sent from onInputBufferAvailable
             return;
-            
-        audioThreadHandler.post(() -> {
+        }
+        endOfStreamPending = false;
+        int index = freeInputBuffers[--freeInputBufferCount];
+        audioEncoder.queueInputBuffer(index, 0, 0, framesQueued * 1000000L / sampleRate,
+                MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+    }
+
+    private final MediaCodec.Callback encoderCallback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(MediaCodec codec, int index) {
+            if (freeInputBufferCount == freeInputBuffers.length) {
+                freeInputBuffers = Arrays.copyOf(freeInputBuffers, freeInputBuffers.length * 2);
+            }
+            freeInputBuffers[freeInputBufferCount++] = index;
+            fillInputBuffers();
+            if (endOfStreamPending) {
+                queueEndOfStream();
+            }
+        }
+
+        @Override
+        public void onOutputBufferAvailable(MediaCodec codec, int index, MediaCodec.BufferInfo info) {
             try {
-                // Check if we're still running before processing
-                if (!isRunning) {
-                    return;
-                }
-                
-                // Initialize audio encoder if not already done
-                if (audioEncoder == null) {
-                    initializeAudioEncoder(audioSamples);
-                }
-                
-                if (audioEncoder == null || !audioEncoderStarted) {
-                    Log.e(TAG, "Failed to initialize audio encoder or encoder not started");
-                    return;
-                }
-                
-                // Get input buffer and write audio data
-                int bufferIndex = audioEncoder.dequeueInputBuffer(100); // 100ms timeout
-                if (bufferIndex >= 0) {
-                    ByteBuffer buffer = audioInputBuffers[bufferIndex];
-                    buffer.clear();
-                    
-                    byte[] data = audioSamples.getData();
-                    if (data.length <= buffer.remaining()) {
-                        buffer.put(data);
-                        
-                        // Calculate presentation time (microseconds)
-                        // Assuming 16-bit samples: data.length bytes / 2 bytes per sample / sample rate * 1000000
-                        long frameTime = (long) data.length * 1000000L / (2 * audioSamples.getSampleRate() * audioSamples.getChannelCount());
-                        
-                        audioEncoder.queueInputBuffer(bufferIndex, 0, data.length, presTime, 0);
-                        presTime += frameTime;
-                    } else {
-                        Log.w(TAG, "Audio data too large for buffer: " + data.length + " bytes, buffer capacity: " + buffer.remaining());
-                        audioEncoder.queueInputBuffer(bufferIndex, 0, 0, presTime, 0);
-                    }
-                } else {
-                    Log.w(TAG, "No input buffer available for audio data");
-                }
-                
-                // Drain encoded audio data only if still running
-                if (isRunning) {
-                    drainAudio();
+                ByteBuffer encodedData = codec.getOutputBuffer(index);
+                if (encodedData != null && info.size > 0 && muxerStarted) {
+                    // Adjust ByteBuffer values to match BufferInfo
+                    encodedData.position(info.offset);
+                    encodedData.limit(info.offset + info.size);
+                    mediaMuxer.writeSampleData(audioTrackIndex, encodedData, info);
                 }
-                
+                codec.releaseOutputBuffer(index, false);
             } catch (Exception e) {
-                Log.e(TAG, "Error processing audio samples", e);
+                Log.e(TAG, "Error writing audio data", e);
             }
-        });
-    }
-    
-    private void initializeAudioEncoder(JavaAudioDeviceModule.AudioSamples audioSamples) {
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                Log.i(TAG, "End of audio stream reached");
+                encoderEndOfStream.countDown();
+            }
+        }
+
+        @Override
+        public void onError(MediaCodec codec, MediaCodec.CodecException e) {
+            Log.e(TAG, "audio encoder error: " + e.getDiagnosticInfo(), e);
+            encoderEndOfStream.countDown();
+        }
+
+        @Override
+        public void onOutputFormatChanged(MediaCodec codec, MediaFormat format) {
+            Log.i(TAG, "audio encoder output format changed: " + format);
+            if (audioTrackIndex == -1) {
+                audioTrackIndex = mediaMuxer.addTrack(format);
+                if (audioTrackIndex != -1) {
+                    mediaMuxer.start();
+                    muxerStarted = true;
+                    Log.i(TAG, "MediaMuxer started for audio recording");
+                }
+            }
+        }
+    };
+
+    private void initializeAudioEncoder(int channelCount, int audioFormat) {
         try {
-            audioEncoder = MediaCodec.createEncoderByType("audio/mp4a-latm");
-            
+            String mimeType = profile.audioMimeType();
+            audioEncoder = MediaCodec.createEncoderByType(mimeType);
+
             MediaFormat format = new MediaFormat();
-            format.setString(MediaFormat.KEY_MIME, "audio/mp4a-latm");
-            format.setInteger(MediaFormat.KEY_CHANNEL_COUNT, audioSamples.getChannelCount());
-            format.setInteger(MediaFormat.KEY_SAMPLE_RATE, audioSamples.getSampleRate());
-            format.setInteger(MediaFormat.KEY_BIT_RATE, 128 * 1024); // 128 kbps
-            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
-            
+            format.setString(MediaFormat.KEY_MIME, mimeType);
+            format.setInteger(MediaFormat.KEY_CHANNEL_COUNT, channelCount);
+            format.setInteger(MediaFormat.KEY_SAMPLE_RATE, sampleRate);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, profile.audioBitrate(128 * 1024)); // 128 kbps by default
+            if (MediaFormat.MIMETYPE_AUDIO_AAC.equals(mimeType)) {
+                format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+            }
+            if (audioFormat != AudioFormat.ENCODING_PCM_16BIT && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                format.setInteger(MediaFormat.KEY_PCM_ENCODING, audioFormat);
+            }
+
             Log.i(TAG, "Configuring audio encoder with format: " + format);
-            
+
+            // Without a handler (API < 23) callbacks arrive on this thread's looper, the audio thread.
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                audioEncoder.setCallback(encoderCallback, audioThreadHandler);
+            } else {
+                audioEncoder.setCallback(encoderCallback);
+            }
             audioEncoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
             audioEncoder.start();
-            
-            audioInputBuffers = audioEncoder.getInputBuffers();
-            audioOutputBuffers = audioEncoder.getOutputBuffers();
-            audioEncoderStarted = true;
-            
+
             Log.i(TAG, "Audio encoder initialized successfully");
-            
-        } catch (IOException e) {
+
+        } catch (IOException | RuntimeException e) {
             Log.e(TAG, "Failed to create audio encoder", e);
+            if (audioEncoder != null) {
+                audioEncoder.release();
+            }
             audioEncoder = null;
+            isRunning = false;
         }
     }
 }
@@ -0,0 +1,223 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.graphics.Matrix;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import org.webrtc.EglBase;
+import org.webrtc.GlRectDrawer;
+import org.webrtc.GlTextureFrameBuffer;
+import org.webrtc.TextureBufferImpl;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoFrameDrawer;
+import org.webrtc.VideoSink;
+import org.webrtc.VideoTrack;
+import org.webrtc.YuvConverter;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Draws the latest frame of several VideoTracks into a grid, letterboxed per tile, at a
+ * fixed frame rate and feeds the result to a single sink, so a multi-party call is recorded
+ * with one encoder instead of one per track.
+ *
+ * Composed frames are textures in a small pool of framebuffers; a framebuffer is reused
+ * once the sink has released the frame, and a tick is skipped if none is free.
+ */
+class CompositeVideoSource {
+    private static final String TAG = "CompositeVideoSource";
+    private static final int FRAMEBUFFERS = 3;
+
+    private final List<VideoTrack> tracks;
+    private final VideoSink target;
+    private final int width;
+    private final int height;
+    private final long frameIntervalMs;
+    private final Tile[] tiles;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Runnable composeTask = this::composeAndSchedule;
+
+    // compositor thread only
+    private EglBase eglBase;
+    private GlRectDrawer drawer;
+    private VideoFrameDrawer frameDrawer;
+    private YuvConverter yuvConverter;
+    private final GlTextureFrameBuffer[] framebuffers = new GlTextureFrameBuffer[FRAMEBUFFERS];
+    private final boolean[] framebufferInUse = new boolean[FRAMEBUFFERS];
+    private boolean running;
+
+    private static final class Tile implements VideoSink {
+        private VideoFrame latest;
+
+        @Override
+        public synchronized void onFrame(VideoFrame frame) {
+            frame.retain();
+            if (latest != null) {
+                latest.release();
+            }
+            latest = frame;
+        }
+
+        /** The latest frame, retained for the caller, or null. */
+        synchronized VideoFrame take() {
+            if (latest != null) {
+                latest.retain();
+            }
+            return latest;
+        }
+
+        synchronized void clear() {
+            if (latest != null) {
+                latest.release();
+                latest = null;
+            }
+        }
+    }
+
+    CompositeVideoSource(List<VideoTrack> tracks, VideoSink target, EglBase.Context sharedContext,
+                         int width, int height, int frameRate) {
+        this.tracks = tracks;
+        this.target = target;
+        // encoders want even dimensions
+        this.width = width & ~1;
+        this.height = height & ~1;
+        this.frameIntervalMs = 1000 / Math.max(1, frameRate);
+        tiles = new Tile[tracks.size()];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new Tile();
+        }
+        thread = new HandlerThread(TAG);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(() -> {
+            eglBase = EglBase.create(sharedContext, EglBase.CONFIG_PIXEL_BUFFER);
+            eglBase.createDummyPbufferSurface();
+            eglBase.makeCurrent();
+            drawer = new GlRectDrawer();
+            frameDrawer = new VideoFrameDrawer();
+            yuvConverter = new YuvConverter();
+        });
+    }
+
+    void start() {
+        for (int i = 0; i < tiles.length; i++) {
+            tracks.get(i).addSink(tiles[i]);
+        }
+        handler.post(() -> {
+            running = true;
+            composeAndSchedule();
+        });
+    }
+
+    private void composeAndSchedule() {
+        if (!running) {
+            return;
+        }
+        long start = System.nanoTime();
+        compose(start);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        handler.postDelayed(composeTask, Math.max(0, frameIntervalMs - elapsedMs));
+    }
+
+    private void compose(long timestampNs) {
+        int index = -1;
+        for (int i = 0; i < FRAMEBUFFERS; i++) {
+            if (!framebufferInUse[i]) {
+                index = i;
+                break;
+            }
+        }
+        if (index == -1) {
+            // the encoder is behind, drop this tick
+            return;
+        }
+        if (framebuffers[index] == null) {
+            framebuffers[index] = new GlTextureFrameBuffer(GLES20.GL_RGBA);
+            framebuffers[index].setSize(width, height);
+        }
+        GlTextureFrameBuffer framebuffer = framebuffers[index];
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer.getFrameBufferId());
+        GLES20.glClearColor(0, 0, 0, 1);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        int columns = (int) Math.ceil(Math.sqrt(tiles.length));
+        int rows = (tiles.length + columns - 1) / columns;
+        int tileWidth = width / columns;
+        int tileHeight = height / rows;
+        for (int i = 0; i < tiles.length; i++) {
+            VideoFrame frame = tiles[i].take();
+            if (frame == null) {
+                continue;
+            }
+            try {
+                // GL's origin is bottom left, the first tile goes top left
+                int x = (i % columns) * tileWidth;
+                int y = height - (i / columns + 1) * tileHeight;
+                float scale = Math.min((float) tileWidth / frame.getRotatedWidth(),
+                        (float) tileHeight / frame.getRotatedHeight());
+                int drawWidth = Math.round(frame.getRotatedWidth() * scale);
+                int drawHeight = Math.round(frame.getRotatedHeight() * scale);
+                frameDrawer.drawFrame(frame, drawer, null,
+                        x + (tileWidth - drawWidth) / 2, y + (tileHeight - drawHeight) / 2,
+                        drawWidth, drawHeight);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to draw tile " + i + ": " + e.getMessage());
+            } finally {
+                frame.release();
+            }
+        }
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        // the sink draws the texture from another context
+        GLES20.glFinish();
+
+        final int used = index;
+        framebufferInUse[used] = true;
+        VideoFrame.TextureBuffer buffer = new TextureBufferImpl(width, height,
+                VideoFrame.TextureBuffer.Type.RGB, framebuffer.getTextureId(), new Matrix(),
+                handler, yuvConverter, () -> handler.post(() -> framebufferInUse[used] = false));
+        VideoFrame composed = new VideoFrame(buffer, 0, timestampNs);
+        target.onFrame(composed);
+        composed.release();
+    }
+
+    /** Detaches from the tracks and frees GL resources. Blocks until done. */
+    void release() {
+        for (int i = 0; i < tiles.length; i++) {
+            tracks.get(i).removeSink(tiles[i]);
+            tiles[i].clear();
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        handler.post(() -> {
+            running = false;
+            handler.removeCallbacks(composeTask);
+            for (GlTextureFrameBuffer framebuffer : framebuffers) {
+                if (framebuffer != null) {
+                    framebuffer.release();
+                }
+            }
+            if (yuvConverter != null) {
+                yuvConverter.release();
+            }
+            if (drawer != null) {
+                drawer.release();
+            }
+            if (frameDrawer != null) {
+                frameDrawer.release();
+            }
+            if (eglBase != null) {
+                eglBase.release();
+            }
+            thread.quit();
+            latch.countDown();
+        });
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.cloudwebrtc.webrtc.record;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.EncodedImage;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoDecoder;
+import org.webrtc.VideoFrame;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Decoder wrapper that lets PassthroughRecorder see the encoded frames of a received video
+ * stream before they are decoded.
+ *
+ * The SDK doesn't say which track a decoder belongs to, so every tap remembers the buffer of
+ * the frame it decoded last. A decoded buffer reaches the track's sinks as the same object,
+ * which is how a recorder sitting on a track finds its tap. Only Java decoders can be
+ * wrapped, so the decoder factory creates hardware decoders directly for tapped streams.
+ */
+public class EncodedFrameTap implements VideoDecoder {
+
+    interface Listener {
+        /** Called on the decoder thread; {@code frame.buffer} is only valid during the call. */
+        void onEncodedFrame(EncodedImage frame, String codec);
+    }
+
+    private static final Set<EncodedFrameTap> active = new CopyOnWriteArraySet<>();
+
+    private final VideoDecoder decoder;
+    private final String codec;
+    private final Set<Listener> listeners = new CopyOnWriteArraySet<>();
+    @Nullable private volatile VideoFrame.Buffer lastDecodedBuffer;
+
+    public EncodedFrameTap(VideoDecoder decoder, String codec) {
+        this.decoder = decoder;
+        this.codec = codec;
+    }
+
+    /** Returns the tap whose decoder produced this buffer, if any. */
+    @Nullable
+    static EncodedFrameTap findSource(VideoFrame.Buffer buffer) {
+        for (EncodedFrameTap tap : active) {
+            if (tap.lastDecodedBuffer == buffer) {
+                return tap;
+            }
+        }
+        return null;
+    }
+
+    static boolean hasActiveTaps() {
+        return !active.isEmpty();
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public VideoCodecStatus initDecode(Settings settings, Callback callback) {
+        VideoCodecStatus status = decoder.initDecode(settings, (frame, decodeTimeMs, qp) -> {
+            lastDecodedBuffer = frame.getBuffer();
+            callback.onDecodedFrame(frame, decodeTimeMs, qp);
+        });
+        if (status == VideoCodecStatus.OK) {
+            active.add(this);
+        }
+        return status;
+    }
+
+    @Override
+    public VideoCodecStatus release() {
+        active.remove(this);
+        listeners.clear();
+        lastDecodedBuffer = null;
+        return decoder.release();
+    }
+
+    @Override
+    public VideoCodecStatus decode(EncodedImage frame, DecodeInfo info) {
+        for (Listener listener : listeners) {
+            listener.onEncodedFrame(frame, codec);
+        }
+        return decoder.decode(frame, info);
+    }
+
+    @Override
+    public String getImplementationName() {
+        return decoder.getImplementationName();
+    }
+}
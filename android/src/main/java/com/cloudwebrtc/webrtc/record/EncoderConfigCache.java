@@ -0,0 +1,59 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Remembers which encoder configuration VideoFileRenderer ended up with for a given codec,
+ * input size and profile, so later recordings start with it instead of probing the whole
+ * resolution/bitrate/profile ladder again. Entries are dropped when the device model or OS
+ * build changes, since a system update can change what the encoders accept.
+ */
+public class EncoderConfigCache {
+    private static final String PREFERENCES = "FlutterWebRTC.EncoderConfigs";
+    private static final String DEVICE_KEY = "device";
+
+    private final SharedPreferences preferences;
+
+    public EncoderConfigCache(Context context) {
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        String device = Build.MODEL + "/" + Build.FINGERPRINT;
+        if (!device.equals(preferences.getString(DEVICE_KEY, null))) {
+            preferences.edit().clear().putString(DEVICE_KEY, device).apply();
+        }
+    }
+
+    static String keyFor(RecordingProfile profile, int frameWidth, int frameHeight) {
+        return profile.videoMimeType + "/" + frameWidth + "x" + frameHeight + "/" + profile.videoBitrate
+                + "/" + profile.rateControl + "/" + profile.frameRate;
+    }
+
+    @Nullable
+    EncoderConfig get(String key) {
+        String value = preferences.getString(key, null);
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        try {
+            return new EncoderConfig(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        } catch (RuntimeException e) {
+            remove(key);
+            return null;
+        }
+    }
+
+    void put(String key, EncoderConfig config) {
+        preferences.edit()
+                .putString(key, config.width + "," + config.height + "," + config.bitrate + "," + config.profile)
+                .apply();
+    }
+
+    void remove(String key) {
+        preferences.edit().remove(key).apply();
+    }
+}
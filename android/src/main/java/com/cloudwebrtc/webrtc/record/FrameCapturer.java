@@ -1,14 +1,16 @@
 package com.cloudwebrtc.webrtc.record;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.ImageFormat;
-import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.cloudwebrtc.webrtc.utils.MapBuilder;
+import com.cloudwebrtc.webrtc.utils.WorkerPool;
+
 import org.webrtc.VideoFrame;
 import org.webrtc.VideoSink;
 import org.webrtc.VideoTrack;
@@ -17,112 +19,222 @@ import org.webrtc.YuvHelper;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.flutter.plugin.common.MethodChannel;
 
+/**
+ * Saves the next frame of a track to a file. The frame delivery thread only retains the frame;
+ * conversion, rotation (done on the I420 planes, before compressing) and compression run on
+ * WorkerPool.COMPUTE. RAW writes the rotated frame as packed I420.
+ *
+ * Replies with the width and height of the saved image.
+ */
 public class FrameCapturer implements VideoSink {
+    public enum Format {
+        JPEG,
+        PNG,
+        WEBP,
+        RAW
+    }
+
+    /**
+     * Direct scratch buffers reused across captures, at most one set per COMPUTE thread. The
+     * heap arrays and Bitmap a capture needs are not pooled, so an idle pool holds no more
+     * than the YUV planes.
+     */
+    private static final class Buffers {
+        ByteBuffer i420;
+        ByteBuffer nv21;
+
+        static ByteBuffer direct(ByteBuffer buffer, int size) {
+            if (buffer == null || buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(size);
+            }
+            buffer.clear();
+            return buffer;
+        }
+    }
+
+    private static final BlockingQueue<Buffers> pool = new ArrayBlockingQueue<>(2);
+
     private final VideoTrack videoTrack;
-    private File file;
+    private final File file;
+    private final Format format;
+    private final int quality;
     private final MethodChannel.Result callback;
-    private boolean gotFrame = false;
+    private final AtomicBoolean gotFrame = new AtomicBoolean();
 
-    public FrameCapturer(VideoTrack track, File file, MethodChannel.Result callback) {
+    public FrameCapturer(VideoTrack track, File file, Format format, int quality, MethodChannel.Result callback) {
         videoTrack = track;
         this.file = file;
+        this.format = format;
+        this.quality = quality;
         this.callback = callback;
         track.addSink(this);
     }
 
+    public static Format formatFor(String format) {
+        switch (format.toLowerCase()) {
+            case "png":
+                return Format.PNG;
+            case "webp":
+                return Format.WEBP;
+            case "raw":
+            case "i420":
+                return Format.RAW;
+            default:
+                return Format.JPEG;
+        }
+    }
+
     @Override
     public void onFrame(VideoFrame videoFrame) {
-        if (gotFrame)
+        if (!gotFrame.compareAndSet(false, true))
             return;
-        gotFrame = true;
         videoFrame.retain();
-        VideoFrame.Buffer buffer = videoFrame.getBuffer();
-        VideoFrame.I420Buffer i420Buffer = buffer.toI420();
-        ByteBuffer y = i420Buffer.getDataY();
-        ByteBuffer u = i420Buffer.getDataU();
-        ByteBuffer v = i420Buffer.getDataV();
-        int width = i420Buffer.getWidth();
-        int height = i420Buffer.getHeight();
-        int[] strides = new int[] {
-            i420Buffer.getStrideY(),
-            i420Buffer.getStrideU(),
-            i420Buffer.getStrideV()
-        };
-        final int chromaWidth = (width + 1) / 2;
-        final int chromaHeight = (height + 1) / 2;
-        final int minSize = width * height + chromaWidth * chromaHeight * 2;
-
-        ByteBuffer yuvBuffer = ByteBuffer.allocateDirect(minSize);
-        // NV21 is the same as NV12, only that V and U are stored in the reverse oder
-        // NV21 (YYYYYYYYY:VUVU)
-        // NV12 (YYYYYYYYY:UVUV)
-        // Therefore we can use the NV12 helper, but swap the U and V input buffers
-        YuvHelper.I420ToNV12(y, strides[0], v, strides[2], u, strides[1], yuvBuffer, width, height);
-
-        // For some reason the ByteBuffer may have leading 0. We remove them as
-        // otherwise the
-        // image will be shifted
-        byte[] cleanedArray = Arrays.copyOfRange(yuvBuffer.array(), yuvBuffer.arrayOffset(), minSize);
-
-        YuvImage yuvImage = new YuvImage(
-            cleanedArray,
-            ImageFormat.NV21,
-            width,
-            height,
-            // We omit the strides here. If they were included, the resulting image would
-            // have its colors offset.
-            null);
-        i420Buffer.release();
-        videoFrame.release();
         new Handler(Looper.getMainLooper()).post(() -> {
             videoTrack.removeSink(this);
         });
+        WorkerPool.COMPUTE.execute(() -> capture(videoFrame));
+    }
+
+    private void capture(VideoFrame videoFrame) {
+        Buffers buffers = pool.poll();
+        if (buffers == null) {
+            buffers = new Buffers();
+        }
+        VideoFrame.I420Buffer i420Buffer = null;
         try {
+            i420Buffer = videoFrame.getBuffer().toI420();
+            int rotation = videoFrame.getRotation();
+            int width = rotation % 180 == 0 ? i420Buffer.getWidth() : i420Buffer.getHeight();
+            int height = rotation % 180 == 0 ? i420Buffer.getHeight() : i420Buffer.getWidth();
+            int chromaWidth = (width + 1) / 2;
+            int chromaHeight = (height + 1) / 2;
+            int size = width * height + chromaWidth * chromaHeight * 2;
+            // packed I420 of the upright image: Y, then U, then V
+            ByteBuffer i420 = buffers.i420 = Buffers.direct(buffers.i420, size);
+            YuvHelper.I420Rotate(i420Buffer.getDataY(), i420Buffer.getStrideY(),
+                    i420Buffer.getDataU(), i420Buffer.getStrideU(),
+                    i420Buffer.getDataV(), i420Buffer.getStrideV(),
+                    i420, i420Buffer.getWidth(), i420Buffer.getHeight(), rotation);
+            i420Buffer.release();
+            i420Buffer = null;
+            videoFrame.release();
+            videoFrame = null;
+
             if (!file.exists()) {
                 //noinspection ResultOfMethodCallIgnored
                 file.getParentFile().mkdirs();
-                //noinspection ResultOfMethodCallIgnored
-                file.createNewFile();
             }
-        } catch (IOException io) {
-            callback.error("IOException", io.getLocalizedMessage(), io);
-            return;
-        }
-        try (FileOutputStream outputStream = new FileOutputStream(file)) {
-            yuvImage.compressToJpeg(
-                new Rect(0, 0, width, height),
-                100,
-                outputStream
-            );
-            switch (videoFrame.getRotation()) {
-                case 0:
-                    break;
-                case 90:
-                case 180:
-                case 270:
-                    Bitmap original = BitmapFactory.decodeFile(file.toString());
-                    Matrix matrix = new Matrix();
-                    matrix.postRotate(videoFrame.getRotation());
-                    Bitmap rotated = Bitmap.createBitmap(original, 0, 0, original.getWidth(), original.getHeight(), matrix, true);
-                    FileOutputStream rotatedOutputStream = new FileOutputStream(file);
-                    rotated.compress(Bitmap.CompressFormat.JPEG, 100, rotatedOutputStream);
-                    break;
-                default:
-                    // Rotation is checked to always be 0, 90, 180 or 270 by VideoFrame
-                    throw new RuntimeException("Invalid rotation");
+            try (FileOutputStream outputStream = new FileOutputStream(file)) {
+                switch (format) {
+                    case RAW:
+                        i420.position(0).limit(size);
+                        outputStream.getChannel().write(i420);
+                        break;
+                    case JPEG:
+                        writeJpeg(buffers, width, height, outputStream);
+                        break;
+                    default:
+                        writeBitmap(buffers, width, height, outputStream);
+                        break;
+                }
             }
-            callback.success(null);
+            callback.success(MapBuilder.of(3)
+                    .put("width", width)
+                    .put("height", height)
+                    .put("format", format.name().toLowerCase())
+                    .build());
         } catch (IOException io) {
             callback.error("IOException", io.getLocalizedMessage(), io);
         } catch (IllegalArgumentException iae) {
             callback.error("IllegalArgumentException", iae.getLocalizedMessage(), iae);
+        } catch (RuntimeException e) {
+            // e.g. a buffer its source already released, or a size Bitmap rejects
+            callback.error("captureFrame", e.getLocalizedMessage(), e);
         } finally {
-            file = null;
+            if (i420Buffer != null) {
+                i420Buffer.release();
+            }
+            if (videoFrame != null) {
+                videoFrame.release();
+            }
+            pool.offer(buffers);
+        }
+    }
+
+    private void writeJpeg(Buffers buffers, int width, int height, OutputStream outputStream) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int ySize = width * height;
+        int size = ySize + chromaWidth * chromaHeight * 2;
+        ByteBuffer nv21 = buffers.nv21 = Buffers.direct(buffers.nv21, size);
+        // NV21 is NV12 with V and U swapped, so the NV12 helper does with the planes swapped
+        YuvHelper.I420ToNV12(plane(buffers.i420, 0, ySize), width,
+                plane(buffers.i420, ySize + chromaWidth * chromaHeight, chromaWidth * chromaHeight), chromaWidth,
+                plane(buffers.i420, ySize, chromaWidth * chromaHeight), chromaWidth,
+                nv21, width, height);
+        byte[] bytes = new byte[size];
+        nv21.position(0);
+        nv21.get(bytes, 0, size);
+        // We omit the strides here. If they were included, the resulting image would
+        // have its colors offset.
+        YuvImage yuvImage = new YuvImage(bytes, ImageFormat.NV21, width, height, null);
+        yuvImage.compressToJpeg(new Rect(0, 0, width, height), quality, outputStream);
+    }
+
+    private void writeBitmap(Buffers buffers, int width, int height, OutputStream outputStream) {
+        int[] argb = new int[width * height];
+        i420ToArgb(buffers.i420, width, height, argb);
+        Bitmap bitmap = Bitmap.createBitmap(argb, width, height, Bitmap.Config.ARGB_8888);
+        Bitmap.CompressFormat compressFormat;
+        if (format == Format.PNG) {
+            compressFormat = Bitmap.CompressFormat.PNG;
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            compressFormat = quality >= 100 ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP_LOSSY;
+        } else {
+            //noinspection deprecation
+            compressFormat = Bitmap.CompressFormat.WEBP;
         }
+        try {
+            bitmap.compress(compressFormat, quality, outputStream);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private static ByteBuffer plane(ByteBuffer i420, int offset, int length) {
+        ByteBuffer plane = i420.duplicate();
+        plane.position(offset).limit(offset + length);
+        return plane.slice();
+    }
+
+    /** BT.601 limited range, as produced by WebRTC. */
+    private static void i420ToArgb(ByteBuffer i420, int width, int height, int[] argb) {
+        int chromaWidth = (width + 1) / 2;
+        int uStart = width * height;
+        int vStart = uStart + chromaWidth * ((height + 1) / 2);
+        for (int row = 0; row < height; row++) {
+            int chromaRow = (row / 2) * chromaWidth;
+            for (int column = 0; column < width; column++) {
+                int c = 298 * ((i420.get(row * width + column) & 0xff) - 16);
+                int d = (i420.get(uStart + chromaRow + column / 2) & 0xff) - 128;
+                int e = (i420.get(vStart + chromaRow + column / 2) & 0xff) - 128;
+                int r = clamp((c + 409 * e + 128) >> 8);
+                int g = clamp((c - 100 * d - 208 * e + 128) >> 8);
+                int b = clamp((c + 516 * d + 128) >> 8);
+                argb[row * width + column] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(value, 255);
     }
 }
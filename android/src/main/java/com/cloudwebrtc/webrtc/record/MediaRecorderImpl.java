@@ -4,80 +4,173 @@ import androidx.annotation.Nullable;
 import android.util.Log;
 
 import com.cloudwebrtc.webrtc.utils.EglUtils;
+import com.cloudwebrtc.webrtc.utils.WorkerPool;
 
 import org.webrtc.VideoTrack;
 
 import java.io.File;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
 
 public class MediaRecorderImpl {
 
+    public interface SegmentListener {
+        /**
+         * A segment has been finalized and is playable. {@code removed} is the segment deleted
+         * to stay within SegmentPolicy.keepSegments, if any.
+         */
+        void onSegmentFinished(File file, int index, long durationUs, long bytes, @Nullable File removed);
+    }
+
     private final Integer id;
-    private final VideoTrack videoTrack;
+    private final List<VideoTrack> videoTracks;
+    @Nullable private final VideoTrack videoTrack;
     private final AudioSamplesInterceptor audioInterceptor;
+    private final RecordingProfile profile;
+    @Nullable private final SegmentPolicy segmentPolicy;
+    @Nullable private final SegmentListener segmentListener;
+    @Nullable private final EncoderConfigCache configCache;
     private VideoFileRenderer videoFileRenderer;
+    private PassthroughRecorder passthroughRecorder;
+    private CompositeVideoSource compositeSource;
     private AudioFileRenderer audioFileRenderer;
     private boolean isRunning = false;
     private File recordFile;
 
-    public MediaRecorderImpl(Integer id, @Nullable VideoTrack videoTrack,
-            @Nullable AudioSamplesInterceptor audioInterceptor) {
+    /**
+     * Several video tracks are recorded as one grid video, see CompositeVideoSource.
+     */
+    public MediaRecorderImpl(Integer id, List<VideoTrack> videoTracks,
+            @Nullable AudioSamplesInterceptor audioInterceptor, RecordingProfile profile,
+            @Nullable SegmentPolicy segmentPolicy, @Nullable SegmentListener segmentListener,
+            @Nullable EncoderConfigCache configCache) {
         this.id = id;
-        this.videoTrack = videoTrack;
+        this.videoTracks = videoTracks;
+        this.videoTrack = videoTracks.size() == 1 ? videoTracks.get(0) : null;
         this.audioInterceptor = audioInterceptor;
+        this.profile = profile;
+        this.segmentPolicy = segmentPolicy;
+        this.segmentListener = segmentListener;
+        this.configCache = configCache;
     }
 
     public void startRecording(File file) throws Exception {
         recordFile = file;
         if (isRunning)
             return;
+        boolean video = !videoTracks.isEmpty();
+        profile.checkSupported(video && !profile.passthrough, audioInterceptor != null);
         isRunning = true;
         // noinspection ResultOfMethodCallIgnored
         file.getParentFile().mkdirs();
-        if (videoTrack != null) {
+        if (!video && audioInterceptor == null) {
+            throw new Exception("Both video track and audio interceptor are null - cannot record");
+        }
+        if (profile.passthrough && (videoTrack == null || audioInterceptor != null)) {
+            throw new Exception("Passthrough recording records a single video track without audio");
+        }
+        if (profile.passthrough && !EncodedFrameTap.hasActiveTaps()) {
+            throw new Exception("Passthrough recording needs the encodedFrameTap initialize option");
+        }
+        RecordingMuxer muxer = new RecordingMuxer(file.getAbsolutePath(), profile.container,
+                segmentPolicy, segmentListener);
+        if (profile.passthrough) {
+            passthroughRecorder = new PassthroughRecorder(videoTrack, muxer, profile,
+                    () -> startReencoding(muxer));
+            passthroughRecorder.start();
+        } else if (videoTracks.size() > 1) {
+            videoFileRenderer = new VideoFileRenderer(
+                    muxer,
+                    EglUtils.getRootEglBaseContext(),
+                    audioInterceptor != null,
+                    profile,
+                    configCache);
+            compositeSource = new CompositeVideoSource(videoTracks, videoFileRenderer,
+                    EglUtils.getRootEglBaseContext(), profile.width, profile.height, profile.frameRate);
+            compositeSource.start();
+            if (audioInterceptor != null)
+                audioInterceptor.attachCallback(id, videoFileRenderer);
+        } else if (videoTrack != null) {
             videoFileRenderer = new VideoFileRenderer(
-                    file.getAbsolutePath(),
+                    muxer,
                     EglUtils.getRootEglBaseContext(),
-                    audioInterceptor != null);
+                    audioInterceptor != null,
+                    profile,
+                    configCache);
             videoTrack.addSink(videoFileRenderer);
             if (audioInterceptor != null)
                 audioInterceptor.attachCallback(id, videoFileRenderer);
         } else {
-            Log.d(TAG, "Video track is null - checking for audio-only recording");
-            if (audioInterceptor != null) {
-                // Audio-only recording implementation
-                audioFileRenderer = new AudioFileRenderer(file.getAbsolutePath());
-                audioInterceptor.attachCallback(id, audioFileRenderer);
-            } else {
-                throw new Exception("Both video track and audio interceptor are null - cannot record");
-            }
+            Log.d(TAG, "Video track is null - audio-only recording");
+            audioFileRenderer = new AudioFileRenderer(muxer, profile);
+            audioInterceptor.attachCallback(id, audioFileRenderer);
+        }
+    }
+
+    private synchronized void startReencoding(RecordingMuxer muxer) {
+        if (!isRunning) {
+            muxer.release();
+            return;
         }
+        videoFileRenderer = new VideoFileRenderer(
+                muxer,
+                EglUtils.getRootEglBaseContext(),
+                false,
+                profile,
+                configCache);
+        videoTrack.addSink(videoFileRenderer);
     }
 
     public File getRecordFile() {
         return recordFile;
     }
 
-    private final ExecutorService releaseExecutor = Executors.newSingleThreadExecutor();
-
     public void stopRecording(Runnable onStopped) {
-        isRunning = false;
+        synchronized (this) {
+            isRunning = false;
+        }
+        if (passthroughRecorder != null) {
+            PassthroughRecorder recorder = passthroughRecorder;
+            passthroughRecorder = null;
+            final VideoFileRenderer fallback;
+            synchronized (this) {
+                fallback = videoFileRenderer;
+                videoFileRenderer = null;
+            }
+            if (fallback != null)
+                videoTrack.removeSink(fallback);
+            WorkerPool.IO.execute(() -> {
+                recorder.release();
+                if (fallback != null)
+                    fallback.release();
+                if (onStopped != null)
+                    onStopped.run();
+            });
+            return;
+        }
         if (audioInterceptor != null)
             audioInterceptor.detachCallback(id);
-        if (videoTrack != null && videoFileRenderer != null) {
+        if (compositeSource != null) {
+            CompositeVideoSource source = compositeSource;
+            compositeSource = null;
+            WorkerPool.IO.execute(() -> {
+                // stop feeding the renderer before it finishes the file
+                source.release();
+                videoFileRenderer.release();
+                videoFileRenderer = null;
+                if (onStopped != null)
+                    onStopped.run();
+            });
+        } else if (videoTrack != null && videoFileRenderer != null) {
             videoTrack.removeSink(videoFileRenderer);
-            releaseExecutor.submit(() -> {
+            WorkerPool.IO.execute(() -> {
                 videoFileRenderer.release();
                 videoFileRenderer = null;
                 if (onStopped != null)
                     onStopped.run();
-                releaseExecutor.shutdown(); // libera o executor
             });
         } else {
             if (onStopped != null)
                 onStopped.run();
-            releaseExecutor.shutdown();
         }
         if (audioFileRenderer != null) {
             audioFileRenderer.release();
@@ -0,0 +1,204 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.AudioFormat;
+import android.util.Log;
+
+import org.webrtc.audio.JavaAudioDeviceModule.AudioSamples;
+import org.webrtc.audio.JavaAudioDeviceModule.PlaybackSamplesReadyCallback;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mixes the local microphone with the remote playback, for recording both sides of a call.
+ *
+ * The microphone is the clock: every recorded chunk is mixed with the same duration of
+ * playback, resampled to the microphone's rate and downmixed to mono. Playback is held in a
+ * jitter buffer that has to fill up to TARGET_DELAY_MS before it is used, is refilled after
+ * an underrun and is trimmed back when it grows past MAX_DELAY_MS, so the two sides stay
+ * aligned when the devices' clocks drift. 16-bit PCM only; other formats are passed on
+ * unmixed.
+ *
+ * Mixed chunks are handed out from a small pool and reused, callbacks have to copy the data
+ * within CHUNK_POOL_SIZE chunks (100ms at WebRTC's 10ms chunks).
+ */
+public class MixedAudioSamplesInterceptor extends AudioSamplesInterceptor
+        implements PlaybackSamplesReadyCallback {
+    private static final String TAG = "MixedAudioSamples";
+    private static final int TARGET_DELAY_MS = 40;
+    private static final int MAX_DELAY_MS = 200;
+    private static final int JITTER_BUFFER_MS = 500;
+    private static final int CHUNK_POOL_SIZE = 10;
+
+    /** Playback ring and the format it holds; replaced when the playback format changes. */
+    private static final class PlaybackStream {
+        final PcmRingBuffer ring;
+        final int sampleRate;
+        final int channelCount;
+
+        PlaybackStream(int sampleRate, int channelCount) {
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            ring = new PcmRingBuffer(sampleRate * JITTER_BUFFER_MS / 1000 * channelCount * 2);
+        }
+
+        int bytesForMs(int ms) {
+            return sampleRate * ms / 1000 * channelCount * 2;
+        }
+    }
+
+    private volatile PlaybackStream playback;
+
+    // microphone thread only
+    private PlaybackStream mixedPlayback;
+    private boolean primed = false;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(0);
+    // playback frames, mono, not yet mixed; position is the fractional read position in it
+    private int[] pending = new int[0];
+    private int pendingFrames = 0;
+    private double position = 0;
+    private final AudioSamples[] chunkPool = new AudioSamples[CHUNK_POOL_SIZE];
+    private int nextChunk = 0;
+    private boolean warnedFormat = false;
+
+    @Override
+    public void onWebRtcAudioTrackSamplesReady(AudioSamples audioSamples) {
+        if (callbacks.isEmpty())
+            return;
+        if (audioSamples.getAudioFormat() != AudioFormat.ENCODING_PCM_16BIT)
+            return;
+        PlaybackStream stream = playback;
+        if (stream == null || stream.sampleRate != audioSamples.getSampleRate()
+                || stream.channelCount != audioSamples.getChannelCount()) {
+            stream = new PlaybackStream(audioSamples.getSampleRate(), audioSamples.getChannelCount());
+            playback = stream;
+        }
+        byte[] data = audioSamples.getData();
+        stream.ring.write(data, 0, data.length);
+    }
+
+    @Override
+    public void onWebRtcAudioRecordSamplesReady(AudioSamples audioSamples) {
+        if (callbacks.isEmpty()) {
+            if (mixedPlayback != null) {
+                // not recording, don't let stale playback build up
+                mixedPlayback.ring.skip(mixedPlayback.ring.available());
+            }
+            primed = false;
+            return;
+        }
+        if (audioSamples.getAudioFormat() != AudioFormat.ENCODING_PCM_16BIT) {
+            if (!warnedFormat) {
+                Log.w(TAG, "Can't mix " + audioSamples.getAudioFormat() + " PCM, recording the microphone only");
+                warnedFormat = true;
+            }
+            super.onWebRtcAudioRecordSamplesReady(audioSamples);
+            return;
+        }
+        super.onWebRtcAudioRecordSamplesReady(mix(audioSamples));
+    }
+
+    private AudioSamples mix(AudioSamples mic) {
+        byte[] input = mic.getData();
+        int channelCount = mic.getChannelCount();
+        int frames = input.length / (2 * channelCount);
+        AudioSamples chunk = chunkPool[nextChunk];
+        if (chunk == null || chunk.getData().length != input.length
+                || chunk.getChannelCount() != channelCount || chunk.getSampleRate() != mic.getSampleRate()) {
+            chunk = new AudioSamples(AudioFormat.ENCODING_PCM_16BIT, channelCount, mic.getSampleRate(),
+                    new byte[input.length]);
+            chunkPool[nextChunk] = chunk;
+        }
+        nextChunk = (nextChunk + 1) % CHUNK_POOL_SIZE;
+        byte[] output = chunk.getData();
+
+        double step = pullPlayback(frames, mic.getSampleRate());
+        for (int frame = 0; frame < frames; frame++) {
+            int remote = 0;
+            if (step > 0) {
+                double source = position + frame * step;
+                int index = (int) source;
+                double fraction = source - index;
+                remote = (int) (pending[index] * (1 - fraction) + pending[index + 1] * fraction);
+            }
+            for (int channel = 0; channel < channelCount; channel++) {
+                int offset = (frame * channelCount + channel) * 2;
+                int local = (short) ((input[offset] & 0xff) | (input[offset + 1] << 8));
+                int mixed = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, local + remote));
+                output[offset] = (byte) mixed;
+                output[offset + 1] = (byte) (mixed >> 8);
+            }
+        }
+        if (step > 0) {
+            position += frames * step;
+            int consumed = (int) position;
+            System.arraycopy(pending, consumed, pending, 0, pendingFrames - consumed);
+            pendingFrames -= consumed;
+            position -= consumed;
+        }
+        return chunk;
+    }
+
+    /**
+     * Makes sure pending holds the playback for the next frames microphone frames and returns
+     * the resampling step in playback frames per microphone frame, or 0 if there is no
+     * playback to mix in.
+     */
+    private double pullPlayback(int frames, int sampleRate) {
+        PlaybackStream stream = playback;
+        if (stream != mixedPlayback) {
+            // new playback format, start over
+            mixedPlayback = stream;
+            primed = false;
+        }
+        if (stream == null) {
+            return 0;
+        }
+        PcmRingBuffer ring = stream.ring;
+        int frameSize = stream.channelCount * 2;
+        if (!primed) {
+            if (ring.available() < stream.bytesForMs(TARGET_DELAY_MS)) {
+                return 0;
+            }
+            primed = true;
+            pendingFrames = 0;
+            position = 0;
+        }
+        if (ring.available() > stream.bytesForMs(MAX_DELAY_MS)) {
+            // playback runs faster than the microphone, drop the excess to get back on target
+            ring.skip(ring.available() - stream.bytesForMs(TARGET_DELAY_MS));
+        }
+
+        double step = (double) stream.sampleRate / sampleRate;
+        // the last output frame interpolates towards the frame after it
+        int needed = (int) (position + frames * step) + 2;
+        if (pending.length < needed) {
+            pending = Arrays.copyOf(pending, needed);
+        }
+        int missing = needed - pendingFrames;
+        if (missing > 0) {
+            int length = Math.min(missing * frameSize, ring.available() / frameSize * frameSize);
+            if (readBuffer.capacity() < missing * frameSize) {
+                readBuffer = ByteBuffer.allocate(missing * frameSize);
+            }
+            readBuffer.clear();
+            ring.read(readBuffer, length);
+            byte[] bytes = readBuffer.array();
+            for (int offset = 0; offset < length; offset += frameSize) {
+                int sum = 0;
+                for (int channel = 0; channel < stream.channelCount; channel++) {
+                    int at = offset + channel * 2;
+                    sum += (short) ((bytes[at] & 0xff) | (bytes[at + 1] << 8));
+                }
+                pending[pendingFrames++] = sum / stream.channelCount;
+            }
+            if (pendingFrames < needed) {
+                // underrun: pad with silence and wait for the buffer to fill up again
+                Arrays.fill(pending, pendingFrames, needed, 0);
+                pendingFrames = needed;
+                primed = false;
+            }
+        }
+        return step;
+    }
+}
@@ -0,0 +1,281 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.cloudwebrtc.webrtc.utils.WorkerPool;
+
+import org.webrtc.EncodedImage;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+import org.webrtc.VideoTrack;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records a remote VideoTrack by muxing the frames it receives as they arrived, without
+ * decoding and re-encoding them. Needs the decoder factory's encoded frame tap; the tap
+ * feeding the track is found from the first frames the track delivers (see EncodedFrameTap).
+ *
+ * Recording starts at the first key frame. H.264 and HEVC go to MP4 or MPEG-TS, VP8 and VP9
+ * to WebM. Video only; if no tap is found or the codec can't be muxed, onUnavailable runs so
+ * the caller can fall back to re-encoding.
+ */
+class PassthroughRecorder implements VideoSink, EncodedFrameTap.Listener {
+    private static final String TAG = "PassthroughRecorder";
+    // frames the track may deliver before we give up looking for its tap
+    private static final int MAX_FRAMES_TO_MATCH = 60;
+    // frame copies waiting for the mux thread, reused once written
+    private static final int FRAME_BUFFERS = 8;
+    // RTP video timestamps are 32-bit at 90 kHz
+    private static final long RTP_WRAP = 1L << 32;
+
+    private final VideoTrack videoTrack;
+    private final RecordingMuxer muxer;
+    private final RecordingProfile profile;
+    private final Runnable onUnavailable;
+    private final HandlerThread muxThread;
+    private final Handler muxThreadHandler;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    private final BlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(FRAME_BUFFERS);
+
+    private volatile EncodedFrameTap tap;
+    private volatile boolean running = true;
+    // taken by whichever comes first: the fallback (onUnavailable) or release()
+    private final AtomicBoolean muxerTaken = new AtomicBoolean();
+    private int framesSeen = 0;
+    // mux thread only
+    private int trackIndex = -1;
+    private long lastPtsUs = -1;
+    private long lastRtpTicks = -1;
+    private long rtpWrapOffset = 0;
+    private long firstRtpTicks = -1;
+
+    PassthroughRecorder(VideoTrack videoTrack, RecordingMuxer muxer, RecordingProfile profile,
+                        Runnable onUnavailable) {
+        this.videoTrack = videoTrack;
+        this.muxer = muxer;
+        this.profile = profile;
+        this.onUnavailable = onUnavailable;
+        muxThread = new HandlerThread(TAG);
+        muxThread.start();
+        muxThreadHandler = new Handler(muxThread.getLooper());
+    }
+
+    void start() {
+        videoTrack.addSink(this);
+    }
+
+    @Override
+    public void onFrame(VideoFrame frame) {
+        if (tap != null || !running) {
+            return;
+        }
+        EncodedFrameTap source = EncodedFrameTap.findSource(frame.getBuffer());
+        if (source != null) {
+            tap = source;
+            source.addListener(this);
+        } else if (++framesSeen < MAX_FRAMES_TO_MATCH) {
+            return;
+        } else {
+            Log.w(TAG, "No encoded frame tap feeds this track, falling back to re-encoding");
+            running = false;
+            if (muxerTaken.compareAndSet(false, true)) {
+                WorkerPool.IO.execute(onUnavailable);
+            }
+        }
+        // removing a sink from inside its own onFrame would deadlock the track
+        WorkerPool.IO.execute(() -> videoTrack.removeSink(this));
+    }
+
+    @Override
+    public void onEncodedFrame(EncodedImage frame, String codec) {
+        if (!running) {
+            return;
+        }
+        boolean keyFrame = frame.frameType == EncodedImage.FrameType.VideoFrameKey;
+        ByteBuffer source = frame.buffer.duplicate();
+        int length = source.remaining();
+        byte[] buffer = freeBuffers.poll();
+        if (buffer == null || buffer.length < length) {
+            buffer = new byte[length];
+        }
+        source.get(buffer, 0, length);
+        byte[] data = buffer;
+        long captureTimeNs = frame.captureTimeNs;
+        int width = frame.encodedWidth;
+        int height = frame.encodedHeight;
+        muxThreadHandler.post(() -> {
+            try {
+                writeFrame(codec, data, length, captureTimeNs, keyFrame, width, height);
+            } finally {
+                freeBuffers.offer(data);
+            }
+        });
+    }
+
+    /**
+     * The receive side's capture time comes from the RTP timestamp, which starts at a random
+     * value and wraps every ~13 hours. Unwraps it and rebases it to the first frame.
+     */
+    private long ptsUsFor(long captureTimeNs) {
+        long ticks = (captureTimeNs * 9 / 100000) & (RTP_WRAP - 1);
+        if (lastRtpTicks >= 0) {
+            long delta = ticks - lastRtpTicks;
+            if (delta < -RTP_WRAP / 2) {
+                rtpWrapOffset += RTP_WRAP;
+            } else if (delta > RTP_WRAP / 2) {
+                // a frame from before the last wrap
+                ticks -= RTP_WRAP;
+            }
+        }
+        if (ticks >= 0) {
+            lastRtpTicks = ticks;
+        }
+        long unwrapped = ticks + rtpWrapOffset;
+        if (firstRtpTicks < 0) {
+            firstRtpTicks = unwrapped;
+        }
+        return (unwrapped - firstRtpTicks) * 100 / 9;
+    }
+
+    private void writeFrame(String codec, byte[] data, int length, long captureTimeNs, boolean keyFrame,
+                            int width, int height) {
+        if (!running) {
+            return;
+        }
+        long ptsUs = ptsUsFor(captureTimeNs);
+        if (trackIndex == -1) {
+            if (!keyFrame) {
+                return;
+            }
+            MediaFormat format = formatFor(codec, Arrays.copyOf(data, length), width, height);
+            if (format == null) {
+                running = false;
+                if (muxerTaken.compareAndSet(false, true)) {
+                    onUnavailable.run();
+                }
+                return;
+            }
+            synchronized (muxer) {
+                trackIndex = muxer.addTrack(format);
+                muxer.start();
+            }
+        }
+        // the muxer wants strictly increasing timestamps
+        ptsUs = Math.max(ptsUs, lastPtsUs + 1);
+        lastPtsUs = ptsUs;
+        bufferInfo.set(0, length, ptsUs, keyFrame ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+        muxer.writeSampleData(trackIndex, ByteBuffer.wrap(data, 0, length), bufferInfo);
+    }
+
+    private MediaFormat formatFor(String codec, byte[] keyFrame, int width, int height) {
+        switch (codec) {
+            case "H264":
+                if (profile.container == RecordingProfile.Container.WEBM) {
+                    break;
+                }
+                return annexBFormat(MediaFormat.MIMETYPE_VIDEO_AVC, keyFrame, width, height, false);
+            case "H265":
+                if (profile.container == RecordingProfile.Container.WEBM) {
+                    break;
+                }
+                return annexBFormat(MediaFormat.MIMETYPE_VIDEO_HEVC, keyFrame, width, height, true);
+            case "VP8":
+            case "VP9":
+                if (profile.container != RecordingProfile.Container.WEBM) {
+                    break;
+                }
+                return MediaFormat.createVideoFormat("VP8".equals(codec)
+                        ? MediaFormat.MIMETYPE_VIDEO_VP8 : MediaFormat.MIMETYPE_VIDEO_VP9, width, height);
+        }
+        Log.w(TAG, codec + " can't be written to " + profile.container + " without re-encoding");
+        return null;
+    }
+
+    /**
+     * Builds the format for an Annex-B stream, taking the parameter sets (SPS/PPS, plus VPS
+     * for HEVC) from the first key frame.
+     */
+    private static MediaFormat annexBFormat(String mimeType, byte[] keyFrame, int width, int height, boolean hevc) {
+        ByteArrayOutputStream sps = new ByteArrayOutputStream();
+        ByteArrayOutputStream pps = new ByteArrayOutputStream();
+        int start = nextStartCode(keyFrame, 0);
+        while (start >= 0) {
+            int payload = start + (keyFrame[start + 2] == 1 ? 3 : 4);
+            int next = nextStartCode(keyFrame, payload);
+            int end = next >= 0 ? next : keyFrame.length;
+            if (payload < end) {
+                int type = hevc ? (keyFrame[payload] >> 1) & 0x3F : keyFrame[payload] & 0x1F;
+                if (hevc ? type >= 32 && type <= 34 : type == 7) {
+                    sps.write(keyFrame, start, end - start);
+                } else if (!hevc && type == 8) {
+                    pps.write(keyFrame, start, end - start);
+                }
+            }
+            start = next;
+        }
+        MediaFormat format = MediaFormat.createVideoFormat(mimeType, width, height);
+        // HEVC keeps VPS, SPS and PPS together in csd-0
+        format.setByteBuffer("csd-0", ByteBuffer.wrap(sps.toByteArray()));
+        if (!hevc) {
+            format.setByteBuffer("csd-1", ByteBuffer.wrap(pps.toByteArray()));
+        }
+        return format;
+    }
+
+    /** Index of the next 00 00 01 or 00 00 00 01 start code at or after from, or -1. */
+    private static int nextStartCode(byte[] data, int from) {
+        for (int i = from; i + 2 < data.length; i++) {
+            if (data[i] == 0 && data[i + 1] == 0) {
+                if (data[i + 2] == 1) {
+                    return i;
+                }
+                if (data[i + 2] == 0 && i + 3 < data.length && data[i + 3] == 1) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    void release() {
+        running = false;
+        EncodedFrameTap current = tap;
+        if (current != null) {
+            current.removeListener(this);
+        } else {
+            videoTrack.removeSink(this);
+        }
+        // after a fallback the muxer belongs to the re-encoding renderer
+        boolean releaseMuxer = muxerTaken.compareAndSet(false, true);
+        CountDownLatch latch = new CountDownLatch(1);
+        muxThreadHandler.post(() -> {
+            try {
+                if (releaseMuxer) {
+                    muxer.release();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to finish recording: " + e.getMessage());
+            } finally {
+                muxThread.quit();
+                latch.countDown();
+            }
+        });
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.cloudwebrtc.webrtc.record;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed size ring of PCM bytes with one writer and one reader, e.g. the WebRTC audio thread
+ * and an encoder thread. Neither side locks or allocates. A write that doesn't fit is
+ * dropped whole, since the reader may still be copying the oldest bytes.
+ */
+final class PcmRingBuffer {
+    private final byte[] buffer;
+    // running totals; each is written by one side only
+    private volatile long writePosition;
+    private volatile long readPosition;
+    private volatile long droppedBytes;
+
+    PcmRingBuffer(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    /** Writer side. Returns false if the data didn't fit and was dropped. */
+    boolean write(byte[] data, int offset, int length) {
+        long position = writePosition;
+        if (length > buffer.length - (int) (position - readPosition)) {
+            droppedBytes += length;
+            return false;
+        }
+        int start = (int) (position % buffer.length);
+        int first = Math.min(length, buffer.length - start);
+        System.arraycopy(data, offset, buffer, start, first);
+        System.arraycopy(data, offset + first, buffer, 0, length - first);
+        writePosition = position + length;
+        return true;
+    }
+
+    /** Reader side. Bytes that can be read now. */
+    int available() {
+        return (int) (writePosition - readPosition);
+    }
+
+    /** Reader side. Copies up to length bytes into dst and returns how many were copied. */
+    int read(ByteBuffer dst, int length) {
+        long position = readPosition;
+        length = Math.min(length, (int) (writePosition - position));
+        int start = (int) (position % buffer.length);
+        int first = Math.min(length, buffer.length - start);
+        dst.put(buffer, start, first);
+        dst.put(buffer, 0, length - first);
+        readPosition = position + length;
+        return length;
+    }
+
+    /** Reader side. Discards up to length bytes and returns how many were discarded. */
+    int skip(int length) {
+        long position = readPosition;
+        length = Math.min(length, (int) (writePosition - position));
+        readPosition = position + length;
+        return length;
+    }
+
+    long droppedBytes() {
+        return droppedBytes;
+    }
+}
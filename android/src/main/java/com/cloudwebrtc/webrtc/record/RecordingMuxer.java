@@ -0,0 +1,226 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Muxer front used by the file renderers, writing MP4 or WebM through MediaMuxer or MPEG-TS
+ * through TsMuxer. Without a SegmentPolicy it writes a single file, like MediaMuxer itself. With one it starts a new file, named
+ * {@code <name>_<index>.<ext>}, once the current segment is long or large enough and the
+ * next key frame of the video track (or any sample of an audio-only recording) arrives,
+ * so every segment starts decodable at time zero.
+ *
+ * All methods are synchronized; the renderers write from their video and audio threads.
+ */
+class RecordingMuxer {
+    private static final String TAG = "RecordingMuxer";
+
+    /** The MediaMuxer calls the renderers make, so TsMuxer can stand in for it. */
+    interface SampleWriter {
+        int addTrack(MediaFormat format);
+
+        void start();
+
+        void writeSampleData(int trackIndex, ByteBuffer data, MediaCodec.BufferInfo info);
+
+        void stop();
+
+        void release();
+    }
+
+    private final String outputFile;
+    private final RecordingProfile.Container container;
+    @Nullable private final SegmentPolicy policy;
+    @Nullable private final MediaRecorderImpl.SegmentListener listener;
+    private final List<MediaFormat> formats = new ArrayList<>();
+    private final ArrayDeque<File> finishedSegments = new ArrayDeque<>();
+    private int syncTrack = -1;
+
+    private SampleWriter muxer;
+    private File currentFile;
+    private int segmentIndex = 0;
+    private boolean started = false;
+    private long segmentStartUs = -1;
+    private long lastSampleUs = 0;
+    private long segmentBytes = 0;
+
+    RecordingMuxer(String outputFile, RecordingProfile.Container container, @Nullable SegmentPolicy policy,
+                   @Nullable MediaRecorderImpl.SegmentListener listener) throws IOException {
+        this.outputFile = outputFile;
+        this.container = container;
+        this.policy = policy;
+        this.listener = listener;
+        openSegment();
+    }
+
+    private void openSegment() throws IOException {
+        currentFile = policy != null ? segmentFile(segmentIndex) : new File(outputFile);
+        muxer = createWriter(currentFile.getAbsolutePath());
+        segmentStartUs = -1;
+        lastSampleUs = 0;
+        segmentBytes = 0;
+    }
+
+    private SampleWriter createWriter(String path) throws IOException {
+        if (container == RecordingProfile.Container.MPEG_TS) {
+            return new TsMuxer(path);
+        }
+        final MediaMuxer mediaMuxer = new MediaMuxer(path, container == RecordingProfile.Container.WEBM
+                ? MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM
+                : MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        return new SampleWriter() {
+            @Override
+            public int addTrack(MediaFormat format) {
+                return mediaMuxer.addTrack(format);
+            }
+
+            @Override
+            public void start() {
+                mediaMuxer.start();
+            }
+
+            @Override
+            public void writeSampleData(int trackIndex, ByteBuffer data, MediaCodec.BufferInfo info) {
+                mediaMuxer.writeSampleData(trackIndex, data, info);
+            }
+
+            @Override
+            public void stop() {
+                mediaMuxer.stop();
+            }
+
+            @Override
+            public void release() {
+                mediaMuxer.release();
+            }
+        };
+    }
+
+    private File segmentFile(int index) {
+        int dot = outputFile.lastIndexOf('.');
+        int slash = outputFile.lastIndexOf(File.separatorChar);
+        if (dot > slash) {
+            return new File(outputFile.substring(0, dot) + "_" + index + outputFile.substring(dot));
+        }
+        return new File(outputFile + "_" + index);
+    }
+
+    synchronized int addTrack(MediaFormat format) {
+        int track = muxer.addTrack(format);
+        formats.add(format);
+        String mime = format.getString(MediaFormat.KEY_MIME);
+        if (syncTrack == -1 || (mime != null && mime.startsWith("video/"))) {
+            syncTrack = track;
+        }
+        return track;
+    }
+
+    synchronized void start() {
+        muxer.start();
+        started = true;
+    }
+
+    synchronized void writeSampleData(int track, ByteBuffer data, MediaCodec.BufferInfo info) {
+        if (!started) {
+            return;
+        }
+        if (policy != null && track == syncTrack && segmentStartUs >= 0 && isSyncSample(track, info)
+                && policy.isFull(info.presentationTimeUs - segmentStartUs, segmentBytes)) {
+            try {
+                nextSegment();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to start segment " + (segmentIndex + 1) + ": " + e.getMessage());
+                started = false;
+                return;
+            }
+        }
+        if (segmentStartUs < 0) {
+            if (track != syncTrack || !isSyncSample(track, info)) {
+                // a segment has to start with a sync sample of the sync track
+                return;
+            }
+            segmentStartUs = info.presentationTimeUs;
+        }
+        if (info.presentationTimeUs < segmentStartUs) {
+            // e.g. audio queued before the key frame that started this segment; clamping it to
+            // 0 would give the segment several samples at the same timestamp
+            return;
+        }
+        long originalUs = info.presentationTimeUs;
+        info.presentationTimeUs = originalUs - segmentStartUs;
+        muxer.writeSampleData(track, data, info);
+        info.presentationTimeUs = originalUs;
+        lastSampleUs = Math.max(lastSampleUs, originalUs);
+        segmentBytes += info.size;
+    }
+
+    private boolean isSyncSample(int track, MediaCodec.BufferInfo info) {
+        String mime = formats.get(track).getString(MediaFormat.KEY_MIME);
+        boolean video = mime != null && mime.startsWith("video/");
+        return !video || (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+    }
+
+    private void nextSegment() throws IOException {
+        finishSegment();
+        segmentIndex++;
+        openSegment();
+        for (MediaFormat format : formats) {
+            muxer.addTrack(format);
+        }
+        muxer.start();
+    }
+
+    private void finishSegment() {
+        long durationUs = segmentStartUs >= 0 ? lastSampleUs - segmentStartUs : 0;
+        long bytes = segmentBytes;
+        try {
+            muxer.stop();
+        } catch (IllegalStateException e) {
+            // stop() throws when no sample was written
+            Log.w(TAG, "Segment " + segmentIndex + " is empty: " + e.getMessage());
+        }
+        muxer.release();
+        if (policy == null) {
+            return;
+        }
+        File removed = null;
+        finishedSegments.addLast(currentFile);
+        if (policy.keepSegments > 0 && finishedSegments.size() > policy.keepSegments) {
+            removed = finishedSegments.removeFirst();
+            //noinspection ResultOfMethodCallIgnored
+            removed.delete();
+        }
+        if (listener != null) {
+            listener.onSegmentFinished(currentFile, segmentIndex, durationUs, bytes, removed);
+        }
+    }
+
+    /** Finalizes the current file. */
+    synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        finishSegment();
+    }
+
+    synchronized void release() {
+        if (started) {
+            stop();
+        } else if (muxer != null) {
+            muxer.release();
+        }
+        muxer = null;
+    }
+}
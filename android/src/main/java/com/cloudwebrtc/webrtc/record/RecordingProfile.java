@@ -0,0 +1,250 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Encoder settings for a recording. Zero values mean "let the recorder choose": a zero
+ * video bitrate probes the usual 6/4/2/1 Mbps ladder, a zero GOP uses 5 seconds and a zero
+ * audio bitrate keeps the renderer's own default.
+ *
+ * VP8 and VP9 are written to a WebM container with Opus audio, every other codec to MP4
+ * with AAC audio, or, for H.264 and HEVC, to MPEG-TS, which stays playable when the app is
+ * killed mid-recording.
+ *
+ * width and height only size the grid when several tracks are recorded together; a single
+ * track is recorded at its own resolution.
+ */
+public class RecordingProfile {
+    private static final String TAG = "RecordingProfile";
+
+    public enum RateControl {
+        VBR,
+        CBR,
+        CQ
+    }
+
+    public enum Container {
+        MP4,
+        WEBM,
+        MPEG_TS
+    }
+
+    final String videoMimeType;
+    final int videoBitrate;
+    final RateControl rateControl;
+    final int quality;
+    final int frameRate;
+    final int keyFrameIntervalSec;
+    final int audioBitrate;
+    final Container container;
+    final boolean passthrough;
+    final int width;
+    final int height;
+
+    public RecordingProfile(String videoMimeType, int videoBitrate, RateControl rateControl,
+                            int quality, int frameRate, int keyFrameIntervalSec, int audioBitrate,
+                            @Nullable Container container, boolean passthrough, int width, int height) {
+        this.videoMimeType = videoMimeType;
+        this.videoBitrate = videoBitrate;
+        this.rateControl = rateControl;
+        this.quality = quality;
+        this.frameRate = frameRate > 0 ? frameRate : 30;
+        this.keyFrameIntervalSec = keyFrameIntervalSec > 0 ? keyFrameIntervalSec : 5;
+        this.audioBitrate = audioBitrate;
+        this.container = container != null ? container : defaultContainer(videoMimeType);
+        this.passthrough = passthrough;
+        this.width = width > 0 ? width : 1280;
+        this.height = height > 0 ? height : 720;
+    }
+
+    private static Container defaultContainer(String videoMimeType) {
+        return MediaFormat.MIMETYPE_VIDEO_VP8.equals(videoMimeType)
+                || MediaFormat.MIMETYPE_VIDEO_VP9.equals(videoMimeType) ? Container.WEBM : Container.MP4;
+    }
+
+    public static RecordingProfile defaults() {
+        return new RecordingProfile(MediaFormat.MIMETYPE_VIDEO_AVC, 0, RateControl.VBR, 0, 30, 5, 0, null, false, 0, 0);
+    }
+
+    /**
+     * Keys: codec (h264, hevc, vp8, vp9, av1), videoBitrate, rateControl (vbr, cbr, cq),
+     * quality (0-100, CQ only), frameRate, keyFrameInterval (seconds), audioBitrate,
+     * container (mp4, webm, mpegts; defaults to webm for VP8/VP9 and mp4 otherwise),
+     * passthrough (record a remote track's received frames as they are, see PassthroughRecorder;
+     * codec then names the codec the track is received with), width and height (grid size when
+     * recording several tracks, 1280x720 by default).
+     */
+    public static RecordingProfile fromMap(@Nullable Map<String, Object> map) throws Exception {
+        if (map == null) {
+            return defaults();
+        }
+        Object rateControl = map.get("rateControl");
+        Object container = map.get("container");
+        return new RecordingProfile(
+                mimeTypeFor(map.get("codec") != null ? (String) map.get("codec") : "h264"),
+                intValue(map.get("videoBitrate")),
+                rateControl != null ? RateControl.valueOf(((String) rateControl).toUpperCase()) : RateControl.VBR,
+                intValue(map.get("quality")),
+                intValue(map.get("frameRate")),
+                intValue(map.get("keyFrameInterval")),
+                intValue(map.get("audioBitrate")),
+                container != null ? containerFor((String) container) : null,
+                Boolean.TRUE.equals(map.get("passthrough")),
+                intValue(map.get("width")),
+                intValue(map.get("height")));
+    }
+
+    private static Container containerFor(String container) throws Exception {
+        switch (container.toLowerCase()) {
+            case "mp4":
+                return Container.MP4;
+            case "webm":
+                return Container.WEBM;
+            case "mpegts":
+            case "ts":
+                return Container.MPEG_TS;
+            default:
+                throw new Exception("Unsupported recording container: " + container);
+        }
+    }
+
+    private static String mimeTypeFor(String codec) throws Exception {
+        switch (codec.toLowerCase()) {
+            case "h264":
+                return MediaFormat.MIMETYPE_VIDEO_AVC;
+            case "hevc":
+            case "h265":
+                return MediaFormat.MIMETYPE_VIDEO_HEVC;
+            case "vp8":
+                return MediaFormat.MIMETYPE_VIDEO_VP8;
+            case "vp9":
+                return MediaFormat.MIMETYPE_VIDEO_VP9;
+            case "av1":
+                return "video/av01";
+            default:
+                throw new Exception("Unsupported recording codec: " + codec);
+        }
+    }
+
+    private static int intValue(@Nullable Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    int audioBitrate(int fallback) {
+        return audioBitrate > 0 ? audioBitrate : fallback;
+    }
+
+    String audioMimeType() {
+        return container == Container.WEBM ? "audio/opus" : MediaFormat.MIMETYPE_AUDIO_AAC;
+    }
+
+    /** Profiles to try in order of preference, 0 meaning the encoder's default. */
+    int[] videoProfiles() {
+        if (MediaFormat.MIMETYPE_VIDEO_AVC.equals(videoMimeType)) {
+            return new int[]{
+                    MediaCodecInfo.CodecProfileLevel.AVCProfileBaseline,
+                    MediaCodecInfo.CodecProfileLevel.AVCProfileMain,
+                    MediaCodecInfo.CodecProfileLevel.AVCProfileHigh
+            };
+        }
+        if (MediaFormat.MIMETYPE_VIDEO_HEVC.equals(videoMimeType)) {
+            return new int[]{MediaCodecInfo.CodecProfileLevel.HEVCProfileMain};
+        }
+        return new int[]{0};
+    }
+
+    int bitrateMode() {
+        switch (rateControl) {
+            case CBR:
+                return MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_CBR;
+            case CQ:
+                return MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_CQ;
+            default:
+                return MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_VBR;
+        }
+    }
+
+    /**
+     * Applies rate control to a video format. VBR, the default, is left to the encoder when it
+     * doesn't support it; checkSupported rejects CBR and CQ on such encoders. CQ quality is
+     * clamped to the encoder's quality range.
+     */
+    void applyRateControl(MediaFormat format, @Nullable MediaCodecInfo codecInfo) {
+        int mode = bitrateMode();
+        MediaCodecInfo.EncoderCapabilities caps = null;
+        if (codecInfo != null) {
+            caps = codecInfo.getCapabilitiesForType(videoMimeType).getEncoderCapabilities();
+            if (!caps.isBitrateModeSupported(mode)) {
+                Log.w(TAG, codecInfo.getName() + " doesn't support " + rateControl + ", using its default rate control");
+                return;
+            }
+        }
+        format.setInteger(MediaFormat.KEY_BITRATE_MODE, mode);
+        if (rateControl == RateControl.CQ && quality > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            format.setInteger(MediaFormat.KEY_QUALITY, caps != null ? caps.getQualityRange().clamp(quality) : quality);
+        }
+    }
+
+    /**
+     * Throws if the container can't hold the video codec, the device has no encoder for the
+     * video codec or the container's audio codec, or the video encoder doesn't support CBR or
+     * CQ rate control when that was asked for.
+     */
+    void checkSupported(boolean video, boolean audio) throws Exception {
+        if (container == Container.MPEG_TS && video && !TsMuxer.supports(videoMimeType)) {
+            throw new Exception("MPEG-TS recording supports H.264 and HEVC only");
+        }
+        if (container == Container.WEBM && video && defaultContainer(videoMimeType) != Container.WEBM) {
+            throw new Exception("WebM recording supports VP8 and VP9 only");
+        }
+        if (video) {
+            MediaCodecInfo info = encoderInfo(videoMimeType);
+            if (info == null) {
+                throw new Exception("No encoder for " + videoMimeType + " on this device");
+            }
+            if (rateControl != RateControl.VBR && !info.getCapabilitiesForType(videoMimeType)
+                    .getEncoderCapabilities().isBitrateModeSupported(bitrateMode())) {
+                throw new Exception(rateControl + " rate control is not supported by " + info.getName());
+            }
+        }
+        if (audio && !hasEncoder(audioMimeType())) {
+            throw new Exception("No encoder for " + audioMimeType() + " on this device");
+        }
+    }
+
+    static boolean hasEncoder(String mimeType) {
+        return encoderInfo(mimeType) != null;
+    }
+
+    /** The encoder createEncoderByType picks for mimeType. */
+    @Nullable
+    static MediaCodecInfo encoderInfo(String mimeType) {
+        MediaCodecList codecs = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        for (MediaCodecInfo info : codecs.getCodecInfos()) {
+            if (!info.isEncoder()) {
+                continue;
+            }
+            for (String type : info.getSupportedTypes()) {
+                if (type.equalsIgnoreCase(mimeType)) {
+                    return info;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return videoMimeType + ", bitrate: " + (videoBitrate > 0 ? videoBitrate : "auto") + " " + rateControl
+                + ", " + frameRate + "fps, gop: " + keyFrameIntervalSec + "s, audio bitrate: "
+                + (audioBitrate > 0 ? audioBitrate : "auto") + ", " + container;
+    }
+}
@@ -0,0 +1,45 @@
+package com.cloudwebrtc.webrtc.record;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * When a segmented recording moves on to the next file, and how many finished files it
+ * keeps. A segment is full once it reaches maxDurationMs or maxBytes, whichever is set and
+ * comes first; keepSegments 0 keeps all of them.
+ */
+public class SegmentPolicy {
+    final long maxDurationMs;
+    final long maxBytes;
+    final int keepSegments;
+
+    public SegmentPolicy(long maxDurationMs, long maxBytes, int keepSegments) {
+        this.maxDurationMs = maxDurationMs;
+        this.maxBytes = maxBytes;
+        this.keepSegments = keepSegments;
+    }
+
+    /** Keys: maxDurationMs, maxBytes, keepSegments. Returns null for a null map. */
+    @Nullable
+    public static SegmentPolicy fromMap(@Nullable Map<String, Object> map) throws Exception {
+        if (map == null) {
+            return null;
+        }
+        long maxDurationMs = longValue(map.get("maxDurationMs"));
+        long maxBytes = longValue(map.get("maxBytes"));
+        if (maxDurationMs <= 0 && maxBytes <= 0) {
+            throw new Exception("Segmented recording needs maxDurationMs or maxBytes");
+        }
+        return new SegmentPolicy(maxDurationMs, maxBytes, (int) longValue(map.get("keepSegments")));
+    }
+
+    private static long longValue(@Nullable Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    boolean isFull(long durationUs, long bytes) {
+        return (maxDurationMs > 0 && durationUs >= maxDurationMs * 1000)
+                || (maxBytes > 0 && bytes >= maxBytes);
+    }
+}
@@ -0,0 +1,374 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal MPEG-TS writer for H.264/HEVC video and AAC audio, with the MediaMuxer call
+ * sequence (addTrack, start, writeSampleData, stop, release).
+ *
+ * Unlike an MP4 written by MediaMuxer, a transport stream has no index that is only written
+ * on stop(): every 188 byte packet stands on its own, PAT/PMT and the parameter sets are
+ * repeated before every video key frame, and the stream is flushed to the file at each of
+ * them. A recording cut short by a crash or an app kill stays playable up to the last flush.
+ *
+ * Only presentation timestamps are written, which is right for encoders without B-frames
+ * (what MediaCodec produces from a surface by default).
+ */
+class TsMuxer implements RecordingMuxer.SampleWriter {
+    private static final int PACKET_SIZE = 188;
+    private static final int PAT_PID = 0x0000;
+    private static final int PMT_PID = 0x1000;
+    private static final int FIRST_ES_PID = 0x0100;
+    // PTS are shifted ahead of the PCR so decoders have time to buffer
+    private static final long PTS_OFFSET = 63000; // 700ms at 90kHz
+    // repeat PAT/PMT this often in an audio-only stream, in audio frames
+    private static final int AUDIO_PSI_INTERVAL = 40;
+
+    private static final int[] AAC_SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+    };
+    private static final byte[] H264_AUD = {0, 0, 0, 1, 0x09, (byte) 0xF0};
+    private static final byte[] HEVC_AUD = {0, 0, 0, 1, 0x46, 0x01, 0x50};
+
+    private static final class Track {
+        final int pid;
+        final int streamType;
+        final int streamId;
+        final boolean video;
+        // video: access unit delimiter and parameter sets put before key frames
+        final byte[] aud;
+        final byte[] parameterSets;
+        // audio: ADTS header template
+        final byte[] adts;
+        int continuity;
+
+        Track(int pid, int streamType, int streamId, boolean video, byte[] aud,
+              byte[] parameterSets, byte[] adts) {
+            this.pid = pid;
+            this.streamType = streamType;
+            this.streamId = streamId;
+            this.video = video;
+            this.aud = aud;
+            this.parameterSets = parameterSets;
+            this.adts = adts;
+        }
+    }
+
+    private final OutputStream out;
+    private final List<Track> tracks = new ArrayList<>();
+    private final byte[] packet = new byte[PACKET_SIZE];
+    private byte[] pes = new byte[64 * 1024];
+    private int patContinuity;
+    private int pmtContinuity;
+    private int pcrPid = -1;
+    private int audioFramesSincePsi = AUDIO_PSI_INTERVAL;
+    private boolean started = false;
+
+    TsMuxer(String path) throws IOException {
+        out = new BufferedOutputStream(new FileOutputStream(path), 64 * 1024);
+    }
+
+    /** Returns whether a stream of this MIME type can be written. */
+    static boolean supports(String mimeType) {
+        return MediaFormat.MIMETYPE_VIDEO_AVC.equals(mimeType)
+                || MediaFormat.MIMETYPE_VIDEO_HEVC.equals(mimeType)
+                || MediaFormat.MIMETYPE_AUDIO_AAC.equals(mimeType);
+    }
+
+    @Override
+    public int addTrack(MediaFormat format) {
+        if (started) {
+            throw new IllegalStateException("TsMuxer already started");
+        }
+        String mime = format.getString(MediaFormat.KEY_MIME);
+        int pid = FIRST_ES_PID + tracks.size();
+        Track track;
+        if (MediaFormat.MIMETYPE_VIDEO_AVC.equals(mime) || MediaFormat.MIMETYPE_VIDEO_HEVC.equals(mime)) {
+            boolean hevc = MediaFormat.MIMETYPE_VIDEO_HEVC.equals(mime);
+            track = new Track(pid, hevc ? 0x24 : 0x1B, 0xE0, true, hevc ? HEVC_AUD : H264_AUD,
+                    concat(csd(format, "csd-0"), csd(format, "csd-1")), null);
+            pcrPid = pid;
+        } else if (MediaFormat.MIMETYPE_AUDIO_AAC.equals(mime)) {
+            track = new Track(pid, 0x0F, 0xC0, false, null, null, adtsHeader(format));
+            if (pcrPid == -1) {
+                pcrPid = pid;
+            }
+        } else {
+            throw new IllegalArgumentException("MPEG-TS output does not support " + mime);
+        }
+        tracks.add(track);
+        return tracks.size() - 1;
+    }
+
+    @Override
+    public void start() {
+        started = true;
+    }
+
+    @Override
+    public void writeSampleData(int trackIndex, ByteBuffer data, MediaCodec.BufferInfo info) {
+        if (!started) {
+            throw new IllegalStateException("TsMuxer not started");
+        }
+        if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0 || info.size == 0) {
+            // parameter sets come from the track format
+            return;
+        }
+        Track track = tracks.get(trackIndex);
+        long pts = info.presentationTimeUs * 9 / 100 + PTS_OFFSET;
+        boolean keyFrame = track.video && (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+        try {
+            boolean psi = keyFrame
+                    || (pcrPid == track.pid && !track.video && audioFramesSincePsi >= AUDIO_PSI_INTERVAL);
+            if (psi) {
+                writePsi();
+                audioFramesSincePsi = 0;
+            }
+            int length = 0;
+            if (track.video) {
+                length = append(length, track.aud, 0, track.aud.length);
+                if (keyFrame) {
+                    length = append(length, track.parameterSets, 0, track.parameterSets.length);
+                }
+            } else {
+                int frameLength = track.adts.length + info.size;
+                ensurePes(track.adts.length);
+                System.arraycopy(track.adts, 0, pes, 14, track.adts.length);
+                pes[14 + 3] = (byte) ((track.adts[3] & 0xFC) | ((frameLength >> 11) & 0x03));
+                pes[14 + 4] = (byte) ((frameLength >> 3) & 0xFF);
+                pes[14 + 5] = (byte) (((frameLength & 0x07) << 5) | 0x1F);
+                length = track.adts.length;
+                audioFramesSincePsi++;
+            }
+            ensurePes(length + info.size);
+            int position = data.position();
+            data.position(info.offset);
+            data.get(pes, 14 + length, info.size);
+            data.position(position);
+            length += info.size;
+
+            int pesLength = writePesHeader(track, pts, length);
+            long pcr = track.pid == pcrPid ? pts - PTS_OFFSET : -1;
+            writePackets(track, pesLength, keyFrame, pcr);
+            if (psi) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write transport stream", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to flush transport stream", e);
+        }
+    }
+
+    @Override
+    public void release() {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // PES payload starts at offset 14, after a header with a PTS
+    private int append(int length, byte[] bytes, int offset, int count) {
+        ensurePes(length + count);
+        System.arraycopy(bytes, offset, pes, 14 + length, count);
+        return length + count;
+    }
+
+    private void ensurePes(int payloadLength) {
+        if (pes.length < 14 + payloadLength) {
+            byte[] larger = new byte[Math.max(pes.length * 2, 14 + payloadLength)];
+            System.arraycopy(pes, 0, larger, 0, pes.length);
+            pes = larger;
+        }
+    }
+
+    /** Fills in the 14 byte PES header in front of the payload, returns the PES length. */
+    private int writePesHeader(Track track, long pts, int payloadLength) {
+        int pesPacketLength = 8 + payloadLength;
+        pes[0] = 0;
+        pes[1] = 0;
+        pes[2] = 1;
+        pes[3] = (byte) track.streamId;
+        // 0 = unbounded, allowed for video only
+        int lengthField = pesPacketLength <= 0xFFFF ? pesPacketLength : 0;
+        pes[4] = (byte) (lengthField >> 8);
+        pes[5] = (byte) lengthField;
+        pes[6] = (byte) 0x80;
+        pes[7] = (byte) 0x80; // PTS only
+        pes[8] = 5;
+        pes[9] = (byte) (0x21 | ((pts >> 29) & 0x0E));
+        pes[10] = (byte) (pts >> 22);
+        pes[11] = (byte) (((pts >> 14) & 0xFE) | 0x01);
+        pes[12] = (byte) (pts >> 7);
+        pes[13] = (byte) (((pts << 1) & 0xFE) | 0x01);
+        return 14 + payloadLength;
+    }
+
+    private void writePackets(Track track, int length, boolean randomAccess, long pcr) throws IOException {
+        int position = 0;
+        boolean first = true;
+        while (position < length) {
+            int remaining = length - position;
+            boolean withPcr = first && pcr >= 0;
+            int adaptation = first && (withPcr || randomAccess) ? 2 + (withPcr ? 6 : 0) : 0;
+            int payload = PACKET_SIZE - 4 - adaptation;
+            if (remaining < payload) {
+                adaptation = PACKET_SIZE - 4 - remaining;
+                payload = remaining;
+            }
+            packet[0] = 0x47;
+            packet[1] = (byte) ((first ? 0x40 : 0) | ((track.pid >> 8) & 0x1F));
+            packet[2] = (byte) track.pid;
+            packet[3] = (byte) ((adaptation > 0 ? 0x30 : 0x10) | track.continuity);
+            track.continuity = (track.continuity + 1) & 0x0F;
+            int index = 4;
+            if (adaptation > 0) {
+                packet[index++] = (byte) (adaptation - 1);
+                if (adaptation > 1) {
+                    packet[index++] = (byte) ((first && randomAccess ? 0x40 : 0) | (withPcr ? 0x10 : 0));
+                    if (withPcr) {
+                        packet[index++] = (byte) (pcr >> 25);
+                        packet[index++] = (byte) (pcr >> 17);
+                        packet[index++] = (byte) (pcr >> 9);
+                        packet[index++] = (byte) (pcr >> 1);
+                        packet[index++] = (byte) (((pcr & 1) << 7) | 0x7E);
+                        packet[index++] = 0;
+                    }
+                    while (index < 4 + adaptation) {
+                        packet[index++] = (byte) 0xFF;
+                    }
+                }
+            }
+            System.arraycopy(pes, position, packet, index, payload);
+            out.write(packet, 0, PACKET_SIZE);
+            position += payload;
+            first = false;
+        }
+    }
+
+    private void writePsi() throws IOException {
+        // PAT: program 1 -> PMT_PID
+        byte[] pat = {
+                0x00, (byte) 0xB0, 0x0D, 0x00, 0x01, (byte) 0xC1, 0x00, 0x00,
+                0x00, 0x01, (byte) (0xE0 | (PMT_PID >> 8)), (byte) PMT_PID,
+                0, 0, 0, 0
+        };
+        putCrc(pat, pat.length - 4);
+        writeSection(PAT_PID, pat, patContinuity);
+        patContinuity = (patContinuity + 1) & 0x0F;
+
+        int sectionLength = 13 + 5 * tracks.size();
+        byte[] pmt = new byte[3 + sectionLength];
+        pmt[0] = 0x02;
+        pmt[1] = (byte) (0xB0 | (sectionLength >> 8));
+        pmt[2] = (byte) sectionLength;
+        pmt[3] = 0x00;
+        pmt[4] = 0x01;
+        pmt[5] = (byte) 0xC1;
+        pmt[6] = 0x00;
+        pmt[7] = 0x00;
+        pmt[8] = (byte) (0xE0 | (pcrPid >> 8));
+        pmt[9] = (byte) pcrPid;
+        pmt[10] = (byte) 0xF0;
+        pmt[11] = 0x00;
+        int index = 12;
+        for (Track track : tracks) {
+            pmt[index++] = (byte) track.streamType;
+            pmt[index++] = (byte) (0xE0 | (track.pid >> 8));
+            pmt[index++] = (byte) track.pid;
+            pmt[index++] = (byte) 0xF0;
+            pmt[index++] = 0x00;
+        }
+        putCrc(pmt, index);
+        writeSection(PMT_PID, pmt, pmtContinuity);
+        pmtContinuity = (pmtContinuity + 1) & 0x0F;
+    }
+
+    private void writeSection(int pid, byte[] section, int continuity) throws IOException {
+        packet[0] = 0x47;
+        packet[1] = (byte) (0x40 | (pid >> 8));
+        packet[2] = (byte) pid;
+        packet[3] = (byte) (0x10 | continuity);
+        packet[4] = 0; // pointer field
+        System.arraycopy(section, 0, packet, 5, section.length);
+        for (int i = 5 + section.length; i < PACKET_SIZE; i++) {
+            packet[i] = (byte) 0xFF;
+        }
+        out.write(packet, 0, PACKET_SIZE);
+    }
+
+    /** MPEG-2 CRC32 of section[0, length) stored big endian at section[length]. */
+    private static void putCrc(byte[] section, int length) {
+        int crc = 0xFFFFFFFF;
+        for (int i = 0; i < length; i++) {
+            crc ^= (section[i] & 0xFF) << 24;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ 0x04C11DB7 : crc << 1;
+            }
+        }
+        section[length] = (byte) (crc >> 24);
+        section[length + 1] = (byte) (crc >> 16);
+        section[length + 2] = (byte) (crc >> 8);
+        section[length + 3] = (byte) crc;
+    }
+
+    private static byte[] adtsHeader(MediaFormat format) {
+        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        int rateIndex = 4;
+        for (int i = 0; i < AAC_SAMPLE_RATES.length; i++) {
+            if (AAC_SAMPLE_RATES[i] == sampleRate) {
+                rateIndex = i;
+                break;
+            }
+        }
+        int profile = 1; // AAC LC, audio object type 2 minus 1
+        return new byte[]{
+                (byte) 0xFF,
+                (byte) 0xF1, // MPEG-4, no CRC
+                (byte) ((profile << 6) | (rateIndex << 2) | ((channels >> 2) & 0x01)),
+                (byte) ((channels & 0x03) << 6),
+                0,
+                0,
+                (byte) 0xFC
+        };
+    }
+
+    private static byte[] csd(MediaFormat format, String key) {
+        ByteBuffer buffer = format.containsKey(key) ? format.getByteBuffer(key) : null;
+        if (buffer == null) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[] a, @Nullable byte[] b) {
+        byte[] result = new byte[a.length + (b != null ? b.length : 0)];
+        System.arraycopy(a, 0, result, 0, a.length);
+        if (b != null) {
+            System.arraycopy(b, 0, result, a.length, b.length);
+        }
+        return result;
+    }
+}
@@ -2,16 +2,19 @@
 
 package com.cloudwebrtc.webrtc.record;
 
+import android.media.AudioFormat;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
 import android.media.MediaFormat;
-import android.media.MediaMuxer;
 import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.util.Log;
 import android.view.Surface;
 
+import androidx.annotation.Nullable;
+
 import org.webrtc.EglBase;
 import org.webrtc.GlRectDrawer;
 import org.webrtc.VideoFrame;
@@ -21,7 +24,6 @@ import org.webrtc.audio.JavaAudioDeviceModule;
 import org.webrtc.audio.JavaAudioDeviceModule.SamplesReadyCallback;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,42 +31,51 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
     private static final String TAG = "VideoFileRenderer";
     private final HandlerThread renderThread;
     private final Handler renderThreadHandler;
+    private final HandlerThread codecThread;
+    private final Handler codecThreadHandler;
     private final HandlerThread audioThread;
     private final Handler audioThreadHandler;
-    private int outputFileWidth = -1;
-    private int outputFileHeight = -1;
-    private ByteBuffer[] encoderOutputBuffers;
+    private volatile int outputFileWidth = -1;
+    private volatile int outputFileHeight = -1;
     private ByteBuffer[] audioInputBuffers;
     private ByteBuffer[] audioOutputBuffers;
     private EglBase eglBase;
     private final EglBase.Context sharedContext;
     private VideoFrameDrawer frameDrawer;
 
-    // TODO: these ought to be configurable as well
-    private static final String MIME_TYPE = "video/avc";    // H.264 Advanced Video Coding
-    private static final int FRAME_RATE = 30;               // 30fps
-    private static final int IFRAME_INTERVAL = 5;           // 5 seconds between I-frames
+    private final RecordingProfile profile;
+    @Nullable private final EncoderConfigCache configCache;
 
-    private final MediaMuxer mediaMuxer;
+    private final RecordingMuxer mediaMuxer;
     private MediaCodec encoder;
-    private final MediaCodec.BufferInfo bufferInfo;
+    private final CountDownLatch encoderEndOfStream = new CountDownLatch(1);
     private MediaCodec.BufferInfo audioBufferInfo;
     private int trackIndex = -1;
     private int audioTrackIndex;
-    private boolean isRunning = true;
+    private volatile boolean isRunning = true;
     private GlRectDrawer drawer;
     private Surface surface;
     private MediaCodec audioEncoder;
 
-    VideoFileRenderer(String outputFile, final EglBase.Context sharedContext, boolean withAudio) throws IOException {
+    VideoFileRenderer(RecordingMuxer mediaMuxer, final EglBase.Context sharedContext, boolean withAudio,
+                      RecordingProfile profile, @Nullable EncoderConfigCache configCache) {
+        this.profile = profile;
+        this.configCache = configCache;
         renderThread = new HandlerThread(TAG + "RenderThread");
         renderThread.start();
         renderThreadHandler = new Handler(renderThread.getLooper());
+        // Encoder callbacks and muxing of video samples run here, so the render thread
+        // only draws into the encoder's input surface.
+        codecThread = new HandlerThread(TAG + "CodecThread");
+        codecThread.start();
+        codecThreadHandler = new Handler(codecThread.getLooper());
         if (withAudio) {
             audioThread = new HandlerThread(TAG + "AudioThread");
             audioThread.start();
@@ -73,35 +84,43 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
             audioThread = null;
             audioThreadHandler = null;
         }
-        bufferInfo = new MediaCodec.BufferInfo();
         this.sharedContext = sharedContext;
 
-        // Create a MediaMuxer.  We can't add the video track and start() the muxer here,
-        // because our MediaFormat doesn't have the Magic Goodies.  These can only be
-        // obtained from the encoder after it has started processing data.
-        mediaMuxer = new MediaMuxer(outputFile,
-                MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        // We can't add the video track and start() the muxer here, because our MediaFormat
+        // doesn't have the Magic Goodies.  These can only be obtained from the encoder after
+        // it has started processing data.
+        this.mediaMuxer = mediaMuxer;
 
         audioTrackIndex = withAudio ? -1 : 0;
     }
-    private boolean tryConfigureEncoder(EncoderConfig config) {
+    private boolean tryConfigureEncoder(EncoderConfig config, MediaCodecInfo codecInfo) {
         try {
-            MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, config.width, config.height);
+            MediaFormat format = MediaFormat.createVideoFormat(profile.videoMimeType, config.width, config.height);
             format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
             format.setInteger(MediaFormat.KEY_BIT_RATE, config.bitrate);
-            format.setInteger(MediaFormat.KEY_FRAME_RATE, FRAME_RATE);
-            format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, IFRAME_INTERVAL);
+            format.setInteger(MediaFormat.KEY_FRAME_RATE, profile.frameRate);
+            format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, profile.keyFrameIntervalSec);
+            profile.applyRateControl(format, codecInfo);
             // Use YUV420 semi-planar size (1.5 bytes per pixel) to reduce memory usage
             format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, config.width * config.height * 3 / 2);
             format.setInteger(MediaFormat.KEY_PRIORITY, 0);
-            format.setInteger(MediaFormat.KEY_PROFILE, config.profile);
+            if (config.profile != 0) {
+                format.setInteger(MediaFormat.KEY_PROFILE, config.profile);
+            }
 
-            Log.d(TAG, "Trying encoder config: " + config);
+            Log.d(TAG, "Trying encoder config: " + config + " (" + profile + ")");
 
-            encoder = MediaCodec.createEncoderByType(MIME_TYPE);
+            encoder = MediaCodec.createEncoderByType(profile.videoMimeType);
             String codecName = encoder.getName();
             Log.d(TAG, "Codec name: " + codecName);
 
+            // The callback has to be set before configure(). Without a handler (API < 23) it is
+            // delivered on the looper of the thread that created the codec, the codec thread.
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                encoder.setCallback(encoderCallback, codecThreadHandler);
+            } else {
+                encoder.setCallback(encoderCallback);
+            }
             encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
             // Create input surface *before* starting the encoder
             surface = encoder.createInputSurface();
@@ -127,7 +146,6 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
     private boolean startEncoder() {
         try {
             encoder.start();
-            encoderOutputBuffers = encoder.getOutputBuffers();
             Log.d(TAG, "Encoder started successfully");
             return true;
         } catch (Exception e) {
@@ -149,12 +167,10 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
 
     private List<EncoderConfig> getSupportedConfigurations(int frameWidth, int frameHeight) {
         
-        int[] bitrates = {6000000, 4000000, 2000000, 1000000};
-        int[] profiles = {
-                MediaCodecInfo.CodecProfileLevel.AVCProfileBaseline,
-                MediaCodecInfo.CodecProfileLevel.AVCProfileMain,
-                MediaCodecInfo.CodecProfileLevel.AVCProfileHigh
-        };
+        int[] bitrates = profile.videoBitrate > 0
+                ? new int[]{profile.videoBitrate}
+                : new int[]{6000000, 4000000, 2000000, 1000000};
+        int[] profiles = profile.videoProfiles();
         List<int[]> resolutions = new ArrayList<>();
         resolutions.add(new int[]{frameWidth, frameHeight});
         for (int[] res : Arrays.asList(
@@ -220,13 +236,18 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
         }
 
         // Check codec capabilities
-        MediaCodecInfo codecInfo = null;
-        try {
-            MediaCodec codec = MediaCodec.createEncoderByType(MIME_TYPE);
-            codecInfo = codec.getCodecInfo();
-            codec.release();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to get codec info: " + e.getMessage());
+        MediaCodecInfo codecInfo = findEncoderInfo(profile.videoMimeType);
+
+        String cacheKey = EncoderConfigCache.keyFor(profile, frameWidth, frameHeight);
+        if (configCache != null) {
+            EncoderConfig cached = configCache.get(cacheKey);
+            if (cached != null) {
+                Log.d(TAG, "Using cached encoder config: " + cached);
+                if (startEncoderWith(cached, codecInfo)) {
+                    return;
+                }
+                configCache.remove(cacheKey);
+            }
         }
 
         List<EncoderConfig> configs = getSupportedConfigurations(frameWidth, frameHeight);
@@ -234,7 +255,7 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
         for (EncoderConfig config : configs) {
             // Skip unsupported configurations
             if (codecInfo != null) {
-                MediaCodecInfo.VideoCapabilities videoCaps = codecInfo.getCapabilitiesForType(MIME_TYPE).getVideoCapabilities();
+                MediaCodecInfo.VideoCapabilities videoCaps = codecInfo.getCapabilitiesForType(profile.videoMimeType).getVideoCapabilities();
                 if (!videoCaps.isSizeSupported(config.width, config.height)) {
                     Log.d(TAG, "Skipping unsupported resolution: " + config);
                     continue;
@@ -243,61 +264,116 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                     Log.d(TAG, "Skipping unsupported bitrate: " + config);
                     continue;
                 }
-                if (!isProfileSupported(codecInfo, MIME_TYPE, config.profile)) {
+                if (config.profile != 0 && !isProfileSupported(codecInfo, profile.videoMimeType, config.profile)) {
                     Log.d(TAG, "Skipping unsupported profile: " + config);
                     continue;
                 }
             }
 
-            if (tryConfigureEncoder(config) && startEncoder()) {
-                outputFileWidth = config.width;
-                outputFileHeight = config.height;
-                CountDownLatch latch = new CountDownLatch(1);
-                renderThreadHandler.post(() -> {
-                    try {
-                        eglBase = EglBase.create(sharedContext, EglBase.CONFIG_RECORDABLE);
-                        Log.d(TAG, "EGL context created");
-                        eglBase.createSurface(surface);
-                        eglBase.makeCurrent();
-                        drawer = new GlRectDrawer();
-                        encoderStarted = true;
-                        encoderInitializing = false;
-                        Log.d(TAG, "Encoder surface setup complete: " + surface);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Failed to setup EGL surface: " + e.getMessage());
-                    } finally {
-                        latch.countDown();
-                    }
-                });
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    Log.e(TAG, "Interrupted while awaiting EGL setup: " + e.getMessage());
-                }
-                if (encoderStarted) {
-                    return;
+            if (startEncoderWith(config, codecInfo)) {
+                if (configCache != null && encoderStarted) {
+                    configCache.put(cacheKey, config);
                 }
+                return;
             }
         }
 
         Log.e(TAG, "Failed to configure and start encoder with any supported configuration.");
     }
+
+    /**
+     * Configures and starts the encoder and its input surface. Returns false if this
+     * configuration doesn't work, true if it does or the renderer was released meanwhile.
+     */
+    private boolean startEncoderWith(EncoderConfig config, @Nullable MediaCodecInfo codecInfo) {
+        if (!tryConfigureEncoder(config, codecInfo) || !startEncoder()) {
+            return false;
+        }
+        outputFileWidth = config.width;
+        outputFileHeight = config.height;
+        CountDownLatch latch = new CountDownLatch(1);
+        boolean posted = renderThreadHandler.post(() -> {
+            try {
+                eglBase = EglBase.create(sharedContext, EglBase.CONFIG_RECORDABLE);
+                Log.d(TAG, "EGL context created");
+                eglBase.createSurface(surface);
+                eglBase.makeCurrent();
+                drawer = new GlRectDrawer();
+                encoderStarted = true;
+                encoderInitializing = false;
+                Log.d(TAG, "Encoder surface setup complete: " + surface);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to setup EGL surface: " + e.getMessage());
+                if (eglBase != null) {
+                    eglBase.release();
+                    eglBase = null;
+                }
+            } finally {
+                latch.countDown();
+            }
+        });
+        if (!posted) {
+            // released while the encoder was being probed
+            return true;
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.e(TAG, "Interrupted while awaiting EGL setup: " + e.getMessage());
+            // the render thread may still be using the surface, release() cleans up
+            return encoderStarted;
+        }
+        if (!encoderStarted) {
+            // the encoder is running, stop it before trying the next configuration
+            try {
+                encoder.stop();
+            } catch (Exception ignored) {
+            }
+            encoder.release();
+            encoder = null;
+            surface.release();
+            surface = null;
+        }
+        return encoderStarted;
+    }
+
+    /** The encoder createEncoderByType picks, looked up without instantiating it. */
+    @Nullable
+    private static MediaCodecInfo findEncoderInfo(String mimeType) {
+        try {
+            for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                if (!info.isEncoder()) {
+                    continue;
+                }
+                for (String type : info.getSupportedTypes()) {
+                    if (type.equalsIgnoreCase(mimeType)) {
+                        return info;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to get codec info: " + e.getMessage());
+        }
+        return null;
+    }
     @Override
     public void onFrame(VideoFrame frame) {
-        frame.retain();
         if (outputFileWidth == -1 && !encoderInitializing) {
             encoderInitializing = true;
             int frameWidth = frame.getRotatedWidth();
             int frameHeight = frame.getRotatedHeight();
-            initVideoEncoder(frameWidth, frameHeight);
+            // Probing encoder configurations can take a while, keep it off the frame delivery
+            // thread. Frames that arrive before the encoder surface is ready are dropped.
+            codecThreadHandler.post(() -> initVideoEncoder(frameWidth, frameHeight));
+            return;
         }
+        frame.retain();
         renderThreadHandler.post(() -> renderFrameOnRenderThread(frame));
     }
 
     private void renderFrameOnRenderThread(VideoFrame frame) {
-        if (drawer == null) {
-            Log.e(TAG, "drawer is null — skipping frame render");
+        if (drawer == null || !isRunning) {
             frame.release();
             return;
         }
@@ -307,7 +383,7 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
         }
         frameDrawer.drawFrame(frame, drawer, null, 0, 0, outputFileWidth, outputFileHeight);
         frame.release();
-        drainEncoder();
+        // Encoded output is delivered to encoderCallback on the codec thread.
         eglBase.swapBuffers();
     }
 
@@ -334,20 +410,19 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
 
         renderThreadHandler.post(() -> {
             try {
-                if (encoder != null) {
-                    encoder.stop();
-                    encoder.release();
+                if (encoderStarted) {
+                    encoder.signalEndOfInputStream();
+                } else {
+                    encoderEndOfStream.countDown();
                 }
                 if (eglBase != null) {
                     eglBase.release();
                     eglBase = null;
                 }
-                if (muxerStarted) {
-                    mediaMuxer.stop();
-                    mediaMuxer.release();
-                    muxerStarted = false;
-                }
                 renderThread.quit();
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to signal end of stream: " + e.getMessage());
+                encoderEndOfStream.countDown();
             } finally {
                 latch.countDown();
             }
@@ -355,72 +430,126 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
 
         try {
             latch.await();
+            // let the encoder hand its last samples to the muxer
+            if (!encoderEndOfStream.await(2, TimeUnit.SECONDS)) {
+                Log.w(TAG, "Timed out waiting for the encoder to drain");
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Release interrupted", e);
+            Thread.currentThread().interrupt();
+        }
+
+        CountDownLatch codecLatch = new CountDownLatch(1);
+        codecThreadHandler.post(() -> {
+            try {
+                if (encoder != null) {
+                    encoder.stop();
+                    encoder.release();
+                    encoder = null;
+                }
+                if (surface != null) {
+                    surface.release();
+                    surface = null;
+                }
+                synchronized (mediaMuxer) {
+                    if (muxerStarted) {
+                        mediaMuxer.stop();
+                        muxerStarted = false;
+                    }
+                    mediaMuxer.release();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to release encoder: " + e.getMessage());
+            } finally {
+                codecThread.quit();
+                codecLatch.countDown();
+            }
+        });
+        try {
+            codecLatch.await();
         } catch (InterruptedException e) {
             Log.e(TAG, "Release interrupted", e);
             Thread.currentThread().interrupt();
         }
     }
     // End Signify modification
-    private boolean encoderInitializing = false;
-    private boolean encoderStarted = false;
+    // set on the render thread, read on the probing and frame threads
+    private volatile boolean encoderInitializing = false;
+    private volatile boolean encoderStarted = false;
     private volatile boolean muxerStarted = false;
     private long videoFrameStart = 0;
 
-    private void drainEncoder() {
-        while (true) {
-            int encoderStatus = encoder.dequeueOutputBuffer(bufferInfo, 10000);
-            if (encoderStatus == MediaCodec.INFO_TRY_AGAIN_LATER) {
-                break;
-            } else if (encoderStatus == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
-                // not expected for an encoder
-                encoderOutputBuffers = encoder.getOutputBuffers();
-                Log.e(TAG, "encoder output buffers changed");
-            } else if (encoderStatus == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-                // not expected for an encoder
-                MediaFormat newFormat = encoder.getOutputFormat();
+    private final MediaCodec.Callback encoderCallback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(MediaCodec codec, int index) {
+            // input comes from the surface
+        }
 
-                Log.e(TAG, "encoder output format changed: " + newFormat);
-                trackIndex = mediaMuxer.addTrack(newFormat);
+        @Override
+        public void onOutputBufferAvailable(MediaCodec codec, int index, MediaCodec.BufferInfo info) {
+            try {
+                ByteBuffer encodedData = codec.getOutputBuffer(index);
+                if (encodedData == null) {
+                    Log.e(TAG, "encoderOutputBuffer " + index + " was null");
+                    return;
+                }
+                boolean endOfStream = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                if (info.size > 0) {
+                    // It's usually necessary to adjust the ByteBuffer values to match BufferInfo.
+                    encodedData.position(info.offset);
+                    encodedData.limit(info.offset + info.size);
+                    if (videoFrameStart == 0 && info.presentationTimeUs != 0) {
+                        videoFrameStart = info.presentationTimeUs;
+                    }
+                    info.presentationTimeUs -= videoFrameStart;
+                    synchronized (mediaMuxer) {
+                        if (muxerStarted)
+                            mediaMuxer.writeSampleData(trackIndex, encodedData, info);
+                    }
+                }
+                codec.releaseOutputBuffer(index, false);
+                if (endOfStream) {
+                    encoderEndOfStream.countDown();
+                }
+            } catch (Exception e) {
+                Log.wtf(TAG, e);
+            }
+        }
+
+        @Override
+        public void onError(MediaCodec codec, MediaCodec.CodecException e) {
+            Log.e(TAG, "video encoder error: " + e.getDiagnosticInfo(), e);
+            encoderEndOfStream.countDown();
+        }
+
+        @Override
+        public void onOutputFormatChanged(MediaCodec codec, MediaFormat format) {
+            Log.i(TAG, "encoder output format changed: " + format);
+            synchronized (mediaMuxer) {
+                trackIndex = mediaMuxer.addTrack(format);
                 // Start Signify modification
                 if (trackIndex != -1 && audioTrackIndex != -1 && !muxerStarted) {
                 // End Signify modification
                     mediaMuxer.start();
                     muxerStarted = true;
                 }
-                if (!muxerStarted)
-                    break;
-            } else if (encoderStatus < 0) {
-                Log.e(TAG, "unexpected result fr om encoder.dequeueOutputBuffer: " + encoderStatus);
-            } else { // encoderStatus >= 0
-                try {
-                    ByteBuffer encodedData = encoderOutputBuffers[encoderStatus];
-                    if (encodedData == null) {
-                        Log.e(TAG, "encoderOutputBuffer " + encoderStatus + " was null");
-                        break;
-                    }
-                    // It's usually necessary to adjust the ByteBuffer values to match BufferInfo.
-                    encodedData.position(bufferInfo.offset);
-                    encodedData.limit(bufferInfo.offset + bufferInfo.size);
-                    if (videoFrameStart == 0 && bufferInfo.presentationTimeUs != 0) {
-                        videoFrameStart = bufferInfo.presentationTimeUs;
-                    }
-                    bufferInfo.presentationTimeUs -= videoFrameStart;
-                    if (muxerStarted)
-                        mediaMuxer.writeSampleData(trackIndex, encodedData, bufferInfo);
-                    isRunning = isRunning && (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0;
-                    encoder.releaseOutputBuffer(encoderStatus, false);
-                    if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                        break;
-                    }
-                } catch (Exception e) {
-                    Log.wtf(TAG, e);
-                    break;
-                }
             }
         }
-    }
+    };
 
-    private long presTime = 0L;
+    // how much audio the ring holds before chunks are dropped
+    private static final int AUDIO_RING_BUFFER_MS = 1000;
+    // set once by the WebRTC audio thread with the first samples
+    private volatile PcmRingBuffer pcmRing;
+    private int audioSampleRate;
+    private int audioBytesPerFrame;
+    private final AtomicBoolean audioFillScheduled = new AtomicBoolean();
+    private final Runnable audioFillTask = () -> {
+        audioFillScheduled.set(false);
+        feedAudio();
+    };
+    // audio thread only
+    private long audioFramesQueued = 0;
 
 
 
@@ -442,12 +571,14 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                 MediaFormat newFormat = audioEncoder.getOutputFormat();
 
                 Log.w(TAG, "encoder output format changed: " + newFormat);
-                audioTrackIndex = mediaMuxer.addTrack(newFormat);
-                // Start Signify modification
-                if (trackIndex != -1 && audioTrackIndex != -1 && !muxerStarted) {
-                // End Signify modification
-                    mediaMuxer.start();
-                    muxerStarted = true;
+                synchronized (mediaMuxer) {
+                    audioTrackIndex = mediaMuxer.addTrack(newFormat);
+                    // Start Signify modification
+                    if (trackIndex != -1 && audioTrackIndex != -1 && !muxerStarted) {
+                    // End Signify modification
+                        mediaMuxer.start();
+                        muxerStarted = true;
+                    }
                 }
                 if (!muxerStarted)
                     break;
@@ -466,8 +597,10 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                     encodedData.position(audioBufferInfo.offset);
                     encodedData.limit(audioBufferInfo.offset + audioBufferInfo.size);
 
-                    if (muxerStarted)
-                        mediaMuxer.writeSampleData(audioTrackIndex, encodedData, audioBufferInfo);
+                    synchronized (mediaMuxer) {
+                        if (muxerStarted)
+                            mediaMuxer.writeSampleData(audioTrackIndex, encodedData, audioBufferInfo);
+                    }
 
                     isRunning = isRunning && (audioBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0;
                     audioEncoder.releaseOutputBuffer(encoderStatus, false);
@@ -484,38 +617,77 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
         }
     }
 
+    /**
+     * Copies the samples into pcmRing before returning: the interceptor may reuse the
+     * AudioSamples and its array for later chunks (see MixedAudioSamplesInterceptor).
+     */
     @Override
     public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples audioSamples) {
         if (!isRunning)
             return;
-        audioThreadHandler.post(() -> {
-            if (audioEncoder == null) try {
-                audioEncoder = MediaCodec.createEncoderByType("audio/mp4a-latm");
-                MediaFormat format = new MediaFormat();
-                format.setString(MediaFormat.KEY_MIME, "audio/mp4a-latm");
-                format.setInteger(MediaFormat.KEY_CHANNEL_COUNT, audioSamples.getChannelCount());
-                format.setInteger(MediaFormat.KEY_SAMPLE_RATE, audioSamples.getSampleRate());
-                format.setInteger(MediaFormat.KEY_BIT_RATE, 64 * 1024);
+        PcmRingBuffer ring = pcmRing;
+        if (ring == null) {
+            int channelCount = audioSamples.getChannelCount();
+            int sampleRate = audioSamples.getSampleRate();
+            int audioFormat = audioSamples.getAudioFormat();
+            audioBytesPerFrame = AudioFileRenderer.bytesPerSample(audioFormat) * channelCount;
+            audioSampleRate = sampleRate;
+            ring = new PcmRingBuffer(sampleRate * AUDIO_RING_BUFFER_MS / 1000 * audioBytesPerFrame);
+            pcmRing = ring;
+            audioThreadHandler.post(() -> startAudioEncoder(channelCount, sampleRate, audioFormat));
+        }
+        byte[] data = audioSamples.getData();
+        ring.write(data, 0, data.length);
+        if (audioFillScheduled.compareAndSet(false, true)) {
+            audioThreadHandler.post(audioFillTask);
+        }
+    }
+
+    private void startAudioEncoder(int channelCount, int sampleRate, int audioFormat) {
+        try {
+            String audioMimeType = profile.audioMimeType();
+            audioEncoder = MediaCodec.createEncoderByType(audioMimeType);
+            MediaFormat format = new MediaFormat();
+            format.setString(MediaFormat.KEY_MIME, audioMimeType);
+            format.setInteger(MediaFormat.KEY_CHANNEL_COUNT, channelCount);
+            format.setInteger(MediaFormat.KEY_SAMPLE_RATE, sampleRate);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, profile.audioBitrate(64 * 1024));
+            if (MediaFormat.MIMETYPE_AUDIO_AAC.equals(audioMimeType)) {
                 format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
-                audioEncoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
-                audioEncoder.start();
-                audioInputBuffers = audioEncoder.getInputBuffers();
-                audioOutputBuffers = audioEncoder.getOutputBuffers();
-            } catch (IOException exception) {
-                Log.wtf(TAG, exception);
             }
+            if (audioFormat != AudioFormat.ENCODING_PCM_16BIT && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                format.setInteger(MediaFormat.KEY_PCM_ENCODING, audioFormat);
+            }
+            audioEncoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            audioEncoder.start();
+            audioInputBuffers = audioEncoder.getInputBuffers();
+            audioOutputBuffers = audioEncoder.getOutputBuffers();
+        } catch (IOException exception) {
+            Log.wtf(TAG, exception);
+            audioEncoder = null;
+        }
+    }
 
+    /** Moves the PCM in pcmRing into the encoder's free input buffers, whole frames only. */
+    private void feedAudio() {
+        PcmRingBuffer ring = pcmRing;
+        if (audioEncoder == null || ring == null)
+            return;
+        while (ring.available() >= audioBytesPerFrame) {
             int bufferIndex = audioEncoder.dequeueInputBuffer(0);
-            if (bufferIndex >= 0) {
-                ByteBuffer buffer = audioInputBuffers[bufferIndex];
-                buffer.clear();
-                byte[] data = audioSamples.getData();
-                buffer.put(data);
-                audioEncoder.queueInputBuffer(bufferIndex, 0, data.length, presTime, 0);
-                presTime += data.length * 125 / 12; // 1000000 microseconds / 48000hz / 2 bytes
+            if (bufferIndex < 0) {
+                // the rest stays in the ring for the next chunk
+                break;
             }
-            drainAudio();
-        });
+            ByteBuffer buffer = audioInputBuffers[bufferIndex];
+            buffer.clear();
+            int length = Math.min(ring.available(), buffer.remaining()) / audioBytesPerFrame * audioBytesPerFrame;
+            ring.read(buffer, length);
+            audioEncoder.queueInputBuffer(bufferIndex, 0, length,
+                    audioFramesQueued * 1000000L / audioSampleRate, 0);
+            audioFramesQueued += length / audioBytesPerFrame;
+        }
+        drainAudio();
     }
 
 }
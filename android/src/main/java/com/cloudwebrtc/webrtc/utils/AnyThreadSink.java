@@ -2,12 +2,53 @@ package com.cloudwebrtc.webrtc.utils;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.flutter.plugin.common.EventChannel;
 
+/**
+ * EventSink that can be called from any thread. Events from other threads are queued in a
+ * lock-free queue and delivered in order by a single main-thread pass per wakeup, so a burst
+ * of events costs one looper message instead of one per event.
+ */
 public final class AnyThreadSink implements EventChannel.EventSink {
+    // a drain pass yields back to the looper after this long so it can't stall a frame
+    private static final long DRAIN_BUDGET_NS = 4_000_000L;
+
+    private static final Object END_OF_STREAM = new Object();
+
+    private static final class ErrorEvent {
+        final String code;
+        final String message;
+        final Object details;
+
+        ErrorEvent(String code, String message, Object details) {
+            this.code = code;
+            this.message = message;
+            this.details = details;
+        }
+    }
+
+    // process-wide metrics over all sinks
+    private static final AtomicLong eventsDelivered = new AtomicLong();
+    private static final AtomicLong drains = new AtomicLong();
+    private static final AtomicLong totalDrainNs = new AtomicLong();
+    private static final AtomicLong maxDrainNs = new AtomicLong();
+    private static final AtomicInteger maxQueueDepth = new AtomicInteger();
+
     final private EventChannel.EventSink eventSink;
     final private Handler handler = new Handler(Looper.getMainLooper());
+    final private ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+    final private AtomicInteger depth = new AtomicInteger();
+    final private AtomicBoolean scheduled = new AtomicBoolean();
+    final private Runnable drainTask = this::drain;
 
     public AnyThreadSink(EventChannel.EventSink eventSink) {
         this.eventSink = eventSink;
@@ -15,24 +56,98 @@ public final class AnyThreadSink implements EventChannel.EventSink {
 
     @Override
     public void success(Object o) {
-        post(()->eventSink.success(o));
+        enqueue(o);
     }
 
     @Override
     public void error(String s, String s1, Object o) {
-        post(()->eventSink.error(s, s1, o));
+        enqueue(new ErrorEvent(s, s1, o));
     }
 
     @Override
     public void endOfStream() {
-        post(eventSink::endOfStream);
+        enqueue(END_OF_STREAM);
+    }
+
+    private void enqueue(Object event) {
+        queue.offer(event);
+        int d = depth.incrementAndGet();
+        updateMax(maxQueueDepth, d);
+        if (Looper.getMainLooper() == Looper.myLooper()) {
+            // deliver synchronously, after anything queued by other threads
+            drain();
+        } else if (scheduled.compareAndSet(false, true)) {
+            handler.post(drainTask);
+        }
     }
 
-    private void post(Runnable r) {
-        if(Looper.getMainLooper() == Looper.myLooper()){
-            r.run();
-        }else{
-            handler.post(r);
+    private void drain() {
+        scheduled.set(false);
+        long start = SystemClock.elapsedRealtimeNanos();
+        long now = start;
+        Object event;
+        int delivered = 0;
+        while ((event = queue.poll()) != null) {
+            depth.decrementAndGet();
+            deliver(event);
+            delivered++;
+            now = SystemClock.elapsedRealtimeNanos();
+            if (now - start > DRAIN_BUDGET_NS) {
+                if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                    handler.post(drainTask);
+                }
+                break;
+            }
+        }
+        if (delivered > 0) {
+            long elapsed = now - start;
+            eventsDelivered.addAndGet(delivered);
+            drains.incrementAndGet();
+            totalDrainNs.addAndGet(elapsed);
+            updateMax(maxDrainNs, elapsed);
         }
     }
+
+    private void deliver(Object event) {
+        if (event == END_OF_STREAM) {
+            eventSink.endOfStream();
+        } else if (event instanceof ErrorEvent) {
+            ErrorEvent e = (ErrorEvent) event;
+            eventSink.error(e.code, e.message, e.details);
+        } else {
+            eventSink.success(event);
+        }
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    public static Map<String, Object> getMetrics() {
+        long drainCount = drains.get();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("eventsDelivered", eventsDelivered.get());
+        metrics.put("drains", drainCount);
+        metrics.put("maxQueueDepth", maxQueueDepth.get());
+        metrics.put("avgEventsPerDrain", drainCount > 0 ? (double) eventsDelivered.get() / drainCount : 0.0);
+        metrics.put("avgDrainUs", drainCount > 0 ? totalDrainNs.get() / 1000.0 / drainCount : 0.0);
+        metrics.put("maxDrainUs", maxDrainNs.get() / 1000.0);
+        return metrics;
+    }
+
+    public static void resetMetrics() {
+        eventsDelivered.set(0);
+        drains.set(0);
+        totalDrainNs.set(0);
+        maxDrainNs.set(0);
+        maxQueueDepth.set(0);
+    }
 }
@@ -0,0 +1,56 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds event and result payloads directly into the map handed to the codec.
+ *
+ * Unlike ConstraintsMap the backing map is presized for the number of entries the caller
+ * expects, so building an event never rehashes and no wrapper has to be unwrapped with
+ * toMap() when it is nested into another payload.
+ */
+public final class MapBuilder {
+
+    private final HashMap<String, Object> map;
+
+    private MapBuilder(int expectedSize) {
+        map = newMap(expectedSize);
+    }
+
+    /** A builder for {@code size} entries. */
+    public static MapBuilder of(int size) {
+        return new MapBuilder(size);
+    }
+
+    /** A builder for an event named {@code event} followed by {@code fields} more entries. */
+    public static MapBuilder event(String event, int fields) {
+        MapBuilder builder = new MapBuilder(fields + 1);
+        builder.map.put("event", event);
+        return builder;
+    }
+
+    /** A HashMap that holds {@code expectedSize} entries without resizing. */
+    public static HashMap<String, Object> newMap(int expectedSize) {
+        return new HashMap<>(capacityFor(expectedSize));
+    }
+
+    public static ArrayList<Object> newList(int expectedSize) {
+        return new ArrayList<>(expectedSize);
+    }
+
+    static int capacityFor(int expectedSize) {
+        // HashMap resizes once size exceeds capacity * 0.75
+        return (int) (expectedSize / 0.75f) + 1;
+    }
+
+    public MapBuilder put(String key, Object value) {
+        map.put(key, value);
+        return this;
+    }
+
+    public Map<String, Object> build() {
+        return map;
+    }
+}
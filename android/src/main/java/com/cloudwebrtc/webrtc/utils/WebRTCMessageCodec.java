@@ -0,0 +1,119 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+import io.flutter.plugin.common.StandardMethodCodec;
+
+/**
+ * StandardMessageCodec with two extra value types for the plugin's own channels:
+ * strings from a fixed dictionary (event names, map keys, states, stats member names) are
+ * sent as a one-byte token, and integers in [0, 255] as a single byte.
+ *
+ * The dictionary must stay identical to the one in lib/src/native/webrtc_message_codec.dart;
+ * only ever append to it.
+ */
+public class WebRTCMessageCodec extends StandardMessageCodec {
+    public static final WebRTCMessageCodec INSTANCE = new WebRTCMessageCodec();
+    public static final StandardMethodCodec METHOD_CODEC = new StandardMethodCodec(INSTANCE);
+
+    private static final byte INTERNED_STRING = (byte) 128;
+    private static final byte SMALL_INT = (byte) 129;
+
+    private static final String[] DICTIONARY = {
+            "event", "id", "state", "type", "data", "label", "kind", "enabled", "readyState",
+            "remote", "local", "streamId", "ownerTag", "trackId", "track", "streams", "receiver",
+            "sender", "transceiver", "transceiverId", "receiverId", "senderId", "peerConnectionId",
+            "candidate", "candidates", "sdpMid", "sdpMLineIndex", "sdp", "reason",
+            "lastDataReceivedMs", "audioTracks", "videoTracks", "flutterId", "bufferedAmount",
+            "changedAmount", "mid", "direction", "rtpParameters", "dtmfSender", "ownsTrack",
+            "textureId", "stats", "timestamp", "values", "value", "threshold", "ruleId", "metric",
+            "audio", "video", "width", "height", "onCandidate", "onCandidates",
+            "onSelectedCandidatePairChanged", "iceConnectionState", "iceGatheringState",
+            "signalingState", "peerConnectionState", "onAddStream", "onRemoveStream", "onAddTrack",
+            "onRemoveTrack", "onTrack", "onRenegotiationNeeded", "didOpenDataChannel",
+            "dataChannelStateChanged", "dataChannelReceiveMessage",
+            "dataChannelBufferedAmountChange", "didTextureChangeRotation",
+            "didTextureChangeVideoSize", "didFirstFrameRendered", "onDeviceChange", "onLogData",
+            "onStatsAlert", "frameCryptionStateChanged", "new", "checking", "connected",
+            "completed", "failed", "disconnected", "closed", "gathering", "complete", "stable",
+            "have-local-offer", "have-remote-offer", "have-local-pranswer", "have-remote-pranswer",
+            "connecting", "open", "closing", "binary", "text", "live", "ended", "fired", "cleared",
+            "offer", "answer", "codec", "inbound-rtp", "outbound-rtp", "remote-inbound-rtp",
+            "remote-outbound-rtp", "media-source", "media-playout", "peer-connection",
+            "data-channel", "transport", "candidate-pair", "local-candidate", "remote-candidate",
+            "certificate", "transportId", "codecId", "ssrc", "mediaSourceId", "trackIdentifier",
+            "packetsSent", "bytesSent", "headerBytesSent", "packetsReceived", "bytesReceived",
+            "headerBytesReceived", "packetsLost", "jitter", "framesPerSecond", "frameWidth",
+            "frameHeight", "framesEncoded", "framesDecoded", "framesReceived", "framesDropped",
+            "framesSent", "keyFramesEncoded", "keyFramesDecoded", "totalEncodeTime",
+            "totalDecodeTime", "qpSum", "nackCount", "pliCount", "firCount", "totalRoundTripTime",
+            "roundTripTime", "roundTripTimeMeasurements", "fractionLost", "localId", "remoteId",
+            "remoteTimestamp", "reportsSent", "targetBitrate", "retransmittedPacketsSent",
+            "retransmittedBytesSent", "qualityLimitationReason", "qualityLimitationDurations",
+            "qualityLimitationResolutionChanges", "encoderImplementation", "decoderImplementation",
+            "powerEfficientEncoder", "powerEfficientDecoder", "scalabilityMode", "rid",
+            "audioLevel", "totalAudioEnergy", "totalSamplesDuration", "totalSamplesReceived",
+            "concealedSamples", "silentConcealedSamples", "concealmentEvents", "jitterBufferDelay",
+            "jitterBufferTargetDelay", "jitterBufferEmittedCount", "jitterBufferMinimumDelay",
+            "lastPacketReceivedTimestamp", "lastPacketSentTimestamp", "freezeCount",
+            "totalFreezesDuration", "pauseCount", "totalPausesDuration", "totalInterFrameDelay",
+            "totalSquaredInterFrameDelay", "playoutId", "mimeType", "payloadType", "clockRate",
+            "channels", "sdpFmtpLine", "localCandidateId", "remoteCandidateId", "nominated",
+            "writable", "priority", "requestsSent", "requestsReceived", "responsesSent",
+            "responsesReceived", "consentRequestsSent", "currentRoundTripTime",
+            "availableOutgoingBitrate", "availableIncomingBitrate", "selectedCandidatePairId",
+            "selectedCandidatePairChanges", "dtlsState", "dtlsRole", "iceState", "iceRole",
+            "tlsVersion", "srtpCipher", "dtlsCipher", "localCertificateId", "remoteCertificateId",
+            "address", "port", "protocol", "candidateType", "relayProtocol", "networkType",
+            "isRemote", "dataChannelsOpened", "dataChannelsClosed", "frames",
+            "packetsDiscardedOnSend", "bytesDiscardedOnSend", "totalProcessingDelay",
+            "totalPacketSendDelay", "hugeFramesSent", "packetsDiscarded", "fecPacketsReceived",
+            "fecPacketsDiscarded", "insertedSamplesForDeceleration",
+            "removedSamplesForAcceleration", "host", "srflx", "prflx", "relay", "udp", "tcp",
+            "succeeded", "in-progress", "waiting", "frozen", "none", "cpu", "bandwidth", "other"
+    };
+
+    private static final Map<String, Integer> TOKENS = new HashMap<>(DICTIONARY.length * 2);
+
+    static {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            TOKENS.put(DICTIONARY[i], i);
+        }
+    }
+
+    @Override
+    protected void writeValue(ByteArrayOutputStream stream, Object value) {
+        if (value instanceof String) {
+            Integer token = TOKENS.get(value);
+            if (token != null) {
+                stream.write(INTERNED_STRING);
+                stream.write(token);
+                return;
+            }
+        } else if (value instanceof Integer || value instanceof Long) {
+            long v = ((Number) value).longValue();
+            if (v >= 0 && v <= 0xff) {
+                stream.write(SMALL_INT);
+                stream.write((int) v);
+                return;
+            }
+        }
+        super.writeValue(stream, value);
+    }
+
+    @Override
+    protected Object readValueOfType(byte type, ByteBuffer buffer) {
+        switch (type) {
+            case INTERNED_STRING:
+                return DICTIONARY[buffer.get() & 0xff];
+            case SMALL_INT:
+                return buffer.get() & 0xff;
+            default:
+                return super.readValueOfType(type, buffer);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named worker pools shared by the plugin, so background work doesn't each spin up its own
+ * executor and can be observed in one place.
+ *
+ *  IO        - file writes, recorder release, stats export
+ *  COMPUTE   - conversions and encoding
+ *  SIGNALING - single thread, runs tasks in submission order
+ *  CAPTURE   - single thread, getUserMedia's capturer setup, which waits for the first frame
+ *
+ * Once IO or COMPUTE has callerRunsDepth tasks queued, a submitting worker thread runs the
+ * task itself, which applies backpressure instead of dropping work. The main thread never
+ * does, so blocking work can't end up on it, and neither do the single thread pools, whose
+ * tasks always run in submission order.
+ */
+public final class WorkerPool implements Executor {
+
+    public static final WorkerPool IO = new WorkerPool("io", 2, 64);
+    public static final WorkerPool COMPUTE = new WorkerPool("compute",
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)), 32);
+    public static final WorkerPool SIGNALING = new WorkerPool("signaling", 1, 0);
+    public static final WorkerPool CAPTURE = new WorkerPool("capture", 1, 0);
+
+    private static final WorkerPool[] ALL = {IO, COMPUTE, SIGNALING, CAPTURE};
+
+    private final String name;
+    // 0: never run tasks on the caller
+    private final int callerRunsDepth;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong totalWaitNs = new AtomicLong();
+    private final AtomicLong maxWaitNs = new AtomicLong();
+    private final AtomicLong totalRunNs = new AtomicLong();
+    private final AtomicLong maxRunNs = new AtomicLong();
+
+    private WorkerPool(String name, int threads, int callerRunsDepth) {
+        this.name = name;
+        this.callerRunsDepth = callerRunsDepth;
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory factory = r -> new Thread(r, "WebRTC-" + name + "-" + threadCount.incrementAndGet());
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        submitted.incrementAndGet();
+        final long queuedAt = SystemClock.elapsedRealtimeNanos();
+        Runnable measured = () -> {
+            long start = SystemClock.elapsedRealtimeNanos();
+            record(totalWaitNs, maxWaitNs, start - queuedAt);
+            try {
+                task.run();
+            } finally {
+                record(totalRunNs, maxRunNs, SystemClock.elapsedRealtimeNanos() - start);
+                completed.incrementAndGet();
+            }
+        };
+        if (callerRunsDepth > 0 && executor.getQueue().size() >= callerRunsDepth
+                && Looper.myLooper() != Looper.getMainLooper()) {
+            callerRuns.incrementAndGet();
+            measured.run();
+            return;
+        }
+        executor.execute(measured);
+        int depth = executor.getQueue().size();
+        int current;
+        while (depth > (current = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(current, depth)) {
+        }
+    }
+
+    private static void record(AtomicLong total, AtomicLong max, long value) {
+        total.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    private Map<String, Object> metrics() {
+        long done = completed.get();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("threads", executor.getMaximumPoolSize());
+        metrics.put("active", executor.getActiveCount());
+        metrics.put("queueDepth", executor.getQueue().size());
+        metrics.put("maxQueueDepth", maxQueueDepth.get());
+        metrics.put("submitted", submitted.get());
+        metrics.put("completed", done);
+        metrics.put("callerRuns", callerRuns.get());
+        metrics.put("avgWaitUs", done > 0 ? totalWaitNs.get() / 1000.0 / done : 0.0);
+        metrics.put("maxWaitUs", maxWaitNs.get() / 1000.0);
+        metrics.put("avgRunUs", done > 0 ? totalRunNs.get() / 1000.0 / done : 0.0);
+        metrics.put("maxRunUs", maxRunNs.get() / 1000.0);
+        return metrics;
+    }
+
+    private void reset() {
+        submitted.set(0);
+        completed.set(0);
+        callerRuns.set(0);
+        maxQueueDepth.set(0);
+        totalWaitNs.set(0);
+        maxWaitNs.set(0);
+        totalRunNs.set(0);
+        maxRunNs.set(0);
+    }
+
+    /** Metrics of every pool, keyed by pool name. */
+    public static Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        for (WorkerPool pool : ALL) {
+            metrics.put(pool.name, pool.metrics());
+        }
+        return metrics;
+    }
+
+    public static void resetMetrics() {
+        for (WorkerPool pool : ALL) {
+            pool.reset();
+        }
+    }
+}
@@ -2,7 +2,10 @@ package org.webrtc.video;
 
 import androidx.annotation.Nullable;
 
+import com.cloudwebrtc.webrtc.record.EncodedFrameTap;
+
 import org.webrtc.EglBase;
+import org.webrtc.HardwareVideoDecoderFactory;
 import org.webrtc.SoftwareVideoDecoderFactory;
 import org.webrtc.VideoCodecInfo;
 import org.webrtc.VideoDecoder;
@@ -15,12 +18,15 @@ import java.util.List;
 public class CustomVideoDecoderFactory implements VideoDecoderFactory {
     private SoftwareVideoDecoderFactory softwareVideoDecoderFactory = new SoftwareVideoDecoderFactory();
     private WrappedVideoDecoderFactory wrappedVideoDecoderFactory;
+    private HardwareVideoDecoderFactory hardwareVideoDecoderFactory;
     private boolean forceSWCodec  = false;
+    private boolean encodedFrameTap = false;
 
     private List<String> forceSWCodecs = new ArrayList<>();
 
     public  CustomVideoDecoderFactory(EglBase.Context sharedContext) {
         this.wrappedVideoDecoderFactory = new WrappedVideoDecoderFactory(sharedContext);
+        this.hardwareVideoDecoderFactory = new HardwareVideoDecoderFactory(sharedContext);
     }
 
     public void setForceSWCodec(boolean forceSWCodec) {
@@ -31,6 +37,14 @@ public class CustomVideoDecoderFactory implements VideoDecoderFactory {
         this.forceSWCodecs = forceSWCodecs;
     }
 
+    /**
+     * Wraps hardware decoders in an EncodedFrameTap so received streams can be recorded
+     * without re-encoding. Tapped streams lose the software decoder fallback.
+     */
+    public void setEncodedFrameTap(boolean encodedFrameTap) {
+        this.encodedFrameTap = encodedFrameTap;
+    }
+
     @Nullable
     @Override
     public VideoDecoder createDecoder(VideoCodecInfo videoCodecInfo) {
@@ -42,6 +56,12 @@ public class CustomVideoDecoderFactory implements VideoDecoderFactory {
                 return softwareVideoDecoderFactory.createDecoder(videoCodecInfo);
             }
         }
+        if(encodedFrameTap) {
+            VideoDecoder decoder = hardwareVideoDecoderFactory.createDecoder(videoCodecInfo);
+            if(decoder != null) {
+                return new EncodedFrameTap(decoder, videoCodecInfo.name);
+            }
+        }
         return wrappedVideoDecoderFactory.createDecoder(videoCodecInfo);
     }
 
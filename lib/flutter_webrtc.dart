@@ -23,3 +23,6 @@ export 'src/native/android/audio_configuration.dart';
 export 'src/native/ios/audio_configuration.dart';
 export 'src/native/rtc_video_platform_view_controller.dart';
 export 'src/native/rtc_video_platform_view.dart';
+export 'src/native/stats_alert.dart';
+export 'src/native/recording_profile.dart';
+export 'src/native/captured_frame.dart';
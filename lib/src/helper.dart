@@ -5,6 +5,10 @@ import 'package:flutter/foundation.dart';
 import 'package:logger/logger.dart';
 
 import '../flutter_webrtc.dart';
+import 'native/event_channel.dart';
+import 'native/media_stream_track_impl.dart';
+import 'native/rtc_peerconnection_impl.dart';
+import 'native/stats_alert.dart';
 import 'native_logs_listener.dart';
 
 class Helper {
@@ -80,6 +84,15 @@ class Helper {
     return Future.value(true);
   }
 
+  /// Saves the next frame of [videoTrack] in [format], upright. Conversion
+  /// and compression run off the frame delivery thread.
+  /// for Android only
+  static Future<CapturedFrame> captureFrame(
+          MediaStreamTrack videoTrack, CapturedFrameFormat format,
+          {int quality = 100}) =>
+      (videoTrack as MediaStreamTrackNative)
+          .captureFrameAs(format, quality: quality);
+
   static Future<void> setZoom(MediaStreamTrack videoTrack, double zoomLevel) =>
       CameraUtils.setZoom(videoTrack, zoomLevel);
 
@@ -191,4 +204,246 @@ class Helper {
       throw Exception('requestCapturePermission only support for Android');
     }
   }
+
+  /// Collect stats for several peer connections with a single platform call.
+  ///
+  /// If [peerConnections] is null, stats for every peer connection are
+  /// returned. The result is keyed by peerConnectionId.
+  /// for Android only
+  static Future<Map<String, List<StatsReport>>> getStatsAll(
+      [List<RTCPeerConnection>? peerConnections]) async {
+    if (!WebRTC.platformIsAndroid) {
+      throw Exception('getStatsAll only support for Android');
+    }
+    final response = await WebRTC.invokeMethod(
+      'getStatsAll',
+      <String, dynamic>{
+        'peerConnectionIds': peerConnections
+            ?.map((pc) => (pc as RTCPeerConnectionNative).peerConnectionId)
+            .toList(),
+      },
+    );
+    var result = <String, List<StatsReport>>{};
+    if (response != null) {
+      Map<dynamic, dynamic> stats = response['stats'];
+      stats.forEach((peerConnectionId, reports) {
+        result[peerConnectionId] = (reports as List<dynamic>)
+            .map((report) => StatsReport(report['id'], report['type'],
+                (report['timestamp'] as num).toDouble(), report['values']))
+            .toList();
+      });
+    }
+    return result;
+  }
+
+  /// Start recording a native ring buffer of stats samples for [pc].
+  ///
+  /// [metrics] are "type.member" names, e.g. 'inbound-rtp.packetsLost';
+  /// values of all reports of that type are summed per sample.
+  /// [capacity] samples are kept, taken every [intervalMs].
+  /// for Android only
+  static Future<void> startStatsHistory(
+      RTCPeerConnection pc, List<String> metrics,
+      {int intervalMs = 1000, int capacity = 300}) async {
+    await WebRTC.invokeMethod('startStatsHistory', <String, dynamic>{
+      'peerConnectionId': (pc as RTCPeerConnectionNative).peerConnectionId,
+      'metrics': metrics,
+      'intervalMs': intervalMs,
+      'capacity': capacity,
+    });
+  }
+
+  /// Stop recording stats samples for [pc], the recorded window is kept.
+  static Future<void> stopStatsHistory(RTCPeerConnection pc) =>
+      WebRTC.invokeMethod('stopStatsHistory', <String, dynamic>{
+        'peerConnectionId': (pc as RTCPeerConnectionNative).peerConnectionId,
+      });
+
+  /// Export the recorded stats window of [pc] as a compact binary blob.
+  ///
+  /// If [path] is given the blob is written to that file and null is
+  /// returned.
+  static Future<Uint8List?> exportStatsHistory(RTCPeerConnection pc,
+      {String? path}) async {
+    final response =
+        await WebRTC.invokeMethod('exportStatsHistory', <String, dynamic>{
+      'peerConnectionId': (pc as RTCPeerConnectionNative).peerConnectionId,
+      'path': path,
+    });
+    return response?['data'];
+  }
+
+  /// Evaluate [rules] natively on stats sampled every [intervalMs]; events
+  /// are delivered to [RTCPeerConnectionNative.onStatsAlert] only when a rule
+  /// fires or clears. Pass an empty list to stop.
+  /// for Android only
+  static Future<void> setStatsAlertRules(
+          RTCPeerConnection pc, List<StatsAlertRule> rules,
+          {int intervalMs = 1000}) =>
+      WebRTC.invokeMethod('setStatsAlertRules', <String, dynamic>{
+        'peerConnectionId': (pc as RTCPeerConnectionNative).peerConnectionId,
+        'rules': rules.map((r) => r.toMap()).toList(),
+        'intervalMs': intervalMs,
+      });
+
+  /// Run the native stats conversion benchmark with synthetic reports.
+  ///
+  /// Returns timings (us), allocated bytes per iteration and the encoded
+  /// size of the converted reports.
+  /// for Android only
+  static Future<Map<String, dynamic>> runStatsBenchmark(
+      {int peerConnections = 2,
+      int tracksPerPeerConnection = 4,
+      int candidatesPerPeerConnection = 20,
+      int iterations = 200}) async {
+    final response =
+        await WebRTC.invokeMethod('runStatsBenchmark', <String, dynamic>{
+      'peerConnections': peerConnections,
+      'tracksPerPeerConnection': tracksPerPeerConnection,
+      'candidatesPerPeerConnection': candidatesPerPeerConnection,
+      'iterations': iterations,
+    });
+    return Map<String, dynamic>.from(response);
+  }
+
+  /// Queue depth and main-thread drain time of the native event sinks.
+  /// for Android only
+  static Future<Map<String, dynamic>> getEventSinkMetrics(
+      {bool reset = false}) async {
+    final response = await WebRTC.invokeMethod(
+        'getEventSinkMetrics', <String, dynamic>{'reset': reset});
+    return Map<String, dynamic>.from(response);
+  }
+
+  /// Per-method call counts and reply latency of the native method handlers.
+  /// for Android only
+  static Future<Map<String, dynamic>> getMethodCallMetrics(
+      {bool reset = false}) async {
+    final response = await WebRTC.invokeMethod(
+        'getMethodCallMetrics', <String, dynamic>{'reset': reset});
+    return Map<String, dynamic>.from(response);
+  }
+
+  /// Runs [operations] on the native side in order, each one starting after
+  /// the previous one has completed, and returns all results in one reply.
+  /// Each operation is `{'method': name, 'args': arguments}` using the same
+  /// method names and arguments as the individual calls. Anywhere in the
+  /// arguments, `{'\$ref': index}` stands for the result of the earlier
+  /// operation at index, e.g. createOffer's description passed to
+  /// setLocalDescription. Each result is either `{'result': value}` or
+  /// `{'error': code, 'message': message}`; an operation that doesn't reply
+  /// within [stepTimeout] gets a `timeout` error.
+  /// for Android only
+  static Future<List<Map<String, dynamic>>> batch(
+      List<Map<String, dynamic>> operations,
+      {bool stopOnError = true,
+      Duration stepTimeout = const Duration(seconds: 10)}) async {
+    final response = await WebRTC.invokeMethod('batch', <String, dynamic>{
+      'operations': operations,
+      'stopOnError': stopOnError,
+      'stepTimeoutMs': stepTimeout.inMilliseconds,
+    });
+    return (response['results'] as List<dynamic>)
+        .map((e) => Map<String, dynamic>.from(e))
+        .toList();
+  }
+
+  /// Queue depth, wait and run time of the native io, compute, signaling
+  /// and capture worker pools.
+  /// for Android only
+  static Future<Map<String, dynamic>> getWorkerPoolMetrics(
+      {bool reset = false}) async {
+    final response = await WebRTC.invokeMethod(
+        'getWorkerPoolMetrics', <String, dynamic>{'reset': reset});
+    return Map<String, dynamic>.from(response);
+  }
+
+  /// Configures how native WebRTC log lines are delivered. Lines are
+  /// buffered off the main thread and flushed every [flushIntervalMs] as one
+  /// onLogData event (when [sendEvents]) and/or appended to [filePath],
+  /// which rotates at [maxFileBytes] keeping [maxFiles] files. Each log tag
+  /// is limited to [maxLinesPerSecondPerTag] lines per second (0 disables
+  /// the limit); when [bufferSize] lines are pending the oldest are dropped.
+  /// for Android only
+  static Future<void> configureNativeLogSink(
+      {int flushIntervalMs = 250,
+      int bufferSize = 1024,
+      int maxLinesPerSecondPerTag = 100,
+      bool sendEvents = true,
+      String? filePath,
+      int maxFileBytes = 1024 * 1024,
+      int maxFiles = 3}) async {
+    await WebRTC.invokeMethod('configureLogSink', <String, dynamic>{
+      'flushIntervalMs': flushIntervalMs,
+      'bufferSize': bufferSize,
+      'maxLinesPerSecondPerTag': maxLinesPerSecondPerTag,
+      'sendEvents': sendEvents,
+      'filePath': filePath,
+      'maxFileBytes': maxFileBytes,
+      'maxFiles': maxFiles,
+    });
+  }
+
+  /// Pushes synthetic events of [payloadFields] x [fieldBytes] through the
+  /// native event channel at [eventsPerSecond] for [durationMs] and measures
+  /// what arrives here: delivered events per second and an end-to-end
+  /// latency histogram (bucket upper bounds in ms). Native results such as
+  /// main-thread busy percent are included under 'native'.
+  /// for Android only
+  static Future<Map<String, dynamic>> runEventChannelBenchmark(
+      {int eventsPerSecond = 1000,
+      int durationMs = 3000,
+      int payloadFields = 8,
+      int fieldBytes = 32}) async {
+    const bucketsMs = <int>[1, 2, 4, 8, 16, 32, 64, 128];
+    final histogram = List<int>.filled(bucketsMs.length + 1, 0);
+    final latenciesUs = <int>[];
+    int? firstUs;
+    int? lastUs;
+    final subscription = FlutterWebRTCEventChannel.instance.handleEvents.stream
+        .listen((data) {
+      final event = data['eventChannelBenchmark'];
+      if (event == null) return;
+      final nowUs = DateTime.now().microsecondsSinceEpoch;
+      firstUs ??= nowUs;
+      lastUs = nowUs;
+      final latencyUs = max(0, nowUs - (event['sentUs'] as int));
+      latenciesUs.add(latencyUs);
+      final bucket = bucketsMs.indexWhere((b) => latencyUs < b * 1000);
+      histogram[bucket < 0 ? bucketsMs.length : bucket]++;
+    });
+    try {
+      final response = await WebRTC.invokeMethod(
+          'runEventChannelBenchmark', <String, dynamic>{
+        'eventsPerSecond': eventsPerSecond,
+        'durationMs': durationMs,
+        'payloadFields': payloadFields,
+        'fieldBytes': fieldBytes,
+      });
+      // let events still in flight arrive
+      await Future<void>.delayed(const Duration(milliseconds: 200));
+      latenciesUs.sort();
+      double percentileMs(double p) => latenciesUs.isEmpty
+          ? 0
+          : latenciesUs[min(latenciesUs.length - 1,
+                  (latenciesUs.length * p).floor())] /
+              1000.0;
+      final receiveWindowUs =
+          firstUs != null && lastUs! > firstUs! ? lastUs! - firstUs! : 0;
+      return <String, dynamic>{
+        'received': latenciesUs.length,
+        'deliveredEventsPerSecond': receiveWindowUs > 0
+            ? latenciesUs.length * 1000000 / receiveWindowUs
+            : 0.0,
+        'latencyP50Ms': percentileMs(0.5),
+        'latencyP95Ms': percentileMs(0.95),
+        'latencyP99Ms': percentileMs(0.99),
+        'latencyBucketsMs': bucketsMs,
+        'latencyHistogram': histogram,
+        'native': Map<String, dynamic>.from(response),
+      };
+    } finally {
+      await subscription.cancel();
+    }
+  }
 }
@@ -4,23 +4,38 @@ import 'package:webrtc_interface/webrtc_interface.dart' as rtc;
 
 import '../flutter_webrtc.dart';
 import 'native/media_recorder_impl.dart' show MediaRecorderNative;
+import 'native/recording_profile.dart';
 
 class MediaRecorder extends rtc.MediaRecorder {
   MediaRecorder({
     String? albumName,
+    RecordingProfile? profile,
+    RecordingSegmentation? segmentation,
+    void Function(RecordingSegment segment)? onSegment,
   }) : _delegate = (kIsWeb || kIsWasm)
             ? mediaRecorder()
-            : MediaRecorderNative(albumName: albumName);
+            : MediaRecorderNative(
+                albumName: albumName,
+                profile: profile,
+                segmentation: segmentation,
+                onSegment: onSegment);
 
   final rtc.MediaRecorder _delegate;
 
+  /// [mixedAudio] records the microphone mixed with the remote playback
+  /// instead of [audioChannel], for Android only.
   @override
   Future<void> start(
     String path, {
     MediaStreamTrack? videoTrack,
     RecorderAudioChannel? audioChannel,
     int rotationDegrees = 0,
+    bool mixedAudio = false,
   }) {
+    final delegate = _delegate;
+    if (mixedAudio && delegate is MediaRecorderNative) {
+      return delegate.start(path, videoTrack: videoTrack, mixedAudio: true);
+    }
     return _delegate.start(
       path,
       videoTrack: videoTrack,
@@ -28,6 +43,25 @@ class MediaRecorder extends rtc.MediaRecorder {
     );
   }
 
+  /// Records several video tracks as one grid video, see
+  /// [MediaRecorderNative.startComposite].
+  /// for Android only
+  Future<void> startComposite(
+    String path, {
+    required List<MediaStreamTrack> videoTracks,
+    RecorderAudioChannel? audioChannel,
+    bool mixedAudio = false,
+  }) {
+    final delegate = _delegate;
+    if (delegate is! MediaRecorderNative) {
+      throw 'It\'s for native platforms only';
+    }
+    return delegate.startComposite(path,
+        videoTracks: videoTracks,
+        audioChannel: audioChannel,
+        mixedAudio: mixedAudio);
+  }
+
   @override
   Future stop() => _delegate.stop();
 
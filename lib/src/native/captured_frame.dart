@@ -0,0 +1,16 @@
+import 'dart:typed_data';
+
+/// Image format for [Helper.captureFrame]. [raw] is the frame as packed
+/// I420: a full size Y plane followed by quarter size U and V planes.
+enum CapturedFrameFormat { jpeg, png, webp, raw }
+
+/// A frame saved by [Helper.captureFrame], upright. [width] and [height]
+/// are 0 where the platform doesn't report them.
+class CapturedFrame {
+  CapturedFrame(this.data, this.width, this.height, this.format);
+
+  final ByteBuffer data;
+  final int width;
+  final int height;
+  final CapturedFrameFormat format;
+}
@@ -2,9 +2,11 @@ import 'dart:async';
 
 import 'package:flutter/services.dart';
 
+import 'utils.dart';
+
 class FlutterWebRTCEventChannel {
   FlutterWebRTCEventChannel._internal() {
-    EventChannel('FlutterWebRTC.Event')
+    EventChannel('FlutterWebRTC.Event', WebRTC.methodCodec)
         .receiveBroadcastStream()
         .listen(eventListener, onError: errorListener);
   }
@@ -3,37 +3,102 @@ import 'dart:math';
 
 import 'package:webrtc_interface/webrtc_interface.dart';
 
+import 'event_channel.dart';
 import 'media_stream_track_impl.dart';
+import 'recording_profile.dart';
 import 'utils.dart';
 
 class MediaRecorderNative extends MediaRecorder {
   MediaRecorderNative({
     String? albumName = 'FlutterWebRTC',
-  }) : _albumName = albumName;
+    RecordingProfile? profile,
+    RecordingSegmentation? segmentation,
+    this.onSegment,
+  })  : _albumName = albumName,
+        _profile = profile,
+        _segmentation = segmentation;
   static final _random = Random();
   final _recorderId = _random.nextInt(0x7FFFFFFF);
   var _isStarted = false;
   final String? _albumName;
+  final RecordingProfile? _profile;
+  final RecordingSegmentation? _segmentation;
+  StreamSubscription? _segmentSubscription;
 
+  /// Called for every finished segment of a segmented recording.
+  final void Function(RecordingSegment segment)? onSegment;
+
+  /// Native AudioChannel.MIXED, the microphone mixed with the remote playback.
+  static const _mixedAudioChannel = 2;
+
+  /// With [mixedAudio] the microphone and the remote playback are recorded
+  /// together, mixed into one stream, instead of [audioChannel].
   @override
   Future<void> start(
     String path, {
     MediaStreamTrack? videoTrack,
     RecorderAudioChannel? audioChannel,
+    bool mixedAudio = false,
   }) async {
-    if (audioChannel == null && videoTrack == null) {
+    if (audioChannel == null && videoTrack == null && !mixedAudio) {
       throw Exception('Neither audio nor video track were provided');
     }
-
-    await WebRTC.invokeMethod('startRecordToFile', {
+    await _start({
       'path': path,
-      if (audioChannel != null) 'audioChannel': audioChannel.index,
+      ..._audioChannel(audioChannel, mixedAudio),
       if (videoTrack != null) 'videoTrackId': videoTrack.id,
-      'recorderId': _recorderId,
       'peerConnectionId': videoTrack is MediaStreamTrackNative
           ? videoTrack.peerConnectionId
           : null
     });
+  }
+
+  /// Records [videoTracks], local or remote, tiled into one grid video of
+  /// [RecordingProfile.width] x [RecordingProfile.height] and encoded once.
+  /// [RecorderAudioChannel.OUTPUT] already carries every remote participant.
+  Future<void> startComposite(
+    String path, {
+    required List<MediaStreamTrack> videoTracks,
+    RecorderAudioChannel? audioChannel,
+    bool mixedAudio = false,
+  }) async {
+    if (videoTracks.isEmpty) {
+      throw Exception('No video tracks were provided');
+    }
+    await _start({
+      'path': path,
+      ..._audioChannel(audioChannel, mixedAudio),
+      'videoTrackIds': videoTracks.map((track) => track.id).toList(),
+    });
+  }
+
+  Map<String, dynamic> _audioChannel(
+          RecorderAudioChannel? audioChannel, bool mixedAudio) =>
+      {
+        if (mixedAudio)
+          'audioChannel': _mixedAudioChannel
+        else if (audioChannel != null)
+          'audioChannel': audioChannel.index,
+      };
+
+  Future<void> _start(Map<String, dynamic> arguments) async {
+    if (_segmentation != null && onSegment != null) {
+      _segmentSubscription ??= FlutterWebRTCEventChannel
+          .instance.handleEvents.stream
+          .listen((data) {
+        final map = data['onRecordingSegment'];
+        if (map != null && map['recorderId'] == _recorderId) {
+          onSegment?.call(RecordingSegment.fromMap(map));
+        }
+      });
+    }
+
+    await WebRTC.invokeMethod('startRecordToFile', {
+      ...arguments,
+      'recorderId': _recorderId,
+      if (_profile != null) 'profile': _profile.toMap(),
+      if (_segmentation != null) 'segments': _segmentation.toMap(),
+    });
     _isStarted = true;
   }
 
@@ -50,9 +115,12 @@ class MediaRecorderNative extends MediaRecorder {
     if (!_isStarted) {
       throw "Media recorder not started!";
     }
-    return await WebRTC.invokeMethod('stopRecordToFile', {
+    final result = await WebRTC.invokeMethod('stopRecordToFile', {
       'recorderId': _recorderId,
       'albumName': _albumName,
     });
+    await _segmentSubscription?.cancel();
+    _segmentSubscription = null;
+    return result;
   }
 }
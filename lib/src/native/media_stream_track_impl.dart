@@ -6,6 +6,7 @@ import 'package:path_provider/path_provider.dart';
 import 'package:webrtc_interface/webrtc_interface.dart';
 
 import '../helper.dart';
+import 'captured_frame.dart';
 import 'utils.dart';
 
 class MediaStreamTrackNative extends MediaStreamTrack {
@@ -84,19 +85,28 @@ class MediaStreamTrackNative extends MediaStreamTrack {
   }
 
   @override
-  Future<ByteBuffer> captureFrame() async {
+  Future<ByteBuffer> captureFrame() async =>
+      (await captureFrameAs(CapturedFrameFormat.jpeg)).data;
+
+  /// [quality] 0-100 applies to jpeg and webp; webp at 100 is lossless.
+  Future<CapturedFrame> captureFrameAs(CapturedFrameFormat format,
+      {int quality = 100}) async {
     var filePath = await getTemporaryDirectory();
-    await WebRTC.invokeMethod(
+    final path = '${filePath.path}/captureFrame.${format.name}';
+    final Map<dynamic, dynamic>? response = await WebRTC.invokeMethod(
       'captureFrame',
       <String, dynamic>{
         'trackId': _trackId,
         'peerConnectionId': _peerConnectionId,
-        'path': '${filePath.path}/captureFrame.png'
+        'path': path,
+        'format': format.name,
+        'quality': quality,
       },
     );
-    return File('${filePath.path}/captureFrame.png')
-        .readAsBytes()
-        .then((value) => value.buffer);
+    final bytes = await File(path).readAsBytes();
+    // platforms other than Android don't report the size
+    return CapturedFrame(bytes.buffer, response?['width'] ?? 0,
+        response?['height'] ?? 0, format);
   }
 
   @override
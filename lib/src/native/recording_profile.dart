@@ -0,0 +1,126 @@
+/// Video codec of a recording. [vp8] and [vp9] are written to WebM with
+/// Opus audio, the others to MP4 with AAC audio.
+enum RecordingCodec { h264, hevc, vp8, vp9, av1 }
+
+/// [cbr] and [cq] fail to start on encoders that don't support them; [vbr]
+/// falls back to the encoder's default rate control.
+enum RecordingRateControl { vbr, cbr, cq }
+
+/// Output container. [mpegts] (H.264 and HEVC only) is written as a
+/// stream of self-contained packets and stays playable if the app is killed
+/// while recording; an [mp4] file only becomes playable once stopped.
+enum RecordingContainer { mp4, webm, mpegts }
+
+/// Encoder settings for [MediaRecorder.start]. Unset values keep the
+/// recorder's defaults: bitrate is probed from 6 down to 1 Mbps, 30 fps,
+/// a key frame every 5 seconds.
+/// for Android only
+class RecordingProfile {
+  const RecordingProfile({
+    this.codec = RecordingCodec.h264,
+    this.videoBitrate,
+    this.rateControl = RecordingRateControl.vbr,
+    this.quality,
+    this.frameRate,
+    this.keyFrameInterval,
+    this.audioBitrate,
+    this.container,
+    this.passthrough = false,
+    this.width,
+    this.height,
+  });
+
+  final RecordingCodec codec;
+
+  /// Target video bitrate in bits per second.
+  final int? videoBitrate;
+  final RecordingRateControl rateControl;
+
+  /// Encoder quality 0-100, used with [RecordingRateControl.cq] only and
+  /// clamped to the range the encoder supports.
+  final int? quality;
+  final int? frameRate;
+
+  /// Seconds between key frames (GOP length).
+  final int? keyFrameInterval;
+
+  /// Audio bitrate in bits per second.
+  final int? audioBitrate;
+
+  /// Defaults to webm for [RecordingCodec.vp8] and [RecordingCodec.vp9],
+  /// mp4 otherwise.
+  final RecordingContainer? container;
+
+  /// Records a remote video track's received frames as they are, without
+  /// decoding and re-encoding them; [codec] then names the codec the track
+  /// is received with. Video only. Requires
+  /// `WebRTC.initialize(options: {'encodedFrameTap': true})`, which makes
+  /// received streams use hardware decoders without software fallback.
+  /// Falls back to re-encoding if the track's frames can't be tapped.
+  final bool passthrough;
+
+  /// Size of the grid video when several tracks are recorded together with
+  /// [MediaRecorder.startComposite], 1280x720 by default. A single track is
+  /// recorded at its own resolution.
+  final int? width;
+  final int? height;
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'codec': codec.name,
+        'rateControl': rateControl.name,
+        if (videoBitrate != null) 'videoBitrate': videoBitrate,
+        if (quality != null) 'quality': quality,
+        if (frameRate != null) 'frameRate': frameRate,
+        if (keyFrameInterval != null) 'keyFrameInterval': keyFrameInterval,
+        if (audioBitrate != null) 'audioBitrate': audioBitrate,
+        if (container != null) 'container': container!.name,
+        if (passthrough) 'passthrough': true,
+        if (width != null) 'width': width,
+        if (height != null) 'height': height,
+      };
+}
+
+/// Splits a recording into several files, `<name>_<index>.<ext>`, each
+/// starting at a key frame. A segment ends once it reaches [maxDuration] or
+/// [maxBytes]; with [keepSegments] > 0 only that many finished segments are
+/// kept on disk, e.g. to always have the last five minutes.
+/// for Android only
+class RecordingSegmentation {
+  const RecordingSegmentation({
+    this.maxDuration,
+    this.maxBytes,
+    this.keepSegments = 0,
+  }) : assert(maxDuration != null || maxBytes != null);
+
+  final Duration? maxDuration;
+  final int? maxBytes;
+  final int keepSegments;
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        if (maxDuration != null) 'maxDurationMs': maxDuration!.inMilliseconds,
+        if (maxBytes != null) 'maxBytes': maxBytes,
+        'keepSegments': keepSegments,
+      };
+}
+
+/// A finished, playable segment of a segmented recording.
+class RecordingSegment {
+  RecordingSegment(
+      this.path, this.index, this.duration, this.bytes, this.removedPath);
+
+  factory RecordingSegment.fromMap(Map<dynamic, dynamic> map) =>
+      RecordingSegment(
+          map['path'],
+          map['index'],
+          Duration(milliseconds: map['durationMs']),
+          map['bytes'],
+          map['removedPath']);
+
+  final String path;
+  final int index;
+  final Duration duration;
+  final int bytes;
+
+  /// Older segment deleted to stay within [RecordingSegmentation.keepSegments].
+  final String? removedPath;
+}
@@ -100,7 +100,8 @@ class RTCDataChannelNative extends RTCDataChannel {
 
   EventChannel _eventChannelFor(String peerConnectionId, String flutterId) {
     return EventChannel(
-        'FlutterWebRTC/dataChannelEvent$peerConnectionId$flutterId');
+        'FlutterWebRTC/dataChannelEvent$peerConnectionId$flutterId',
+        WebRTC.methodCodec);
   }
 
   void errorListener(Object obj) {
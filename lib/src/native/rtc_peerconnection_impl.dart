@@ -11,6 +11,7 @@ import 'rtc_dtmf_sender_impl.dart';
 import 'rtc_rtp_receiver_impl.dart';
 import 'rtc_rtp_sender_impl.dart';
 import 'rtc_rtp_transceiver_impl.dart';
+import 'stats_alert.dart';
 import 'utils.dart';
 
 /*
@@ -43,6 +44,11 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
     'optional': [],
   };
 
+  String get peerConnectionId => _peerConnectionId;
+
+  /// Called when a rule set with [Helper.setStatsAlertRules] fires or clears.
+  void Function(StatsAlert alert)? onStatsAlert;
+
   @override
   RTCSignalingState? get signalingState => _signalingState;
 
@@ -161,6 +167,12 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
             cand['candidate'], cand['sdpMid'], cand['sdpMLineIndex']);
         onIceCandidate?.call(candidate);
         break;
+      case 'onCandidates':
+        for (Map<dynamic, dynamic> cand in map['candidates']) {
+          onIceCandidate?.call(RTCIceCandidate(
+              cand['candidate'], cand['sdpMid'], cand['sdpMLineIndex']));
+        }
+        break;
       case 'onAddStream':
         String streamId = map['streamId'];
 
@@ -241,6 +253,9 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
       case 'onRenegotiationNeeded':
         onRenegotiationNeeded?.call();
         break;
+      case 'onStatsAlert':
+        onStatsAlert?.call(StatsAlert.fromMap(map));
+        break;
 
       /// Unified-Plan
       case 'onTrack':
@@ -301,7 +316,8 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
   }
 
   EventChannel _eventChannelFor(String peerConnectionId) {
-    return EventChannel('FlutterWebRTC/peerConnectionEvent$peerConnectionId');
+    return EventChannel('FlutterWebRTC/peerConnectionEvent$peerConnectionId',
+        WebRTC.methodCodec);
   }
 
   @override
@@ -448,6 +464,30 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
     }
   }
 
+  /// Adds remote candidates in one call, in order.
+  /// for Android only
+  Future<void> addCandidates(List<RTCIceCandidate> candidates) async {
+    try {
+      await WebRTC.invokeMethod('addCandidates', <String, dynamic>{
+        'peerConnectionId': _peerConnectionId,
+        'candidates': candidates.map((c) => c.toMap()).toList(),
+      });
+    } on PlatformException catch (e) {
+      throw 'Unable to RTCPeerConnection::addCandidates: ${e.message}';
+    }
+  }
+
+  /// Coalesces local candidates gathered within [window] into one native
+  /// event. [onIceCandidate] is still called once per candidate, in order.
+  /// [Duration.zero] turns batching off.
+  /// for Android only
+  Future<void> setCandidateBatching(Duration window) async {
+    await WebRTC.invokeMethod('setCandidateBatching', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+      'windowMs': window.inMilliseconds,
+    });
+  }
+
   @override
   Future<List<StatsReport>> getStats([MediaStreamTrack? track]) async {
     try {
@@ -0,0 +1,68 @@
+/// A quality threshold evaluated natively on periodically sampled stats.
+///
+/// [metric] and [denominator] entries are "type.member" names, e.g.
+/// 'inbound-rtp.packetsLost'; values of all reports of that type are summed.
+class StatsAlertRule {
+  StatsAlertRule({
+    required this.id,
+    required this.metric,
+    required this.threshold,
+    this.comparator = '>',
+    this.mode = StatsAlertMode.value,
+    this.window = 1,
+    this.hysteresis = 0,
+    this.denominator,
+  });
+
+  final String id;
+  final String metric;
+
+  /// One of '>', '>=', '<', '<='.
+  final String comparator;
+  final num threshold;
+  final StatsAlertMode mode;
+
+  /// Number of samples the value is averaged (value) or differenced
+  /// (delta/rate) over.
+  final int window;
+
+  /// Distance from [threshold] the value has to move back before the
+  /// alert clears.
+  final num hysteresis;
+
+  /// Divides the metric delta by the summed delta of these metrics,
+  /// e.g. packet loss fraction.
+  final List<String>? denominator;
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'id': id,
+        'metric': metric,
+        'comparator': comparator,
+        'threshold': threshold,
+        'mode': mode.name,
+        'window': window,
+        'hysteresis': hysteresis,
+        if (denominator != null) 'denominator': denominator,
+      };
+}
+
+enum StatsAlertMode { value, delta, rate }
+
+class StatsAlert {
+  StatsAlert(this.ruleId, this.metric, this.fired, this.value, this.threshold);
+
+  factory StatsAlert.fromMap(Map<dynamic, dynamic> map) => StatsAlert(
+      map['ruleId'],
+      map['metric'],
+      map['state'] == 'fired',
+      (map['value'] as num).toDouble(),
+      (map['threshold'] as num).toDouble());
+
+  final String ruleId;
+  final String metric;
+
+  /// true when the rule fired, false when it cleared.
+  final bool fired;
+  final double value;
+  final double threshold;
+}
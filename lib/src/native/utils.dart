@@ -3,9 +3,18 @@ import 'dart:io';
 import 'package:flutter/services.dart';
 
 import '../native_logs_listener.dart';
+import 'webrtc_message_codec.dart';
 
 class WebRTC {
-  static const MethodChannel _channel = MethodChannel('FlutterWebRTC.Method');
+  static final MethodChannel _channel =
+      MethodChannel('FlutterWebRTC.Method', methodCodec);
+
+  /// Codec for the plugin's method and event channels. The Android plugin
+  /// understands the compact [WebRTCMessageCodec]; other platforms use the
+  /// standard codec.
+  static MethodCodec get methodCodec => Platform.isAndroid
+      ? const StandardMethodCodec(WebRTCMessageCodec())
+      : const StandardMethodCodec();
 
   static bool get platformIsDesktop =>
       Platform.isWindows || Platform.isMacOS || Platform.isLinux;
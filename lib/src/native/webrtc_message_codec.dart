@@ -0,0 +1,113 @@
+import 'package:flutter/foundation.dart';
+import 'package:flutter/services.dart';
+
+/// [StandardMessageCodec] with two extra value types used by the Android
+/// plugin: strings from a fixed dictionary are sent as a one-byte token, and
+/// integers in [0, 255] as a single byte.
+///
+/// The dictionary must stay identical to the one in WebRTCMessageCodec.java;
+/// only ever append to it.
+class WebRTCMessageCodec extends StandardMessageCodec {
+  const WebRTCMessageCodec();
+
+  static const int _valueInternedString = 128;
+  static const int _valueSmallInt = 129;
+
+  static const List<String> dictionary = <String>[
+    'event', 'id', 'state', 'type', 'data', 'label', 'kind', 'enabled',
+    'readyState', 'remote', 'local', 'streamId', 'ownerTag', 'trackId',
+    'track', 'streams', 'receiver', 'sender', 'transceiver', 'transceiverId',
+    'receiverId', 'senderId', 'peerConnectionId', 'candidate', 'candidates',
+    'sdpMid', 'sdpMLineIndex', 'sdp', 'reason', 'lastDataReceivedMs',
+    'audioTracks', 'videoTracks', 'flutterId', 'bufferedAmount',
+    'changedAmount', 'mid', 'direction', 'rtpParameters', 'dtmfSender',
+    'ownsTrack', 'textureId', 'stats', 'timestamp', 'values', 'value',
+    'threshold', 'ruleId', 'metric', 'audio', 'video', 'width', 'height',
+    'onCandidate', 'onCandidates', 'onSelectedCandidatePairChanged',
+    'iceConnectionState', 'iceGatheringState', 'signalingState',
+    'peerConnectionState', 'onAddStream', 'onRemoveStream', 'onAddTrack',
+    'onRemoveTrack', 'onTrack', 'onRenegotiationNeeded', 'didOpenDataChannel',
+    'dataChannelStateChanged', 'dataChannelReceiveMessage',
+    'dataChannelBufferedAmountChange', 'didTextureChangeRotation',
+    'didTextureChangeVideoSize', 'didFirstFrameRendered', 'onDeviceChange',
+    'onLogData', 'onStatsAlert', 'frameCryptionStateChanged', 'new',
+    'checking', 'connected', 'completed', 'failed', 'disconnected', 'closed',
+    'gathering', 'complete', 'stable', 'have-local-offer', 'have-remote-offer',
+    'have-local-pranswer', 'have-remote-pranswer', 'connecting', 'open',
+    'closing', 'binary', 'text', 'live', 'ended', 'fired', 'cleared', 'offer',
+    'answer', 'codec', 'inbound-rtp', 'outbound-rtp', 'remote-inbound-rtp',
+    'remote-outbound-rtp', 'media-source', 'media-playout', 'peer-connection',
+    'data-channel', 'transport', 'candidate-pair', 'local-candidate',
+    'remote-candidate', 'certificate', 'transportId', 'codecId', 'ssrc',
+    'mediaSourceId', 'trackIdentifier', 'packetsSent', 'bytesSent',
+    'headerBytesSent', 'packetsReceived', 'bytesReceived',
+    'headerBytesReceived', 'packetsLost', 'jitter', 'framesPerSecond',
+    'frameWidth', 'frameHeight', 'framesEncoded', 'framesDecoded',
+    'framesReceived', 'framesDropped', 'framesSent', 'keyFramesEncoded',
+    'keyFramesDecoded', 'totalEncodeTime', 'totalDecodeTime', 'qpSum',
+    'nackCount', 'pliCount', 'firCount', 'totalRoundTripTime', 'roundTripTime',
+    'roundTripTimeMeasurements', 'fractionLost', 'localId', 'remoteId',
+    'remoteTimestamp', 'reportsSent', 'targetBitrate',
+    'retransmittedPacketsSent', 'retransmittedBytesSent',
+    'qualityLimitationReason', 'qualityLimitationDurations',
+    'qualityLimitationResolutionChanges', 'encoderImplementation',
+    'decoderImplementation', 'powerEfficientEncoder', 'powerEfficientDecoder',
+    'scalabilityMode', 'rid', 'audioLevel', 'totalAudioEnergy',
+    'totalSamplesDuration', 'totalSamplesReceived', 'concealedSamples',
+    'silentConcealedSamples', 'concealmentEvents', 'jitterBufferDelay',
+    'jitterBufferTargetDelay', 'jitterBufferEmittedCount',
+    'jitterBufferMinimumDelay', 'lastPacketReceivedTimestamp',
+    'lastPacketSentTimestamp', 'freezeCount', 'totalFreezesDuration',
+    'pauseCount', 'totalPausesDuration', 'totalInterFrameDelay',
+    'totalSquaredInterFrameDelay', 'playoutId', 'mimeType', 'payloadType',
+    'clockRate', 'channels', 'sdpFmtpLine', 'localCandidateId',
+    'remoteCandidateId', 'nominated', 'writable', 'priority', 'requestsSent',
+    'requestsReceived', 'responsesSent', 'responsesReceived',
+    'consentRequestsSent', 'currentRoundTripTime', 'availableOutgoingBitrate',
+    'availableIncomingBitrate', 'selectedCandidatePairId',
+    'selectedCandidatePairChanges', 'dtlsState', 'dtlsRole', 'iceState',
+    'iceRole', 'tlsVersion', 'srtpCipher', 'dtlsCipher', 'localCertificateId',
+    'remoteCertificateId', 'address', 'port', 'protocol', 'candidateType',
+    'relayProtocol', 'networkType', 'isRemote', 'dataChannelsOpened',
+    'dataChannelsClosed', 'frames', 'packetsDiscardedOnSend',
+    'bytesDiscardedOnSend', 'totalProcessingDelay', 'totalPacketSendDelay',
+    'hugeFramesSent', 'packetsDiscarded', 'fecPacketsReceived',
+    'fecPacketsDiscarded', 'insertedSamplesForDeceleration',
+    'removedSamplesForAcceleration', 'host', 'srflx', 'prflx', 'relay', 'udp',
+    'tcp', 'succeeded', 'in-progress', 'waiting', 'frozen', 'none', 'cpu',
+    'bandwidth', 'other',
+  ];
+
+  static final Map<String, int> _tokens = <String, int>{
+    for (var i = 0; i < dictionary.length; i++) dictionary[i]: i,
+  };
+
+  @override
+  void writeValue(WriteBuffer buffer, Object? value) {
+    if (value is String) {
+      final token = _tokens[value];
+      if (token != null) {
+        buffer.putUint8(_valueInternedString);
+        buffer.putUint8(token);
+        return;
+      }
+    } else if (value is int && value >= 0 && value <= 0xff) {
+      buffer.putUint8(_valueSmallInt);
+      buffer.putUint8(value);
+      return;
+    }
+    super.writeValue(buffer, value);
+  }
+
+  @override
+  Object? readValueOfType(int type, ReadBuffer buffer) {
+    switch (type) {
+      case _valueInternedString:
+        return dictionary[buffer.getUint8()];
+      case _valueSmallInt:
+        return buffer.getUint8();
+      default:
+        return super.readValueOfType(type, buffer);
+    }
+  }
+}
@@ -36,7 +36,14 @@ class NativeLogsListener {
     switch (map['event']) {
       case 'onLogData':
         if (_logger != null) {
-          _logger?.i('webrtc: ${map['data']}');
+          final lines = map['lines'];
+          if (lines is List) {
+            for (var line in lines) {
+              _logger?.i('webrtc: $line');
+            }
+          } else {
+            _logger?.i('webrtc: ${map['data']}');
+          }
         }
         break;
     }
@@ -0,0 +1,74 @@
+import 'package:flutter_test/flutter_test.dart';
+
+import 'package:flutter_webrtc/src/native/recording_profile.dart';
+
+void main() {
+  group('RecordingProfile', () {
+    test('only sends the values that are set', () {
+      expect(const RecordingProfile().toMap(), <String, dynamic>{
+        'codec': 'h264',
+        'rateControl': 'vbr',
+      });
+    });
+
+    test('sends every value that is set', () {
+      const profile = RecordingProfile(
+        codec: RecordingCodec.hevc,
+        videoBitrate: 4000000,
+        rateControl: RecordingRateControl.cq,
+        quality: 80,
+        frameRate: 24,
+        keyFrameInterval: 2,
+        audioBitrate: 96000,
+        container: RecordingContainer.mpegts,
+        passthrough: true,
+        width: 1920,
+        height: 1080,
+      );
+      expect(profile.toMap(), <String, dynamic>{
+        'codec': 'hevc',
+        'rateControl': 'cq',
+        'videoBitrate': 4000000,
+        'quality': 80,
+        'frameRate': 24,
+        'keyFrameInterval': 2,
+        'audioBitrate': 96000,
+        'container': 'mpegts',
+        'passthrough': true,
+        'width': 1920,
+        'height': 1080,
+      });
+    });
+  });
+
+  group('RecordingSegmentation', () {
+    test('sends the duration in milliseconds', () {
+      const segmentation = RecordingSegmentation(
+          maxDuration: Duration(minutes: 1), keepSegments: 5);
+      expect(segmentation.toMap(), <String, dynamic>{
+        'maxDurationMs': 60000,
+        'keepSegments': 5,
+      });
+    });
+
+    test('sends a size limit alone', () {
+      expect(const RecordingSegmentation(maxBytes: 1 << 20).toMap(),
+          <String, dynamic>{'maxBytes': 1 << 20, 'keepSegments': 0});
+    });
+  });
+
+  test('RecordingSegment reads the segment event', () {
+    final segment = RecordingSegment.fromMap(<dynamic, dynamic>{
+      'path': '/data/rec_3.mp4',
+      'index': 3,
+      'durationMs': 59960,
+      'bytes': 1048576,
+      'removedPath': '/data/rec_0.mp4',
+    });
+    expect(segment.path, '/data/rec_3.mp4');
+    expect(segment.index, 3);
+    expect(segment.duration, const Duration(milliseconds: 59960));
+    expect(segment.bytes, 1048576);
+    expect(segment.removedPath, '/data/rec_0.mp4');
+  });
+}
@@ -0,0 +1,95 @@
+import 'dart:io';
+import 'dart:typed_data';
+
+import 'package:flutter_test/flutter_test.dart';
+
+import 'package:flutter_webrtc/src/native/webrtc_message_codec.dart';
+
+Uint8List encode(Object? value) {
+  final data = const WebRTCMessageCodec().encodeMessage(value)!;
+  return data.buffer.asUint8List(data.offsetInBytes, data.lengthInBytes);
+}
+
+Object? roundTrip(Object? value) => const WebRTCMessageCodec()
+    .decodeMessage(const WebRTCMessageCodec().encodeMessage(value));
+
+void main() {
+  group('interned strings', () {
+    test('are written as type 128 and a one-byte token', () {
+      expect(encode('event'), <int>[128, 0]);
+      expect(encode('id'), <int>[128, 1]);
+      expect(encode('other'), <int>[128, 246]);
+    });
+
+    test('round-trip every dictionary entry', () {
+      for (final value in WebRTCMessageCodec.dictionary) {
+        expect(roundTrip(value), value);
+      }
+    });
+
+    test('leave other strings to the standard codec', () {
+      expect(encode('not-in-dictionary').first, isNot(128));
+      expect(roundTrip('not-in-dictionary'), 'not-in-dictionary');
+      expect(roundTrip(''), '');
+    });
+  });
+
+  group('small ints', () {
+    test('are written as type 129 and one byte', () {
+      expect(encode(0), <int>[129, 0]);
+      expect(encode(255), <int>[129, 255]);
+    });
+
+    test('round-trip 0 to 255', () {
+      for (var i = 0; i <= 255; i++) {
+        expect(roundTrip(i), i);
+      }
+    });
+
+    test('leave values outside 0 to 255 to the standard codec', () {
+      for (final value in <int>[-1, 256, 1 << 31, 1 << 40]) {
+        expect(encode(value).first, isNot(129));
+        expect(roundTrip(value), value);
+      }
+    });
+  });
+
+  test('nested events round-trip', () {
+    final event = <String, Object?>{
+      'event': 'iceConnectionState',
+      'state': 'connected',
+      'sdpMLineIndex': 0,
+      'bytesSent': 123456789,
+      'candidates': <Object?>[
+        <String, Object?>{'sdpMid': '0', 'candidate': 'candidate:1 1 udp'},
+      ],
+    };
+    expect(roundTrip(event), event);
+  });
+
+  group('dictionary', () {
+    test('has 247 unique entries in a fixed order', () {
+      const dictionary = WebRTCMessageCodec.dictionary;
+      expect(dictionary.length, 247);
+      expect(dictionary.toSet().length, dictionary.length);
+      expect(dictionary.first, 'event');
+      expect(dictionary.indexOf('peerConnectionId'), 22);
+      expect(dictionary.indexOf('onLogData'), 73);
+      expect(dictionary.indexOf('inbound-rtp'), 104);
+      expect(dictionary.last, 'other');
+    });
+
+    test('matches WebRTCMessageCodec.java entry for entry', () {
+      final source = File(
+              'android/src/main/java/com/cloudwebrtc/webrtc/utils/WebRTCMessageCodec.java')
+          .readAsStringSync();
+      final start = source.indexOf('DICTIONARY = {');
+      final end = source.indexOf('};', start);
+      final javaDictionary = RegExp(r'"([^"]*)"')
+          .allMatches(source.substring(start, end))
+          .map((match) => match.group(1))
+          .toList();
+      expect(javaDictionary, WebRTCMessageCodec.dictionary);
+    });
+  });
+}